@@ -21,7 +21,9 @@ import javax.inject.Named;
 
 import fr.free.nrw.commons.auth.SessionManager;
 import fr.free.nrw.commons.category.CategoryDao;
+import fr.free.nrw.commons.category.CategoryIndex;
 import fr.free.nrw.commons.contributions.ContributionDao;
+import fr.free.nrw.commons.contributions.UploadedHashDao;
 import fr.free.nrw.commons.data.DBOpenHelper;
 import fr.free.nrw.commons.di.ApplicationlessInjection;
 import fr.free.nrw.commons.di.CommonsApplicationComponent;
@@ -154,7 +156,10 @@ public class CommonsApplication extends Application {
 
         ModifierSequenceDao.Table.onDelete(db);
         CategoryDao.Table.onDelete(db);
+        CategoryIndex.Table.onDelete(db);
+        CategoryIndex.FullTextTable.onDelete(db);
         ContributionDao.Table.onDelete(db);
+        UploadedHashDao.Table.onDelete(db);
     }
 
     /**
@@ -18,6 +18,8 @@ import java.util.Map;
  */
 public class LicenseList {
     private Map<String, License> licenses = new HashMap<>();
+    // Licenses keyed by their normalized template title
+    private Map<String, License> licensesByTemplate = new HashMap<>();
     private Resources res;
 
     /**
@@ -26,7 +28,11 @@ public class LicenseList {
      * @param activity License activity
      */
     public LicenseList(Activity activity) {
-        res = activity.getResources();
+        this(activity.getResources());
+    }
+
+    public LicenseList(Resources res) {
+        this.res = res;
         XmlPullParser parser = res.getXml(R.xml.wikimedia_licenses);
         String namespace = "https://www.mediawiki.org/wiki/Extension:UploadWizard/xmlns/licenses";
         while (xmlFastForward(parser, namespace, "license")) {
@@ -36,6 +42,7 @@ public class LicenseList {
             String name = nameForTemplate(template);
             License license = new License(id, template, url, name);
             licenses.put(id, license);
+            licensesByTemplate.put(TemplateExtractor.normalizeTitle(template), license);
         }
     }
 
@@ -63,13 +70,17 @@ public class LicenseList {
      */
     @Nullable
     License licenseForTemplate(String template) {
-        String ucTemplate = new PageTitle(template).getDisplayText();
-        for (License license : values()) {
-            if (ucTemplate.equals(new PageTitle(license.getTemplate()).getDisplayText())) {
-                return license;
-            }
-        }
-        return null;
+        return licenseForNormalizedTemplate(TemplateExtractor.normalizeTitle(template));
+    }
+
+    /**
+     * Looks up a license by a template title already in display form
+     * @param template License template, see {@link TemplateExtractor#normalizeTitle(String)}
+     * @return the matching license, or null
+     */
+    @Nullable
+    License licenseForNormalizedTemplate(String template) {
+        return licensesByTemplate.get(template);
     }
 
     /**
@@ -0,0 +1,256 @@
+package fr.free.nrw.commons;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import fr.free.nrw.commons.data.DBOpenHelper;
+import fr.free.nrw.commons.location.LatLng;
+import timber.log.Timber;
+
+import static fr.free.nrw.commons.data.DBUtils.evictLeastRecentlyUsed;
+
+/**
+ * Persists what {@link MediaDataExtractor} extracts from a file page, keyed by file name
+ * and revision id, so that opening the details of a file again doesn't refetch and
+ * reparse the page. An entry checked against the latest revision less than
+ * {@link #FRESH_MILLIS} ago is used as is, older ones need their revision id confirmed.
+ * Edits made by the app {@link #remove(String) remove} the entry, so they show up right away.
+ * Only the media details read these entries, and they wait on them from a worker thread,
+ * so the cache goes to the database directly instead of through a content provider.
+ */
+@Singleton
+public class MediaMetadataCache {
+
+    static final long FRESH_MILLIS = TimeUnit.HOURS.toMillis(1);
+    static final int MAX_ENTRIES = 500;
+
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private final DBOpenHelper dbOpenHelper;
+
+    @Inject
+    public MediaMetadataCache(DBOpenHelper dbOpenHelper) {
+        this.dbOpenHelper = dbOpenHelper;
+    }
+
+    /**
+     * @return the entry for the latest revision seen of the file, or null if there is none
+     */
+    @WorkerThread
+    @Nullable
+    public Entry get(@NonNull String filename) {
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        Cursor cursor = db.query(Table.TABLE_NAME,
+                new String[]{Table.COLUMN_ID, Table.COLUMN_REVISION_ID, Table.COLUMN_VERIFIED, Table.COLUMN_METADATA},
+                Table.COLUMN_FILENAME + " = ?", new String[]{filename},
+                null, null, Table.COLUMN_REVISION_ID + " DESC", "1");
+        Entry entry = null;
+        long id = -1;
+        try {
+            if (cursor.moveToFirst()) {
+                id = cursor.getLong(0);
+                entry = GSON.fromJson(cursor.getString(3), Entry.class);
+                entry.revisionId = cursor.getLong(1);
+                entry.verified = cursor.getLong(2);
+            }
+        } catch (JsonParseException e) {
+            Timber.d(e, "Dropping unreadable metadata of %s", filename);
+            entry = null;
+        } finally {
+            cursor.close();
+        }
+        if (entry != null) {
+            ContentValues lastUsed = new ContentValues();
+            lastUsed.put(Table.COLUMN_LAST_USED, System.currentTimeMillis());
+            db.update(Table.TABLE_NAME, lastUsed, Table.COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+        } else if (id != -1) {
+            db.delete(Table.TABLE_NAME, Table.COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the metadata of a revision, dropping the older revisions of the file,
+     * then trims the table back to {@link #MAX_ENTRIES}.
+     */
+    @WorkerThread
+    public void put(@NonNull String filename, @NonNull Entry entry) {
+        long now = System.currentTimeMillis();
+        entry.verified = now;
+        ContentValues cv = new ContentValues();
+        cv.put(Table.COLUMN_FILENAME, filename);
+        cv.put(Table.COLUMN_REVISION_ID, entry.revisionId);
+        cv.put(Table.COLUMN_METADATA, GSON.toJson(entry));
+        cv.put(Table.COLUMN_VERIFIED, now);
+        cv.put(Table.COLUMN_LAST_USED, now);
+
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(Table.TABLE_NAME, Table.COLUMN_FILENAME + " = ? AND " + Table.COLUMN_REVISION_ID + " < ?",
+                    new String[]{filename, String.valueOf(entry.revisionId)});
+            db.insert(Table.TABLE_NAME, null, cv);
+            int evicted = evictLeastRecentlyUsed(db, Table.TABLE_NAME,
+                    Table.COLUMN_ID, Table.COLUMN_LAST_USED, MAX_ENTRIES);
+            if (evicted > 0) {
+                Timber.d("Dropped %d least recently used media metadata entries", evicted);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Records that the stored revision of the file is still the latest one.
+     */
+    @WorkerThread
+    public void markVerified(@NonNull String filename, long revisionId) {
+        ContentValues cv = new ContentValues();
+        cv.put(Table.COLUMN_VERIFIED, System.currentTimeMillis());
+        dbOpenHelper.getWritableDatabase().update(Table.TABLE_NAME, cv,
+                Table.COLUMN_FILENAME + " = ? AND " + Table.COLUMN_REVISION_ID + " = ?",
+                new String[]{filename, String.valueOf(revisionId)});
+    }
+
+    /**
+     * Drops every stored revision of the file, after the app has edited its page.
+     */
+    @WorkerThread
+    public void remove(@NonNull String filename) {
+        dbOpenHelper.getWritableDatabase().delete(Table.TABLE_NAME,
+                Table.COLUMN_FILENAME + " = ?", new String[]{filename});
+    }
+
+    /**
+     * Metadata of one revision of a file page. Stored as JSON, the revision id and
+     * verification time live in their own columns.
+     */
+    public static class Entry {
+        private transient long revisionId;
+        private transient long verified;
+        private final List<String> categories;
+        private final Map<String, String> descriptions;
+        private final @Nullable String license;
+        private final @Nullable LatLng coordinates;
+
+        public Entry(long revisionId, List<String> categories, Map<String, String> descriptions,
+                     @Nullable String license, @Nullable LatLng coordinates) {
+            this.revisionId = revisionId;
+            this.categories = categories;
+            this.descriptions = descriptions;
+            this.license = license;
+            this.coordinates = coordinates;
+        }
+
+        public long getRevisionId() {
+            return revisionId;
+        }
+
+        /**
+         * @return true if the revision was confirmed to be the latest one recently enough
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() - verified < FRESH_MILLIS;
+        }
+
+        public List<String> getCategories() {
+            return categories;
+        }
+
+        public Map<String, String> getDescriptions() {
+            return descriptions;
+        }
+
+        @Nullable
+        public String getLicense() {
+            return license;
+        }
+
+        @Nullable
+        public LatLng getCoordinates() {
+            return coordinates;
+        }
+    }
+
+    public static class Table {
+        public static final String TABLE_NAME = "media_metadata";
+
+        public static final String COLUMN_ID = "_id";
+        static final String COLUMN_FILENAME = "filename";
+        static final String COLUMN_REVISION_ID = "revision_id";
+        static final String COLUMN_METADATA = "metadata";
+        static final String COLUMN_VERIFIED = "verified";
+        static final String COLUMN_LAST_USED = "last_used";
+
+        // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
+        public static final String[] ALL_FIELDS = {
+                COLUMN_ID,
+                COLUMN_FILENAME,
+                COLUMN_REVISION_ID,
+                COLUMN_METADATA,
+                COLUMN_VERIFIED,
+                COLUMN_LAST_USED
+        };
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_FILENAME + " STRING,"
+                + COLUMN_REVISION_ID + " INTEGER,"
+                + COLUMN_METADATA + " STRING,"
+                + COLUMN_VERIFIED + " INTEGER,"
+                + COLUMN_LAST_USED + " INTEGER,"
+                + "UNIQUE (" + COLUMN_FILENAME + ", " + COLUMN_REVISION_ID + ") ON CONFLICT REPLACE"
+                + ");";
+
+        static final String CREATE_LAST_USED_INDEX = "CREATE INDEX " + TABLE_NAME + "_last_used ON "
+                + TABLE_NAME + " (" + COLUMN_LAST_USED + ");";
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+            db.execSQL(CREATE_LAST_USED_INDEX);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 10) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 10) {
+                // table added in version 11
+                onCreate(db);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 11
+        }
+    }
+}
@@ -4,25 +4,26 @@ import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.graphics.drawable.VectorDrawableCompat;
-import android.support.v4.util.LruCache;
 import android.text.TextUtils;
 import android.util.AttributeSet;
-import android.widget.Toast;
 
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.drawee.controller.BaseControllerListener;
 import com.facebook.drawee.generic.GenericDraweeHierarchyBuilder;
 import com.facebook.drawee.view.SimpleDraweeView;
+import com.facebook.imagepipeline.image.ImageInfo;
 
 import javax.inject.Inject;
 
 import fr.free.nrw.commons.di.ApplicationlessInjection;
-import fr.free.nrw.commons.mwapi.MediaWikiApi;
 import timber.log.Timber;
 
 public class MediaWikiImageView extends SimpleDraweeView {
-    @Inject MediaWikiApi mwApi;
-    @Inject LruCache<String, String> thumbnailUrlCache;
+    @Inject ThumbnailUrlResolver thumbnailUrlResolver;
+    @Inject ThumbnailUrlCache thumbnailUrlCache;
 
-    private ThumbnailFetchTask currentThumbnailTask;
+    private ThumbnailCallback currentThumbnailCallback;
+    private Media currentMedia;
 
     public MediaWikiImageView(Context context) {
         this(context, null);
@@ -44,30 +45,61 @@ public class MediaWikiImageView extends SimpleDraweeView {
      * @param media the new media
      */
     public void setMedia(Media media) {
-        if (currentThumbnailTask != null) {
-            currentThumbnailTask.cancel(true);
-        }
+        cancelThumbnailLookup();
+        currentMedia = media;
         if (media == null) {
             return;
         }
 
-        if (thumbnailUrlCache.get(media.getFilename()) != null) {
-            setImageUrl(thumbnailUrlCache.get(media.getFilename()));
+        String cachedUrl = thumbnailUrlCache.getFromMemory(media.getFilename(), ThumbnailUrlResolver.THUMB_WIDTH);
+        String derivedUrl = ThumbnailUrlBuilder.thumbnailUrl(media.getFilename(), ThumbnailUrlResolver.THUMB_WIDTH);
+        if (cachedUrl != null) {
+            setImageUrl(cachedUrl);
+        } else if (derivedUrl != null) {
+            setDerivedImageUrl(media, derivedUrl);
         } else {
-            setImageUrl(null);
-            currentThumbnailTask = new ThumbnailFetchTask(media, mwApi);
-            currentThumbnailTask.execute(media.getFilename());
+            resolveThumbnail(media);
         }
     }
 
+    /**
+     * Loads a thumbnail URL built locally, asking the API for the real one if it doesn't load.
+     */
+    private void setDerivedImageUrl(Media media, String url) {
+        setController(Fresco.newDraweeControllerBuilder()
+                .setOldController(getController())
+                .setUri(url)
+                .setControllerListener(new BaseControllerListener<ImageInfo>() {
+                    @Override
+                    public void onFailure(String id, Throwable throwable) {
+                        if (media == currentMedia) {
+                            Timber.d("Derived thumbnail %s failed to load, asking the API", url);
+                            resolveThumbnail(media);
+                        }
+                    }
+                })
+                .build());
+    }
+
+    private void resolveThumbnail(Media media) {
+        setImageUrl(null);
+        currentThumbnailCallback = new ThumbnailCallback(media);
+        thumbnailUrlResolver.resolve(media.getFilename(), currentThumbnailCallback);
+    }
+
     @Override
     protected void onDetachedFromWindow() {
-        if (currentThumbnailTask != null) {
-            currentThumbnailTask.cancel(true);
-        }
+        cancelThumbnailLookup();
         super.onDetachedFromWindow();
     }
 
+    private void cancelThumbnailLookup() {
+        if (currentThumbnailCallback != null) {
+            thumbnailUrlResolver.cancel(currentThumbnailCallback.media.getFilename(), currentThumbnailCallback);
+            currentThumbnailCallback = null;
+        }
+    }
+
     /**
      * Initializes MediaWikiImageView.
      */
@@ -94,27 +126,19 @@ public class MediaWikiImageView extends SimpleDraweeView {
         setImageURI(url);
     }
 
-    private class ThumbnailFetchTask extends MediaThumbnailFetchTask {
-        ThumbnailFetchTask(@NonNull Media media, @NonNull MediaWikiApi mwApi) {
-            super(media, mwApi);
+    private class ThumbnailCallback implements ThumbnailUrlResolver.Callback {
+        private final Media media;
+
+        ThumbnailCallback(@NonNull Media media) {
+            this.media = media;
         }
 
         @Override
-        protected void onPostExecute(String result) {
-            if (isCancelled()) {
-                return;
-            }
+        public void onThumbnailUrl(@Nullable String result) {
+            currentThumbnailCallback = null;
+            // The resolver caches the URLs it gets from the network
             if (TextUtils.isEmpty(result) && media.getLocalUri() != null) {
                 result = media.getLocalUri().toString();
-            } else {
-                // only cache meaningful thumbnails received from network.
-                try {
-                    thumbnailUrlCache.put(media.getFilename(), result);
-                } catch (NullPointerException npe) {
-                    Timber.e("error when adding pic to cache " + npe);
-
-                    Toast.makeText(getContext(), R.string.error_while_cache, Toast.LENGTH_SHORT).show();
-                }
             }
             setImageUrl(result);
         }
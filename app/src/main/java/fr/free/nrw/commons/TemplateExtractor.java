@@ -0,0 +1,338 @@
+package fr.free.nrw.commons;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.free.nrw.commons.location.LatLng;
+import timber.log.Timber;
+
+/**
+ * Extracts the description, coordinates and license of a file page from its
+ * preprocessor parse tree in one pass of a pull parser. Only top level templates
+ * are looked at, each title is normalized once and matched against the license
+ * templates with a hash lookup.
+ * <p>
+ * Not thread safe, use one instance per parse tree.
+ */
+final class TemplateExtractor {
+
+    private static final String INFORMATION = "Information";
+    private static final String LOCATION = "Location";
+    private static final String SELF = "Self";
+    private static final String DESCRIPTION = "Description";
+
+    // What a top level template is used for
+    private static final int IGNORED = 0;
+    private static final int INFORMATION_TEMPLATE = 1;
+    private static final int LOCATION_TEMPLATE = 2;
+    private static final int SELF_TEMPLATE = 3;
+
+    private final LicenseList licenseList;
+    private final XmlPullParser parser = Xml.newPullParser();
+
+    private boolean informationFound;
+    private boolean locationFound;
+    private boolean selfFound;
+    private Map<String, String> descriptions = new HashMap<>();
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private @Nullable String selfLicense;
+    private @Nullable License templateLicense;
+
+    TemplateExtractor(@NonNull LicenseList licenseList) {
+        this.licenseList = licenseList;
+    }
+
+    /**
+     * Reads the parse tree, call once before the getters.
+     */
+    void extract(@NonNull String parseTree) throws IOException {
+        try {
+            parser.setInput(new StringReader(parseTree));
+            parser.nextTag();
+            int rootDepth = parser.getDepth();
+            while (nextChildElement(rootDepth)) {
+                if ("template".equals(parser.getName())) {
+                    readTopLevelTemplate();
+                } else {
+                    skipElement();
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return descriptions keyed by language code, text outside language templates under "default"
+     */
+    @NonNull
+    Map<String, String> getDescriptions() {
+        return descriptions;
+    }
+
+    @Nullable
+    LatLng getCoordinates() {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return null;
+        }
+        return new LatLng(latitude, longitude, 0);
+    }
+
+    /**
+     * @return the license key, the raw template name for licenses given to {{self}} that
+     * aren't in the license list, or null if no license template was found
+     */
+    @Nullable
+    String getLicense() {
+        if (selfFound) {
+            if (selfLicense == null) {
+                return null;
+            }
+            License license = licenseList.licenseForTemplate(selfLicense);
+            if (license == null) {
+                Timber.d("MediaDataExtractor found no matching license for self parameter: %s; faking it", selfLicense);
+                return selfLicense; // hack hack! For non-selectable licenses that are still in the system.
+            }
+            return license.getKey();
+        }
+        return templateLicense != null ? templateLicense.getKey() : null;
+    }
+
+    /**
+     * Normalizes a template title the way {@link PageTitle#getDisplayText()} does,
+     * without allocating when the title is already in its display form.
+     */
+    @NonNull
+    static String normalizeTitle(@NonNull String title) {
+        String text = title.trim();
+        int first = text.indexOf(':') + 1;
+        if (first < text.length()) {
+            char c = text.charAt(first);
+            char upper = Character.toUpperCase(c);
+            if (upper != c) {
+                text = text.substring(0, first) + upper + text.substring(first + 1);
+            }
+        }
+        return text.indexOf('_') < 0 ? text : text.replace('_', ' ');
+    }
+
+    private void readTopLevelTemplate() throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        int kind = IGNORED;
+        while (nextChildElement(depth)) {
+            String name = parser.getName();
+            if ("title".equals(name)) {
+                kind = classify(normalizeTitle(readText()));
+            } else if ("part".equals(name) && kind != IGNORED) {
+                readPart(kind);
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    private int classify(String title) {
+        switch (title) {
+            case INFORMATION:
+                if (informationFound) {
+                    return IGNORED;
+                }
+                informationFound = true;
+                return INFORMATION_TEMPLATE;
+            case LOCATION:
+                if (locationFound) {
+                    return IGNORED;
+                }
+                locationFound = true;
+                return LOCATION_TEMPLATE;
+            case SELF:
+                if (selfFound) {
+                    return IGNORED;
+                }
+                selfFound = true;
+                return SELF_TEMPLATE;
+            default:
+                if (templateLicense == null) {
+                    templateLicense = licenseList.licenseForNormalizedTemplate(title);
+                }
+                return IGNORED;
+        }
+    }
+
+    private void readPart(int kind) throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        String name = null;
+        while (nextChildElement(depth)) {
+            if ("name".equals(parser.getName())) {
+                name = readPartName();
+            } else if ("value".equals(parser.getName()) && name != null) {
+                readValue(kind, name);
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    private String readPartName() throws IOException, XmlPullParserException {
+        String index = parser.getAttributeValue(null, "index");
+        String text = readText().trim();
+        return index != null && text.isEmpty() ? index.trim() : text;
+    }
+
+    private void readValue(int kind, String name) throws IOException, XmlPullParserException {
+        switch (kind) {
+            case INFORMATION_TEMPLATE:
+                if (DESCRIPTION.equals(normalizeTitle(name))) {
+                    descriptions = readMultilingualText();
+                    return;
+                }
+                break;
+            case LOCATION_TEMPLATE:
+                if ("1".equals(name)) {
+                    latitude = parseCoordinate(readText());
+                    return;
+                } else if ("2".equals(name)) {
+                    longitude = parseCoordinate(readText());
+                    return;
+                }
+                break;
+            case SELF_TEMPLATE:
+                if ("1".equals(name)) {
+                    selfLicense = readText();
+                    return;
+                }
+                break;
+        }
+        skipElement();
+    }
+
+    private static double parseCoordinate(String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            Timber.d("Unparseable coordinate %s", text);
+            return Double.NaN;
+        }
+    }
+
+    // Texts are wrapped in things like {{en|foo} or {{en|1=foo bar}}.
+    // Text outside those wrappers is stuffed into a 'default' faux language key if present.
+    private Map<String, String> readMultilingualText() throws IOException, XmlPullParserException {
+        Map<String, String> texts = new HashMap<>();
+        StringBuilder localText = new StringBuilder();
+        int depth = parser.getDepth();
+        while (true) {
+            int event = parser.next();
+            if (event == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                break;
+            } else if (event == XmlPullParser.TEXT) {
+                localText.append(parser.getText());
+            } else if (event == XmlPullParser.START_TAG) {
+                if ("template".equals(parser.getName())) {
+                    readLanguageTemplate(texts);
+                } else {
+                    skipElement();
+                }
+            }
+        }
+
+        // Some descriptions don't list multilingual variants
+        if (localText.toString().trim().length() > 0) {
+            texts.put("default", localText.toString());
+        }
+        return texts;
+    }
+
+    private void readLanguageTemplate(Map<String, String> texts) throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        String lang = null;
+        while (nextChildElement(depth)) {
+            if ("title".equals(parser.getName())) {
+                lang = readText().trim();
+            } else if ("part".equals(parser.getName()) && lang != null && lang.length() < 3) {
+                // Hopefully a language code. Nasty hack!
+                readLanguagePart(texts, lang);
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    private void readLanguagePart(Map<String, String> texts, String lang) throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        String name = null;
+        while (nextChildElement(depth)) {
+            if ("name".equals(parser.getName())) {
+                name = readPartName();
+            } else if ("value".equals(parser.getName()) && "1".equals(name)) {
+                texts.put(lang, readText()); // hope there's no subtemplates or formatting for now
+            } else {
+                skipElement();
+            }
+        }
+    }
+
+    /**
+     * Moves to the next element directly inside the one at the given depth.
+     * @return false once that element is over
+     */
+    private boolean nextChildElement(int depth) throws IOException, XmlPullParserException {
+        while (true) {
+            int event = parser.next();
+            if (event == XmlPullParser.START_TAG) {
+                if (parser.getDepth() == depth + 1) {
+                    return true;
+                }
+                skipElement();
+            } else if (event == XmlPullParser.END_DOCUMENT
+                    || event == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads all the text inside the current element and moves to its end.
+     */
+    private String readText() throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        String text = null;
+        StringBuilder builder = null;
+        while (true) {
+            int event = parser.next();
+            if (event == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                break;
+            } else if (event == XmlPullParser.TEXT) {
+                if (text == null) {
+                    text = parser.getText();
+                } else {
+                    if (builder == null) {
+                        builder = new StringBuilder(text);
+                    }
+                    builder.append(parser.getText());
+                }
+            }
+        }
+        if (builder != null) {
+            return builder.toString();
+        }
+        return text != null ? text : "";
+    }
+
+    private void skipElement() throws IOException, XmlPullParserException {
+        int depth = parser.getDepth();
+        while (!(parser.next() == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            // skip
+        }
+    }
+}
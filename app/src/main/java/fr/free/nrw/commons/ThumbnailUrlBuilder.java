@@ -0,0 +1,81 @@
+package fr.free.nrw.commons;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.Locale;
+
+/**
+ * Builds thumbnail URLs the way the upload servers lay them out, so that most
+ * thumbnails can be loaded without asking the API for their URL first.
+ * The derived URL can still fail, for instance when the original is narrower than
+ * the requested width, callers should fall back to the API in that case.
+ */
+public final class ThumbnailUrlBuilder {
+
+    // Widths thumbnails are rounded up to, so that devices share the cached renderings
+    private static final int[] WIDTH_BUCKETS = {120, 240, 320, 480, 640, 800, 1024, 1280, 1920};
+
+    private ThumbnailUrlBuilder() {
+    }
+
+    /**
+     * @return the smallest bucket at least as wide as {@code width}, or the widest one
+     */
+    public static int bucketWidth(int width) {
+        for (int bucket : WIDTH_BUCKETS) {
+            if (bucket >= width) {
+                return bucket;
+            }
+        }
+        return WIDTH_BUCKETS[WIDTH_BUCKETS.length - 1];
+    }
+
+    /**
+     * @param filename file title, with or without the File: prefix
+     * @param width    requested width, rounded up with {@link #bucketWidth(int)}
+     * @return the thumbnail URL, or null for file types whose thumbnail name can't be predicted
+     */
+    @Nullable
+    public static String thumbnailUrl(@NonNull String filename, int width) {
+        String name = new PageTitle(filename).getText();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        String encodedName = Utils.urlEncode(name);
+        String thumbName;
+        int bucket = bucketWidth(width);
+        switch (name.substring(dot + 1).toLowerCase(Locale.ENGLISH)) {
+            case "jpg":
+            case "jpeg":
+            case "png":
+            case "gif":
+                thumbName = bucket + "px-" + encodedName;
+                break;
+            case "svg":
+                thumbName = bucket + "px-" + encodedName + ".png";
+                break;
+            case "tif":
+            case "tiff":
+                thumbName = "lossy-page1-" + bucket + "px-" + encodedName + ".jpg";
+                break;
+            case "pdf":
+            case "djvu":
+                thumbName = "page1-" + bucket + "px-" + encodedName + ".jpg";
+                break;
+            case "webm":
+            case "ogv":
+                thumbName = bucket + "px--" + encodedName + ".jpg";
+                break;
+            default:
+                return null;
+        }
+        String md5 = new String(Hex.encodeHex(DigestUtils.md5(name)));
+        return String.format("%s/thumb/%s/%s/%s/%s", BuildConfig.IMAGE_URL_BASE,
+                md5.substring(0, 1), md5.substring(0, 2), encodedName, thumbName);
+    }
+}
@@ -0,0 +1,246 @@
+package fr.free.nrw.commons;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import fr.free.nrw.commons.data.DBOpenHelper;
+import timber.log.Timber;
+
+import static fr.free.nrw.commons.data.DBUtils.evictLeastRecentlyUsed;
+
+/**
+ * Two level cache of thumbnail URLs keyed by file name and width: the in-memory
+ * LRU is checked on the main thread while views are bound, the SQLite table
+ * behind it survives restarts and is read in the background.
+ * Stored URLs expire after {@link #TTL_MILLIS}, and the least recently used rows
+ * are evicted past {@link #MAX_DISK_ENTRIES}.
+ * The table is private to this cache and nothing observes it, so it is read and
+ * written straight through {@link DBOpenHelper} rather than a content provider.
+ */
+@Singleton
+public class ThumbnailUrlCache {
+
+    static final long TTL_MILLIS = TimeUnit.DAYS.toMillis(30);
+    static final int MAX_DISK_ENTRIES = 5000;
+
+    private final DBOpenHelper dbOpenHelper;
+    private final LruCache<String, String> memoryCache;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public ThumbnailUrlCache(DBOpenHelper dbOpenHelper, LruCache<String, String> memoryCache) {
+        this.dbOpenHelper = dbOpenHelper;
+        this.memoryCache = memoryCache;
+    }
+
+    /**
+     * Looks up the in-memory level only, cheap enough for the main thread.
+     */
+    @Nullable
+    public String getFromMemory(@NonNull String filename, int width) {
+        String url = memoryCache.get(memoryKey(filename, width));
+        if (url != null) {
+            memoryHits.incrementAndGet();
+        }
+        return url;
+    }
+
+    /**
+     * Looks up several files in the database, promoting the ones found to memory.
+     * @return the URLs found, keyed by file name
+     */
+    @WorkerThread
+    @NonNull
+    public Map<String, String> getFromDisk(@NonNull Collection<String> filenames, int width) {
+        Map<String, String> urls = new HashMap<>();
+        if (filenames.isEmpty()) {
+            return urls;
+        }
+        String placeholders = TextUtils.join(",", Collections.nCopies(filenames.size(), "?"));
+        List<String> args = new ArrayList<>(filenames);
+        args.add(String.valueOf(width));
+        args.add(String.valueOf(System.currentTimeMillis() - TTL_MILLIS));
+        String selection = Table.COLUMN_FILENAME + " IN (" + placeholders + ") AND "
+                + Table.COLUMN_WIDTH + " = ? AND "
+                + Table.COLUMN_FETCHED + " > ?";
+        String[] selectionArgs = args.toArray(new String[args.size()]);
+
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        Cursor cursor = db.query(Table.TABLE_NAME,
+                new String[]{Table.COLUMN_FILENAME, Table.COLUMN_URL},
+                selection, selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                urls.put(cursor.getString(0), cursor.getString(1));
+                memoryCache.put(memoryKey(cursor.getString(0), width), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (!urls.isEmpty()) {
+            ContentValues lastUsed = new ContentValues();
+            lastUsed.put(Table.COLUMN_LAST_USED, System.currentTimeMillis());
+            db.update(Table.TABLE_NAME, lastUsed, selection, selectionArgs);
+        }
+        diskHits.addAndGet(urls.size());
+        misses.addAndGet(filenames.size() - urls.size());
+        return urls;
+    }
+
+    /**
+     * Stores URLs in both levels, then trims the database back to its bounds.
+     * @param urls thumbnail URLs keyed by file name
+     */
+    @WorkerThread
+    public void put(@NonNull Map<String, String> urls, int width) {
+        put(urls, width, System.currentTimeMillis());
+    }
+
+    void put(@NonNull Map<String, String> urls, int width, long fetched) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, String> url : urls.entrySet()) {
+                memoryCache.put(memoryKey(url.getKey(), width), url.getValue());
+                ContentValues cv = new ContentValues();
+                cv.put(Table.COLUMN_FILENAME, url.getKey());
+                cv.put(Table.COLUMN_WIDTH, width);
+                cv.put(Table.COLUMN_URL, url.getValue());
+                cv.put(Table.COLUMN_FETCHED, fetched);
+                cv.put(Table.COLUMN_LAST_USED, fetched);
+                db.insert(Table.TABLE_NAME, null, cv);
+            }
+            evict(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void evict(SQLiteDatabase db) {
+        int expired = db.delete(Table.TABLE_NAME, Table.COLUMN_FETCHED + " <= ?",
+                new String[]{String.valueOf(System.currentTimeMillis() - TTL_MILLIS)});
+        int evicted = evictLeastRecentlyUsed(db, Table.TABLE_NAME,
+                Table.COLUMN_ID, Table.COLUMN_LAST_USED, MAX_DISK_ENTRIES);
+        if (expired + evicted > 0) {
+            Timber.d("Dropped %d expired and %d least recently used thumbnail URLs", expired, evicted);
+        }
+    }
+
+    public long getMemoryHitCount() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return the number of files that had to be looked up on the network
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%d memory hits, %d disk hits, %d misses",
+                getMemoryHitCount(), getDiskHitCount(), getMissCount());
+    }
+
+    private static String memoryKey(String filename, int width) {
+        return width + "|" + filename;
+    }
+
+    public static class Table {
+        public static final String TABLE_NAME = "thumbnail_urls";
+
+        public static final String COLUMN_ID = "_id";
+        static final String COLUMN_FILENAME = "filename";
+        static final String COLUMN_WIDTH = "width";
+        static final String COLUMN_URL = "url";
+        static final String COLUMN_FETCHED = "fetched";
+        static final String COLUMN_LAST_USED = "last_used";
+
+        // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
+        public static final String[] ALL_FIELDS = {
+                COLUMN_ID,
+                COLUMN_FILENAME,
+                COLUMN_WIDTH,
+                COLUMN_URL,
+                COLUMN_FETCHED,
+                COLUMN_LAST_USED
+        };
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_FILENAME + " STRING,"
+                + COLUMN_WIDTH + " INTEGER,"
+                + COLUMN_URL + " STRING,"
+                + COLUMN_FETCHED + " INTEGER,"
+                + COLUMN_LAST_USED + " INTEGER,"
+                + "UNIQUE (" + COLUMN_FILENAME + ", " + COLUMN_WIDTH + ") ON CONFLICT REPLACE"
+                + ");";
+
+        static final String CREATE_LAST_USED_INDEX = "CREATE INDEX " + TABLE_NAME + "_last_used ON "
+                + TABLE_NAME + " (" + COLUMN_LAST_USED + ");";
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+            db.execSQL(CREATE_LAST_USED_INDEX);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 9) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 9) {
+                // table added in version 10
+                onCreate(db);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 10
+        }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package fr.free.nrw.commons;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import fr.free.nrw.commons.mwapi.MediaWikiApi;
+import fr.free.nrw.commons.utils.ExecutorUtils;
+import fr.free.nrw.commons.utils.InstrumentedThreadPoolExecutor;
+import timber.log.Timber;
+
+/**
+ * Resolves thumbnail URLs in batches. Requests made within {@link #BATCH_WINDOW_MILLIS}
+ * of each other, typically by the cells of a list being laid out, are sent as a single
+ * imageinfo query and the results are handed back to every waiting callback.
+ * <p>
+ * All methods must be called on the main thread, callbacks are run on it too.
+ */
+@Singleton
+public class ThumbnailUrlResolver {
+
+    // Width the API is asked to scale thumbnails to
+    public static final int THUMB_WIDTH = 640;
+    static final long BATCH_WINDOW_MILLIS = 50;
+    // Most titles the API accepts in one query
+    static final int MAX_BATCH_SIZE = 50;
+
+    public interface Callback {
+        /**
+         * @param url the thumbnail URL, or null if the file has none or the lookup failed
+         */
+        void onThumbnailUrl(@Nullable String url);
+    }
+
+    private final MediaWikiApi mwApi;
+    private final ThumbnailUrlCache cache;
+    private final Executor ioExecutor;
+    private final Executor uiExecutor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Callbacks waiting for each filename, queued or in flight
+    private final Map<String, List<Callback>> waiting = new HashMap<>();
+    // Filenames not sent yet
+    private final Set<String> queued = new LinkedHashSet<>();
+    private final Runnable flush = this::flush;
+
+    @Inject
+    public ThumbnailUrlResolver(MediaWikiApi mwApi, ThumbnailUrlCache cache,
+                                InstrumentedThreadPoolExecutor ioExecutor) {
+        this(mwApi, cache, ioExecutor, ExecutorUtils.uiExecutor());
+    }
+
+    ThumbnailUrlResolver(MediaWikiApi mwApi, ThumbnailUrlCache cache,
+                         Executor ioExecutor, Executor uiExecutor) {
+        this.mwApi = mwApi;
+        this.cache = cache;
+        this.ioExecutor = ioExecutor;
+        this.uiExecutor = uiExecutor;
+    }
+
+    /**
+     * Queues a lookup, joining the one already pending for the same file if any.
+     */
+    public void resolve(@NonNull String filename, @NonNull Callback callback) {
+        List<Callback> callbacks = waiting.get(filename);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<>(1);
+        callbacks.add(callback);
+        waiting.put(filename, callbacks);
+        queued.add(filename);
+        if (queued.size() == 1) {
+            handler.postDelayed(flush, BATCH_WINDOW_MILLIS);
+        } else if (queued.size() >= MAX_BATCH_SIZE) {
+            handler.removeCallbacks(flush);
+            flush();
+        }
+    }
+
+    /**
+     * Stops waiting for a lookup, the callback won't be called.
+     * The file is dropped from the next batch if nobody else waits for it.
+     */
+    public void cancel(@NonNull String filename, @NonNull Callback callback) {
+        List<Callback> callbacks = waiting.get(filename);
+        if (callbacks == null || !callbacks.remove(callback) || !callbacks.isEmpty()) {
+            return;
+        }
+        waiting.remove(filename);
+        queued.remove(filename);
+        if (queued.isEmpty()) {
+            handler.removeCallbacks(flush);
+        }
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    void flush() {
+        List<String> batch = new ArrayList<>(queued);
+        queued.clear();
+        for (int start = 0; start < batch.size(); start += MAX_BATCH_SIZE) {
+            List<String> titles = batch.subList(start, Math.min(start + MAX_BATCH_SIZE, batch.size()));
+            ioExecutor.execute(() -> fetch(titles));
+        }
+    }
+
+    private void fetch(List<String> titles) {
+        Map<String, String> urls = new HashMap<>(cache.getFromDisk(titles, THUMB_WIDTH));
+        List<String> missing = new ArrayList<>();
+        for (String title : titles) {
+            if (!urls.containsKey(title)) {
+                missing.add(title);
+            }
+        }
+        if (!missing.isEmpty()) {
+            try {
+                Map<String, String> fetched = mwApi.findThumbnailsByFilenames(missing);
+                Timber.d("Resolved %d of %d thumbnails in one query, %s",
+                        fetched.size(), missing.size(), cache);
+                cache.put(fetched, THUMB_WIDTH);
+                urls.putAll(fetched);
+            } catch (IOException e) {
+                Timber.d("Unable to resolve thumbnails, %s", e);
+            }
+        }
+        uiExecutor.execute(() -> deliver(titles, urls));
+    }
+
+    private void deliver(List<String> titles, Map<String, String> urls) {
+        for (String title : titles) {
+            List<Callback> callbacks = waiting.get(title);
+            if (callbacks == null || queued.contains(title)) {
+                // Cancelled, or cancelled and requested again since this batch left
+                continue;
+            }
+            waiting.remove(title);
+            for (Callback callback : callbacks) {
+                callback.onThumbnailUrl(urls.get(title));
+            }
+        }
+    }
+}
@@ -23,10 +23,9 @@ import com.pedrogomez.renderers.RVRendererAdapter;
 
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
@@ -39,8 +38,11 @@ import fr.free.nrw.commons.di.CommonsDaggerSupportFragment;
 import fr.free.nrw.commons.mwapi.MediaWikiApi;
 import fr.free.nrw.commons.upload.MwVolleyApi;
 import fr.free.nrw.commons.utils.StringSortingUtils;
+import io.reactivex.Completable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 import timber.log.Timber;
 
@@ -53,6 +55,7 @@ import static android.view.KeyEvent.KEYCODE_BACK;
 public class CategorizationFragment extends CommonsDaggerSupportFragment {
 
     public static final int SEARCH_CATS_LIMIT = 25;
+    static final long SEARCH_DEBOUNCE_MILLIS = 500;
 
     @BindView(R.id.categoriesListBox)
     RecyclerView categoriesList;
@@ -68,11 +71,13 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
     @Inject MediaWikiApi mwApi;
     @Inject @Named("default_preferences") SharedPreferences prefs;
     @Inject CategoryDao categoryDao;
+    @Inject CategoryIndex categoryIndex;
+    @Inject CategorySearchCache searchCache;
 
     private RVRendererAdapter<CategoryItem> categoriesAdapter;
     private OnCategoriesSaveHandler onCategoriesSaveHandler;
-    private HashMap<String, ArrayList<String>> categoriesCache;
     private List<CategoryItem> selectedCategories = new ArrayList<>();
+    private final CategorySearchMetrics searchMetrics = new CategorySearchMetrics();
 
     private final CategoriesAdapterFactory adapterFactory = new CategoriesAdapterFactory(item -> {
         if (item.isSelected()) {
@@ -92,25 +97,27 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
         categoriesList.setLayoutManager(new LinearLayoutManager(getContext()));
 
         ArrayList<CategoryItem> items = new ArrayList<>();
-        categoriesCache = new HashMap<>();
         if (savedInstanceState != null) {
             items.addAll(savedInstanceState.getParcelableArrayList("currentCategories"));
-            //noinspection unchecked
-            categoriesCache.putAll((HashMap<String, ArrayList<String>>) savedInstanceState
-                    .getSerializable("categoriesCache"));
         }
 
         categoriesAdapter = adapterFactory.create(items);
         categoriesList.setAdapter(categoriesAdapter);
 
-        RxTextView.textChanges(categoriesFilter)
+        searches(RxTextView.textChanges(categoriesFilter).map(CharSequence::toString),
+                Schedulers.computation(), AndroidSchedulers.mainThread(),
+                searchMetrics, this::categorySuggestions)
                 .takeUntil(RxView.detaches(categoriesFilter))
-                .debounce(500, TimeUnit.MILLISECONDS)
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(filter -> updateCategoryList(filter.toString()));
+                .subscribe(this::showCategories, Timber::e);
         return rootView;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        Timber.d("Category search session: %s, cache: %s", searchMetrics, searchCache);
+    }
+
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         menu.clear();
@@ -144,7 +151,6 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
             items.add(categoriesAdapter.getItem(i));
         }
         outState.putParcelableArrayList("currentCategories", items);
-        outState.putSerializable("categoriesCache", categoriesCache);
     }
 
     @Override
@@ -172,53 +178,86 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
         getActivity().setTitle(R.string.categories_activity_title);
     }
 
-    private void updateCategoryList(String filter) {
-        Observable.fromIterable(selectedCategories)
+    /**
+     * Searches each filter once the typing has settled, a new filter disposing of the search
+     * of the previous one, requests included. Going back to the filter being searched
+     * doesn't search it again.
+     */
+    static <T> Observable<T> searches(Observable<String> filters, Scheduler debounceScheduler,
+                                      Scheduler observeScheduler, CategorySearchMetrics metrics,
+                                      Function<String, Observable<T>> search) {
+        return filters
+                .debounce(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS, debounceScheduler)
+                .distinctUntilChanged()
+                .observeOn(observeScheduler)
+                .switchMap(filter -> search.apply(filter)
+                        .doOnSubscribe(disposable -> metrics.queryStarted())
+                        .doOnComplete(metrics::queryCompleted));
+    }
+
+    /**
+     * Searches the suggestions for a filter, emitting the ones found locally at once,
+     * then again with the ones from the network merged in once they arrive.
+     */
+    private Observable<List<CategoryItem>> categorySuggestions(String filter) {
+        return localSuggestions(filter)
+                .toList()
+                .toObservable()
+                .concatMap(local -> Observable.just(local)
+                        .concatWith(Observable.fromIterable(local)
+                                .concatWith(networkSuggestions(filter))
+                                .toList()
+                                .toObservable()))
+                .concatMap(suggestions -> ranked(suggestions, filter))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .doOnSubscribe(disposable -> {
                     categoriesSearchInProgress.setVisibility(View.VISIBLE);
                     categoriesNotFoundView.setVisibility(View.GONE);
                     categoriesSkip.setVisibility(View.GONE);
-                    categoriesAdapter.clear();
                 })
-                .observeOn(Schedulers.io())
-                .concatWith(
-                        searchAll(filter)
-                                .mergeWith(searchCategories(filter))
-                                .concatWith(TextUtils.isEmpty(filter)
-                                        ? defaultCategories() : Observable.empty())
-                )
+                .doOnError(Timber::e)
+                .onErrorResumeNext(Observable.empty())
+                .doOnComplete(() -> {
+                    categoriesSearchInProgress.setVisibility(View.GONE);
+
+                    if (categoriesAdapter.getItemCount() == selectedCategories.size()) {
+                        // There are no suggestions
+                        if (TextUtils.isEmpty(filter)) {
+                            // Allow to send image with no categories
+                            categoriesSkip.setVisibility(View.VISIBLE);
+                        } else {
+                            // Inform the user that the searched term matches  no category
+                            categoriesNotFoundView.setText(getString(R.string.categories_not_found, filter));
+                            categoriesNotFoundView.setVisibility(View.VISIBLE);
+                        }
+                    }
+                });
+    }
+
+    private Observable<List<CategoryItem>> ranked(List<CategoryItem> suggestions, String filter) {
+        return Observable.fromIterable(selectedCategories)
+                .concatWith(Observable.fromIterable(suggestions))
                 .filter(categoryItem -> !containsYear(categoryItem.getName()))
                 .distinct()
-                .sorted(sortBySimilarity(filter))
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(
-                        s -> categoriesAdapter.add(s),
-                         Timber::e,
-                        () -> {
-                            categoriesAdapter.notifyDataSetChanged();
-                            categoriesSearchInProgress.setVisibility(View.GONE);
-
-                            if (categoriesAdapter.getItemCount() == selectedCategories.size()) {
-                                // There are no suggestions
-                                if (TextUtils.isEmpty(filter)) {
-                                    // Allow to send image with no categories
-                                    categoriesSkip.setVisibility(View.VISIBLE);
-                                } else {
-                                    // Inform the user that the searched term matches  no category
-                                    categoriesNotFoundView.setText(getString(R.string.categories_not_found, filter));
-                                    categoriesNotFoundView.setVisibility(View.VISIBLE);
-                                }
-                            }
-                        }
-                );
+                .toList()
+                .map(items -> {
+                    int[] order = StringSortingUtils.orderBySimilarity(getStringList(items), filter);
+                    List<CategoryItem> ranked = new ArrayList<>(order.length);
+                    for (int index : order) {
+                        ranked.add(items.get(index));
+                    }
+                    return ranked;
+                })
+                .toObservable();
     }
 
-    private Comparator<CategoryItem> sortBySimilarity(final String filter) {
-        Comparator<String> stringSimilarityComparator = StringSortingUtils.sortBySimilarity(filter);
-        return (firstItem, secondItem) -> stringSimilarityComparator
-                .compare(firstItem.getName(), secondItem.getName());
+    private void showCategories(List<CategoryItem> items) {
+        categoriesAdapter.clear();
+        for (CategoryItem item : items) {
+            categoriesAdapter.add(item);
+        }
+        categoriesAdapter.notifyDataSetChanged();
     }
 
     private List<String> getStringList(List<CategoryItem> input) {
@@ -229,16 +268,41 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
         return output;
     }
 
-    private Observable<CategoryItem> defaultCategories() {
-        return gpsCategories()
-                .concatWith(titleCategories())
-                .concatWith(recentCategories());
+    /**
+     * Suggestions answered from the device: the location and recent categories when
+     * nothing is typed, the local category index otherwise.
+     */
+    private Observable<CategoryItem> localSuggestions(String filter) {
+        if (TextUtils.isEmpty(filter)) {
+            return gpsCategories()
+                    .concatWith(recentCategories());
+        }
+        return Observable.fromCallable(() -> categoryIndex.search(filter, SEARCH_CATS_LIMIT))
+                .flatMapIterable(names -> names)
+                .map(name -> new CategoryItem(name, false));
+    }
+
+    /**
+     * Suggestions from the API, added to the local category index.
+     */
+    private Observable<CategoryItem> networkSuggestions(String filter) {
+        Observable<CategoryItem> suggestions = TextUtils.isEmpty(filter)
+                ? titleCategories()
+                : searchAll(filter).mergeWith(searchCategories(filter));
+        return suggestions
+                .toList()
+                .doOnSuccess(items -> categoryIndex.addAll(getStringList(items)))
+                .flatMapObservable(Observable::fromIterable);
     }
 
     private Observable<CategoryItem> gpsCategories() {
-        return Observable.fromIterable(
-                MwVolleyApi.GpsCatExists.getGpsCatExists()
-                        ? MwVolleyApi.getGpsCat() : new ArrayList<>())
+        return Observable.fromCallable(() -> {
+            List<String> names = MwVolleyApi.GpsCatExists.getGpsCatExists()
+                    ? MwVolleyApi.getGpsCat() : new ArrayList<>();
+            categoryIndex.addAll(names);
+            return names;
+        })
+                .flatMapIterable(names -> names)
                 .map(name -> new CategoryItem(name, false));
     }
 
@@ -246,9 +310,8 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
         //Retrieve the title that was saved when user tapped submit icon
         String title = prefs.getString("Title", "");
 
-        return mwApi
-                .searchTitles(title, SEARCH_CATS_LIMIT)
-                .map(name -> new CategoryItem(name, false));
+        return cachedSearch(CategorySearchCache.TITLES, title,
+                () -> mwApi.searchTitles(title, SEARCH_CATS_LIMIT));
     }
 
     private Observable<CategoryItem> recentCategories() {
@@ -262,16 +325,8 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
             return Observable.empty();
         }
 
-        //if user types in something that is in cache, return cached category
-        if (categoriesCache.containsKey(term)) {
-            return Observable.fromIterable(categoriesCache.get(term))
-                    .map(name -> new CategoryItem(name, false));
-        }
-
-        //otherwise, search API for matching categories
-        return mwApi
-                .allCategories(term, SEARCH_CATS_LIMIT)
-                .map(name -> new CategoryItem(name, false));
+        return cachedSearch(CategorySearchCache.ALL_CATEGORIES, term,
+                () -> mwApi.allCategories(term, SEARCH_CATS_LIMIT));
     }
 
     private Observable<CategoryItem> searchCategories(String term) {
@@ -280,9 +335,21 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
             return Observable.empty();
         }
 
-        return mwApi
-                .searchCategories(term, SEARCH_CATS_LIMIT)
-                .map(s -> new CategoryItem(s, false));
+        return cachedSearch(CategorySearchCache.SEARCH, term,
+                () -> mwApi.searchCategories(term, SEARCH_CATS_LIMIT));
+    }
+
+    /**
+     * Answers a search from the search cache if it can, otherwise sends it to the API.
+     * A failed search is dropped alone, the other searches still make suggestions.
+     */
+    private Observable<CategoryItem> cachedSearch(String queryType, String term,
+                                                  Callable<Observable<String>> request) {
+        return searchCache.search(queryType, term, SEARCH_CATS_LIMIT,
+                () -> request.call().doOnSubscribe(disposable -> searchMetrics.requestSent()))
+                .doOnError(Timber::e)
+                .onErrorResumeNext(Observable.empty())
+                .map(name -> new CategoryItem(name, false));
     }
 
     private boolean containsYear(String item) {
@@ -312,12 +379,19 @@ public class CategorizationFragment extends CommonsDaggerSupportFragment {
 
         category.incTimesUsed();
         categoryDao.save(category);
+        Completable.fromAction(() -> categoryIndex.markUsed(item.getName()))
+                .subscribeOn(Schedulers.io())
+                .subscribe(() -> {}, Timber::e);
     }
 
     public int getCurrentSelectedCount() {
         return selectedCategories.size();
     }
 
+    public CategorySearchMetrics getSearchMetrics() {
+        return searchMetrics;
+    }
+
     /**
      * Show dialog asking for confirmation to leave without saving categories.
      */
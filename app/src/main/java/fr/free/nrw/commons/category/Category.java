@@ -3,24 +3,40 @@ package fr.free.nrw.commons.category;
 import android.net.Uri;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a category
  */
 public class Category {
+    /**
+     * Time after which a use of a category counts half as much towards its frecency.
+     */
+    static final long FRECENCY_HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
     private Uri contentUri;
     private String name;
     private Date lastUsed;
     private int timesUsed;
+    private double frecency;
 
     public Category() {
     }
 
+    /**
+     * Creates a category whose frecency is estimated as if it had been used
+     * {@code timesUsed} times at {@code lastUsed}.
+     */
     public Category(Uri contentUri, String name, Date lastUsed, int timesUsed) {
+        this(contentUri, name, lastUsed, timesUsed, frecency(lastUsed.getTime(), timesUsed));
+    }
+
+    public Category(Uri contentUri, String name, Date lastUsed, int timesUsed, double frecency) {
         this.contentUri = contentUri;
         this.name = name;
         this.lastUsed = lastUsed;
         this.timesUsed = timesUsed;
+        this.frecency = frecency;
     }
 
     /**
@@ -68,11 +84,51 @@ public class Category {
     }
 
     /**
-     * Increments timesUsed by 1 and sets last used date as now.
+     * Gets the frecency of the category, which ranks it among the recent ones
+     *
+     * @return frecency, 0 if it was never used
+     */
+    public double getFrecency() {
+        return frecency;
+    }
+
+    /**
+     * Increments timesUsed by 1, sets last used date as now and adds the use to the frecency.
      */
     public void incTimesUsed() {
         timesUsed++;
         touch();
+        frecency = addUse(frecency, lastUsed.getTime());
+    }
+
+    /**
+     * Frecency of a category used {@code timesUsed} times, all of them at {@code lastUsed}.
+     *
+     * @see #addUse(double, long)
+     */
+    static double frecency(long lastUsed, int timesUsed) {
+        if (timesUsed <= 0) {
+            return 0;
+        }
+        return (double) lastUsed / FRECENCY_HALF_LIFE_MILLIS + Math.log(timesUsed) / Math.log(2);
+    }
+
+    /**
+     * Adds a use to a frecency. The frecency is the base 2 logarithm of the sum of
+     * 2^(t / half life) over the times t the category was used: each use weighs twice as
+     * much as one made a half life earlier. As all weights decay alike, frecencies
+     * computed when the categories were used still rank them right later on, so they
+     * can be stored and indexed.
+     */
+    static double addUse(double frecency, long usedAt) {
+        double use = (double) usedAt / FRECENCY_HALF_LIFE_MILLIS;
+        if (frecency <= 0) {
+            return use;
+        }
+        double high = Math.max(frecency, use);
+        double low = Math.min(frecency, use);
+        // log2(2^high + 2^low), without computing the huge powers
+        return high + Math.log1p(Math.pow(2, low - high)) / Math.log(2);
     }
 
     /**
@@ -27,6 +27,8 @@ public class CategoryContentProvider extends CommonsDaggerContentProvider {
     private static final int CATEGORIES = 1;
     private static final int CATEGORIES_ID = 2;
     private static final String BASE_PATH = "categories";
+    // Query parameter limiting the number of categories returned, applied in SQL
+    private static final String QUERY_PARAMETER_LIMIT = "limit";
 
     public static final Uri BASE_URI = Uri.parse("content://" + AUTHORITY + "/" + BASE_PATH);
 
@@ -41,6 +43,12 @@ public class CategoryContentProvider extends CommonsDaggerContentProvider {
         return Uri.parse(BASE_URI.toString() + "/" + id);
     }
 
+    public static Uri uriWithLimit(int limit) {
+        return BASE_URI.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
     @Inject DBOpenHelper dbOpenHelper;
 
     @SuppressWarnings("ConstantConditions")
@@ -58,7 +66,7 @@ public class CategoryContentProvider extends CommonsDaggerContentProvider {
         switch (uriType) {
             case CATEGORIES:
                 cursor = queryBuilder.query(db, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                        null, null, sortOrder, uri.getQueryParameter(QUERY_PARAMETER_LIMIT));
                 break;
             case CATEGORIES_ID:
                 cursor = queryBuilder.query(db,
@@ -73,7 +73,8 @@ public class CategoryDao {
     }
 
     /**
-     * Retrieve recently-used categories, ordered by descending date.
+     * Retrieve recently-used categories, ordered by descending frecency: the
+     * categories used most often, and most recently, come first.
      *
      * @return a list containing recent categories
      */
@@ -84,12 +85,12 @@ public class CategoryDao {
         ContentProviderClient db = clientProvider.get();
         try {
             cursor = db.query(
-                    CategoryContentProvider.BASE_URI,
+                    CategoryContentProvider.uriWithLimit(limit),
                     Table.ALL_FIELDS,
                     null,
                     new String[]{},
-                    Table.COLUMN_LAST_USED + " DESC");
-            // fixme add a limit on the original query instead of falling out of the loop?
+                    Table.COLUMN_FRECENCY + " DESC");
+            // The limit is applied in SQL, reading stops here too in case it wasn't
             while (cursor != null && cursor.moveToNext()
                     && cursor.getPosition() < limit) {
                 items.add(fromCursor(cursor).getName());
@@ -111,7 +112,8 @@ public class CategoryDao {
                 CategoryContentProvider.uriForId(cursor.getInt(0)),
                 cursor.getString(1),
                 new Date(cursor.getLong(2)),
-                cursor.getInt(3)
+                cursor.getInt(3),
+                cursor.getDouble(4)
         );
     }
 
@@ -120,6 +122,7 @@ public class CategoryDao {
         cv.put(CategoryDao.Table.COLUMN_NAME, category.getName());
         cv.put(CategoryDao.Table.COLUMN_LAST_USED, category.getLastUsed().getTime());
         cv.put(CategoryDao.Table.COLUMN_TIMES_USED, category.getTimesUsed());
+        cv.put(CategoryDao.Table.COLUMN_FRECENCY, category.getFrecency());
         return cv;
     }
 
@@ -130,26 +133,44 @@ public class CategoryDao {
         static final String COLUMN_NAME = "name";
         static final String COLUMN_LAST_USED = "last_used";
         static final String COLUMN_TIMES_USED = "times_used";
+        static final String COLUMN_FRECENCY = "frecency";
 
         // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
         public static final String[] ALL_FIELDS = {
                 COLUMN_ID,
                 COLUMN_NAME,
                 COLUMN_LAST_USED,
-                COLUMN_TIMES_USED
+                COLUMN_TIMES_USED,
+                COLUMN_FRECENCY
         };
 
         static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
 
         static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_NAME + " STRING,"
+                + COLUMN_LAST_USED + " INTEGER,"
+                + COLUMN_TIMES_USED + " INTEGER,"
+                + COLUMN_FRECENCY + " REAL"
+                + ");";
+
+        static final String CREATE_FRECENCY_INDEX = "CREATE INDEX " + TABLE_NAME + "_frecency ON "
+                + TABLE_NAME + " (" + COLUMN_FRECENCY + ");";
+
+        // Table as added in version 5
+        static final String CREATE_V5_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
                 + COLUMN_ID + " INTEGER PRIMARY KEY,"
                 + COLUMN_NAME + " STRING,"
                 + COLUMN_LAST_USED + " INTEGER,"
                 + COLUMN_TIMES_USED + " INTEGER"
                 + ");";
 
+        // Upgrade from version 14 ->
+        static final String ADD_FRECENCY_FIELD = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_FRECENCY + " REAL;";
+
         public static void onCreate(SQLiteDatabase db) {
             db.execSQL(CREATE_TABLE_STATEMENT);
+            db.execSQL(CREATE_FRECENCY_INDEX);
         }
 
         public static void onDelete(SQLiteDatabase db) {
@@ -169,7 +190,7 @@ public class CategoryDao {
             }
             if (from == 4) {
                 // table added in version 5
-                onCreate(db);
+                db.execSQL(CREATE_V5_TABLE_STATEMENT);
                 from++;
                 onUpdate(db, from, to);
                 return;
@@ -179,6 +200,78 @@ public class CategoryDao {
                 onUpdate(db, from, to);
                 return;
             }
+            if (from == 6) {
+                // table unchanged in version 7
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 7) {
+                // table unchanged in version 8
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 8) {
+                // table unchanged in version 9
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 9) {
+                // table unchanged in version 10
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 10) {
+                // table unchanged in version 11
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 11) {
+                // table unchanged in version 12
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 12) {
+                // table unchanged in version 13
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 13) {
+                // table unchanged in version 14
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 14) {
+                // frecency added in version 15
+                db.execSQL(ADD_FRECENCY_FIELD);
+                setEstimatedFrecencies(db);
+                db.execSQL(CREATE_FRECENCY_INDEX);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+        }
+
+        // Only the last use of each category is known, its other uses are taken to be as recent
+        private static void setEstimatedFrecencies(SQLiteDatabase db) {
+            Cursor cursor = db.query(TABLE_NAME, new String[]{COLUMN_ID, COLUMN_LAST_USED, COLUMN_TIMES_USED},
+                    null, null, null, null, null);
+            try {
+                ContentValues cv = new ContentValues();
+                while (cursor.moveToNext()) {
+                    cv.put(COLUMN_FRECENCY, Category.frecency(cursor.getLong(1), cursor.getInt(2)));
+                    db.update(TABLE_NAME, cv, COLUMN_ID + " = ?", new String[]{String.valueOf(cursor.getLong(0))});
+                }
+            } finally {
+                cursor.close();
+            }
         }
     }
 }
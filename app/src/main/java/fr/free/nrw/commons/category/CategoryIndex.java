@@ -0,0 +1,302 @@
+package fr.free.nrw.commons.category;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import fr.free.nrw.commons.data.DBOpenHelper;
+import timber.log.Timber;
+
+/**
+ * Local full text index of the categories met so far: results of past searches,
+ * suggestions made from the location of an upload and categories used before.
+ * It answers category autocomplete without going to the network, each word typed
+ * being matched as a prefix of a word of the category name.
+ */
+@Singleton
+public class CategoryIndex {
+
+    static final int MAX_ENTRIES = 5000;
+
+    private final DBOpenHelper dbOpenHelper;
+
+    @Inject
+    public CategoryIndex(DBOpenHelper dbOpenHelper) {
+        this.dbOpenHelper = dbOpenHelper;
+    }
+
+    /**
+     * @return up to {@code limit} categories having a word starting with each word of
+     * the term, the most used first
+     */
+    @WorkerThread
+    @NonNull
+    public List<String> search(@NonNull String term, int limit) {
+        List<String> names = new ArrayList<>();
+        String match = matchExpression(term);
+        if (match.isEmpty()) {
+            return names;
+        }
+        Cursor cursor = dbOpenHelper.getReadableDatabase().rawQuery(
+                "SELECT c." + Table.COLUMN_NAME
+                        + " FROM " + FullTextTable.TABLE_NAME + " f"
+                        + " JOIN " + Table.TABLE_NAME + " c ON c." + Table.COLUMN_ID + " = f.docid"
+                        + " WHERE f." + FullTextTable.COLUMN_WORDS + " MATCH ?"
+                        + " ORDER BY c." + Table.COLUMN_TIMES_USED + " DESC, c." + Table.COLUMN_TIMES_SEEN + " DESC"
+                        + " LIMIT " + limit,
+                new String[]{match});
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    /**
+     * Records categories returned by a search or suggested for an upload.
+     */
+    @WorkerThread
+    public void addAll(@NonNull Collection<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (String name : names) {
+                long id = insertIfAbsent(db, name, now);
+                db.execSQL("UPDATE " + Table.TABLE_NAME + " SET "
+                                + Table.COLUMN_TIMES_SEEN + " = " + Table.COLUMN_TIMES_SEEN + " + 1, "
+                                + Table.COLUMN_LAST_SEEN + " = ? WHERE " + Table.COLUMN_ID + " = ?",
+                        new Object[]{now, id});
+            }
+            trim(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Records that a category was picked for an upload, which ranks it above the
+     * ones only seen in search results.
+     */
+    @WorkerThread
+    public void markUsed(@NonNull String name) {
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            long id = insertIfAbsent(db, name, now);
+            db.execSQL("UPDATE " + Table.TABLE_NAME + " SET "
+                            + Table.COLUMN_TIMES_USED + " = " + Table.COLUMN_TIMES_USED + " + 1, "
+                            + Table.COLUMN_LAST_SEEN + " = ? WHERE " + Table.COLUMN_ID + " = ?",
+                    new Object[]{now, id});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * The text indexed for a category: the simple tokenizer only folds the case of
+     * ASCII letters, so the name is lower cased here, underscores read as spaces.
+     */
+    static String words(String name) {
+        return name.replace('_', ' ').toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Turns a search term into a full text query matching each of its words as a prefix.
+     * Words are split where the tokenizer splits them, on ASCII characters other than
+     * letters and digits, which also drops the query syntax characters.
+     */
+    static String matchExpression(String term) {
+        StringBuilder match = new StringBuilder();
+        for (String word : words(term).split("[\\x00-\\x2f\\x3a-\\x40\\x5b-\\x60\\x7b-\\x7f]+")) {
+            if (!word.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(word).append('*');
+            }
+        }
+        return match.toString();
+    }
+
+    private static long insertIfAbsent(SQLiteDatabase db, String name, long now) {
+        Cursor cursor = db.query(Table.TABLE_NAME, new String[]{Table.COLUMN_ID},
+                Table.COLUMN_NAME + " = ?", new String[]{name}, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        ContentValues cv = new ContentValues();
+        cv.put(Table.COLUMN_NAME, name);
+        cv.put(Table.COLUMN_TIMES_SEEN, 0);
+        cv.put(Table.COLUMN_TIMES_USED, 0);
+        cv.put(Table.COLUMN_LAST_SEEN, now);
+        long id = db.insert(Table.TABLE_NAME, null, cv);
+        ContentValues text = new ContentValues();
+        text.put("docid", id);
+        text.put(FullTextTable.COLUMN_WORDS, words(name));
+        db.insert(FullTextTable.TABLE_NAME, null, text);
+        return id;
+    }
+
+    // Keeps the categories used or seen most recently, sorting them only once there are too many
+    private static void trim(SQLiteDatabase db) {
+        if (DatabaseUtils.queryNumEntries(db, Table.TABLE_NAME) <= MAX_ENTRIES) {
+            return;
+        }
+        String evicted = "SELECT " + Table.COLUMN_ID + " FROM " + Table.TABLE_NAME
+                + " ORDER BY " + Table.COLUMN_TIMES_USED + " > 0 DESC, " + Table.COLUMN_LAST_SEEN + " DESC"
+                + " LIMIT -1 OFFSET " + MAX_ENTRIES;
+        db.execSQL("DELETE FROM " + FullTextTable.TABLE_NAME + " WHERE docid IN (" + evicted + ")");
+        int count = db.delete(Table.TABLE_NAME, Table.COLUMN_ID + " IN (" + evicted + ")", null);
+        if (count > 0) {
+            Timber.d("Dropped %d categories from the index", count);
+        }
+    }
+
+    public static class Table {
+        public static final String TABLE_NAME = "category_index";
+
+        public static final String COLUMN_ID = "_id";
+        static final String COLUMN_NAME = "name";
+        static final String COLUMN_TIMES_SEEN = "times_seen";
+        static final String COLUMN_TIMES_USED = "times_used";
+        static final String COLUMN_LAST_SEEN = "last_seen";
+
+        // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
+        public static final String[] ALL_FIELDS = {
+                COLUMN_ID,
+                COLUMN_NAME,
+                COLUMN_TIMES_SEEN,
+                COLUMN_TIMES_USED,
+                COLUMN_LAST_SEEN
+        };
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_NAME + " STRING UNIQUE,"
+                + COLUMN_TIMES_SEEN + " INTEGER,"
+                + COLUMN_TIMES_USED + " INTEGER,"
+                + COLUMN_LAST_SEEN + " INTEGER"
+                + ");";
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 12) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 12) {
+                // table added in version 13
+                onCreate(db);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 13
+        }
+    }
+
+    /**
+     * Full text table of the words of the category names, its docids are the ids of
+     * {@link Table}. Created after {@link Table}, which it is filled from on upgrade.
+     */
+    public static class FullTextTable {
+        public static final String TABLE_NAME = "category_index_words";
+
+        static final String COLUMN_WORDS = "words";
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        static final String CREATE_TABLE_STATEMENT = "CREATE VIRTUAL TABLE " + TABLE_NAME
+                + " USING fts4(" + COLUMN_WORDS + ");";
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 12) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 12) {
+                // table added in version 13, seeded with the categories used before
+                onCreate(db);
+                seedFromRecentCategories(db);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 13
+        }
+
+        private static void seedFromRecentCategories(SQLiteDatabase db) {
+            Cursor cursor = db.query(CategoryDao.Table.TABLE_NAME,
+                    new String[]{CategoryDao.Table.COLUMN_NAME, CategoryDao.Table.COLUMN_LAST_USED,
+                            CategoryDao.Table.COLUMN_TIMES_USED},
+                    null, null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    if (cursor.isNull(0)) {
+                        continue;
+                    }
+                    long id = insertIfAbsent(db, cursor.getString(0), cursor.getLong(1));
+                    db.execSQL("UPDATE " + Table.TABLE_NAME + " SET "
+                                    + Table.COLUMN_TIMES_USED + " = ? WHERE " + Table.COLUMN_ID + " = ?",
+                            new Object[]{cursor.getInt(2), id});
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+}
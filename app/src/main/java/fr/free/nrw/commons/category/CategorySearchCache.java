@@ -0,0 +1,320 @@
+package fr.free.nrw.commons.category;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.text.TextUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import fr.free.nrw.commons.data.DBOpenHelper;
+import io.reactivex.Observable;
+import timber.log.Timber;
+
+import static fr.free.nrw.commons.data.DBUtils.evictLeastRecentlyUsed;
+
+/**
+ * App-wide cache of category search results, keyed by query type and term and kept
+ * in the database so that upload sessions share them. Results expire after
+ * {@link #TTL_MILLIS}, and the least recently used ones are evicted past
+ * {@link #MAX_ENTRIES}. A prefix search whose results were complete also answers
+ * the searches of longer prefixes, by filtering its results.
+ */
+@Singleton
+public class CategorySearchCache {
+
+    /**
+     * Categories whose name starts with the term, the only type answered from shorter prefixes.
+     */
+    public static final String ALL_CATEGORIES = "allcategories";
+    /**
+     * Full text search of the categories.
+     */
+    public static final String SEARCH = "search";
+    /**
+     * Full text search of the categories with the title of the upload.
+     */
+    public static final String TITLES = "titles";
+
+    static final long TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+    static final int MAX_ENTRIES = 1000;
+
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final Type NAMES_TYPE = new TypeToken<List<String>>() {}.getType();
+
+    private final DBOpenHelper dbOpenHelper;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong prefixHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Inject
+    public CategorySearchCache(DBOpenHelper dbOpenHelper) {
+        this.dbOpenHelper = dbOpenHelper;
+    }
+
+    /**
+     * Answers a search from the cache if it can, otherwise sends it and stores its results.
+     * Results are only stored once the request completed: one failing part way, after
+     * some results came in, stores nothing and passes its error on.
+     * @param limit most results the search is asked for
+     */
+    @NonNull
+    public Observable<String> search(@NonNull String queryType, @NonNull String term, int limit,
+                                     @NonNull Callable<Observable<String>> request) {
+        return Observable.defer(() -> {
+            List<String> cached = get(queryType, term);
+            if (cached != null) {
+                return Observable.fromIterable(cached);
+            }
+            return request.call()
+                    .toList()
+                    .doOnSuccess(names -> put(queryType, term, names, limit))
+                    .flatMapObservable(Observable::fromIterable);
+        });
+    }
+
+    /**
+     * @return the cached results of the search, or null if it has to be sent
+     */
+    @WorkerThread
+    @Nullable
+    public List<String> get(@NonNull String queryType, @NonNull String term) {
+        String key = key(queryType, term);
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        String fresh = String.valueOf(System.currentTimeMillis() - TTL_MILLIS);
+
+        List<String> names = find(db, Table.COLUMN_QUERY_TYPE + " = ? AND " + Table.COLUMN_TERM + " = ? AND "
+                + Table.COLUMN_FETCHED + " > ?", new String[]{queryType, key, fresh});
+        if (names != null) {
+            hits.incrementAndGet();
+            return names;
+        }
+
+        if (ALL_CATEGORIES.equals(queryType) && key.length() > 1) {
+            List<String> args = new ArrayList<>();
+            args.add(queryType);
+            args.add(fresh);
+            for (int length = 1; length < key.length(); length++) {
+                args.add(key.substring(0, length));
+            }
+            String selection = Table.COLUMN_QUERY_TYPE + " = ? AND "
+                    + Table.COLUMN_FETCHED + " > ? AND "
+                    + Table.COLUMN_COMPLETE + " = 1 AND "
+                    + Table.COLUMN_TERM + " IN (" + TextUtils.join(",", Collections.nCopies(args.size() - 2, "?")) + ")";
+            List<String> prefixNames = find(db, selection, args.toArray(new String[args.size()]));
+            if (prefixNames != null) {
+                names = new ArrayList<>();
+                for (String name : prefixNames) {
+                    if (normalize(name).startsWith(key)) {
+                        names.add(name);
+                    }
+                }
+                prefixHits.incrementAndGet();
+                return names;
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the results of a search, then trims the table back to its bounds.
+     * Empty results aren't stored, as the API reports failures that way too.
+     * @param names all the results of a request that completed, never a part of them
+     * @param limit most results the search was asked for, fewer means they are complete
+     */
+    @WorkerThread
+    public void put(@NonNull String queryType, @NonNull String term, @NonNull List<String> names, int limit) {
+        if (names.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ContentValues cv = new ContentValues();
+        cv.put(Table.COLUMN_QUERY_TYPE, queryType);
+        cv.put(Table.COLUMN_TERM, key(queryType, term));
+        cv.put(Table.COLUMN_RESULTS, GSON.toJson(names, NAMES_TYPE));
+        cv.put(Table.COLUMN_COMPLETE, names.size() < limit ? 1 : 0);
+        cv.put(Table.COLUMN_FETCHED, now);
+        cv.put(Table.COLUMN_LAST_USED, now);
+
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.insert(Table.TABLE_NAME, null, cv);
+            evict(db, now);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of searches answered from the results of a shorter prefix
+     */
+    public long getPrefixHitCount() {
+        return prefixHits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the share of searches answered from the cache, prefix hits included
+     */
+    public double getHitRatio() {
+        long answered = hits.get() + prefixHits.get();
+        long lookups = answered + misses.get();
+        return lookups == 0 ? 0 : (double) answered / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%d hits, %d prefix hits, %d misses, %.2f hit ratio",
+                getHitCount(), getPrefixHitCount(), getMissCount(), getHitRatio());
+    }
+
+    /**
+     * Normalizes a category name or prefix the way the API does, so that differently
+     * typed prefixes share their results: underscores as spaces, first letter upper case.
+     */
+    static String normalize(String name) {
+        String text = name.replace('_', ' ');
+        if (text.isEmpty() || Character.isUpperCase(text.charAt(0))) {
+            return text;
+        }
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
+    private static String key(String queryType, String term) {
+        return ALL_CATEGORIES.equals(queryType) ? normalize(term) : term;
+    }
+
+    // Longest term first, the results of the closest prefix are the fewest to filter
+    @Nullable
+    private static List<String> find(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        Cursor cursor = db.query(Table.TABLE_NAME, new String[]{Table.COLUMN_ID, Table.COLUMN_RESULTS},
+                selection, selectionArgs, null, null, "length(" + Table.COLUMN_TERM + ") DESC", "1");
+        long id;
+        List<String> names;
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            id = cursor.getLong(0);
+            names = GSON.fromJson(cursor.getString(1), NAMES_TYPE);
+        } catch (JsonParseException e) {
+            Timber.d(e, "Ignoring unreadable category search results");
+            return null;
+        } finally {
+            cursor.close();
+        }
+        ContentValues lastUsed = new ContentValues();
+        lastUsed.put(Table.COLUMN_LAST_USED, System.currentTimeMillis());
+        db.update(Table.TABLE_NAME, lastUsed, Table.COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+        return names;
+    }
+
+    private static void evict(SQLiteDatabase db, long now) {
+        int expired = db.delete(Table.TABLE_NAME, Table.COLUMN_FETCHED + " <= ?",
+                new String[]{String.valueOf(now - TTL_MILLIS)});
+        int evicted = evictLeastRecentlyUsed(db, Table.TABLE_NAME,
+                Table.COLUMN_ID, Table.COLUMN_LAST_USED, MAX_ENTRIES);
+        if (expired + evicted > 0) {
+            Timber.d("Dropped %d expired and %d least recently used category searches", expired, evicted);
+        }
+    }
+
+    public static class Table {
+        public static final String TABLE_NAME = "category_searches";
+
+        public static final String COLUMN_ID = "_id";
+        static final String COLUMN_QUERY_TYPE = "query_type";
+        static final String COLUMN_TERM = "term";
+        static final String COLUMN_RESULTS = "results";
+        static final String COLUMN_COMPLETE = "complete";
+        static final String COLUMN_FETCHED = "fetched";
+        static final String COLUMN_LAST_USED = "last_used";
+
+        // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
+        public static final String[] ALL_FIELDS = {
+                COLUMN_ID,
+                COLUMN_QUERY_TYPE,
+                COLUMN_TERM,
+                COLUMN_RESULTS,
+                COLUMN_COMPLETE,
+                COLUMN_FETCHED,
+                COLUMN_LAST_USED
+        };
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_QUERY_TYPE + " STRING,"
+                + COLUMN_TERM + " STRING,"
+                + COLUMN_RESULTS + " STRING,"
+                + COLUMN_COMPLETE + " INTEGER,"
+                + COLUMN_FETCHED + " INTEGER,"
+                + COLUMN_LAST_USED + " INTEGER,"
+                + "UNIQUE (" + COLUMN_QUERY_TYPE + ", " + COLUMN_TERM + ") ON CONFLICT REPLACE"
+                + ");";
+
+        static final String CREATE_LAST_USED_INDEX = "CREATE INDEX " + TABLE_NAME + "_last_used ON "
+                + TABLE_NAME + " (" + COLUMN_LAST_USED + ");";
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+            db.execSQL(CREATE_LAST_USED_INDEX);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 13) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 13) {
+                // table added in version 14
+                onCreate(db);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 14
+        }
+    }
+}
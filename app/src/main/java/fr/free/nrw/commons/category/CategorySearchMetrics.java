@@ -0,0 +1,59 @@
+package fr.free.nrw.commons.category;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the category searches run while categorizing an upload and the API requests
+ * they sent. Searches are debounced and cancelled when the filter changes, so the
+ * requests per query tell how much typing still costs in network calls.
+ */
+public class CategorySearchMetrics {
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong completedQueries = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    void queryStarted() {
+        queries.incrementAndGet();
+    }
+
+    void queryCompleted() {
+        completedQueries.incrementAndGet();
+    }
+
+    void requestSent() {
+        requests.incrementAndGet();
+    }
+
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    public long getCompletedQueryCount() {
+        return completedQueries.get();
+    }
+
+    /**
+     * @return the number of searches dropped before they were over because the filter
+     * changed, counting the one running if any
+     */
+    public long getCancelledQueryCount() {
+        return queries.get() - completedQueries.get();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public double getRequestsPerQuery() {
+        long started = queries.get();
+        return started == 0 ? 0 : (double) requests.get() / started;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%d queries, %d cancelled, %d requests, %.2f requests per query",
+                getQueryCount(), getCancelledQueryCount(), getRequestCount(), getRequestsPerQuery());
+    }
+}
@@ -45,6 +45,10 @@ public class Contribution extends Media {
     private long transferred;
     private String decimalCoords;
     private boolean isMultiple;
+    private String fileKey; // Stash key of a chunked upload that has not been published yet
+    private long chunkOffset; // Bytes acknowledged by the server for a chunked upload
+    private String sha1;
+    private long localModified; // Last modification time of the local file when it was hashed
 
     public Contribution(Uri contentUri, String filename, Uri localUri, String imageUrl, Date timestamp,
                         int state, long dataLength, Date dateUploaded, long transferred,
@@ -78,6 +82,10 @@ public class Contribution extends Media {
         state = in.readInt();
         transferred = in.readLong();
         isMultiple = in.readInt() == 1;
+        fileKey = in.readString();
+        chunkOffset = in.readLong();
+        sha1 = in.readString();
+        localModified = in.readLong();
     }
 
     @Override
@@ -89,6 +97,10 @@ public class Contribution extends Media {
         parcel.writeInt(state);
         parcel.writeLong(transferred);
         parcel.writeInt(isMultiple ? 1 : 0);
+        parcel.writeString(fileKey);
+        parcel.writeLong(chunkOffset);
+        parcel.writeString(sha1);
+        parcel.writeLong(localModified);
     }
 
     public boolean getMultiple() {
@@ -107,6 +119,38 @@ public class Contribution extends Media {
         this.transferred = transferred;
     }
 
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    public void setFileKey(String fileKey) {
+        this.fileKey = fileKey;
+    }
+
+    public long getChunkOffset() {
+        return chunkOffset;
+    }
+
+    public void setChunkOffset(long chunkOffset) {
+        this.chunkOffset = chunkOffset;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    public void setSha1(String sha1) {
+        this.sha1 = sha1;
+    }
+
+    public long getLocalModified() {
+        return localModified;
+    }
+
+    public void setLocalModified(long localModified) {
+        this.localModified = localModified;
+    }
+
     public String getEditSummary() {
         return editSummary != null ? editSummary : CommonsApplication.DEFAULT_EDIT_SUMMARY;
     }
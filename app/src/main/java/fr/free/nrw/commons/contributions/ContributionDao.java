@@ -69,6 +69,42 @@ public class ContributionDao {
         }
     }
 
+    /**
+     * Looks up the SHA1 recorded when this file was shared before. The size and the
+     * modification time tell whether the file behind the URI changed since.
+     * @param localUri the URI the file is shared from
+     * @param length the current size of the file
+     * @param lastModified the current modification time of the file
+     * @return the hash, or null if this version of the file has not been hashed yet
+     */
+    @Nullable
+    public String getSha1ForLocalFile(Uri localUri, long length, long lastModified) {
+        if (length <= 0 || lastModified <= 0) {
+            return null;
+        }
+        Cursor cursor = null;
+        ContentProviderClient db = clientProvider.get();
+        try {
+            cursor = db.query(BASE_URI,
+                    new String[]{Table.COLUMN_SHA1},
+                    Table.COLUMN_LOCAL_URI + " = ? AND " + Table.COLUMN_LENGTH + " = ? AND "
+                            + Table.COLUMN_LOCAL_MODIFIED + " = ? AND " + Table.COLUMN_SHA1 + " IS NOT NULL",
+                    new String[]{localUri.toString(), String.valueOf(length), String.valueOf(lastModified)},
+                    null);
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getString(0);
+            }
+        } catch (RemoteException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.release();
+        }
+        return null;
+    }
+
     public void delete(Contribution contribution) {
         ContentProviderClient db = clientProvider.get();
         try {
@@ -108,6 +144,10 @@ public class ContributionDao {
         cv.put(Table.COLUMN_WIDTH, contribution.getWidth());
         cv.put(Table.COLUMN_HEIGHT, contribution.getHeight());
         cv.put(Table.COLUMN_LICENSE, contribution.getLicense());
+        cv.put(Table.COLUMN_FILEKEY, contribution.getFileKey());
+        cv.put(Table.COLUMN_CHUNK_OFFSET, contribution.getChunkOffset());
+        cv.put(Table.COLUMN_SHA1, contribution.getSha1());
+        cv.put(Table.COLUMN_LOCAL_MODIFIED, contribution.getLocalModified());
         return cv;
     }
 
@@ -115,7 +155,7 @@ public class ContributionDao {
         // Hardcoding column positions!
         //Check that cursor has a value to avoid CursorIndexOutOfBoundsException
         if (cursor.getCount() > 0) {
-            return new Contribution(
+            Contribution contribution = new Contribution(
                     uriForId(cursor.getInt(0)),
                     cursor.getString(1),
                     parseUri(cursor.getString(2)),
@@ -132,6 +172,11 @@ public class ContributionDao {
                     cursor.getInt(13),
                     cursor.getInt(14),
                     cursor.getString(15));
+            contribution.setFileKey(cursor.getString(16));
+            contribution.setChunkOffset(cursor.getLong(17));
+            contribution.setSha1(cursor.getString(18));
+            contribution.setLocalModified(cursor.getLong(19));
+            return contribution;
         }
 
         return null;
@@ -166,6 +211,10 @@ public class ContributionDao {
         public static final String COLUMN_WIDTH = "width";
         public static final String COLUMN_HEIGHT = "height";
         public static final String COLUMN_LICENSE = "license";
+        public static final String COLUMN_FILEKEY = "filekey"; // Upload stash key of a partial chunked upload
+        public static final String COLUMN_CHUNK_OFFSET = "chunk_offset"; // Bytes of the stash acknowledged by the server
+        public static final String COLUMN_SHA1 = "sha1";
+        public static final String COLUMN_LOCAL_MODIFIED = "local_modified"; // Modification time of the local file when it was hashed
 
         // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
         public static final String[] ALL_FIELDS = {
@@ -184,7 +233,11 @@ public class ContributionDao {
                 COLUMN_MULTIPLE,
                 COLUMN_WIDTH,
                 COLUMN_HEIGHT,
-                COLUMN_LICENSE
+                COLUMN_LICENSE,
+                COLUMN_FILEKEY,
+                COLUMN_CHUNK_OFFSET,
+                COLUMN_SHA1,
+                COLUMN_LOCAL_MODIFIED
         };
 
         public static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
@@ -205,7 +258,11 @@ public class ContributionDao {
                 + "multiple INTEGER,"
                 + "width INTEGER,"
                 + "height INTEGER,"
-                + "LICENSE STRING"
+                + "LICENSE STRING,"
+                + "filekey STRING,"
+                + "chunk_offset INTEGER,"
+                + "sha1 STRING,"
+                + "local_modified INTEGER"
                 + ");";
 
         // Upgrade from version 1 ->
@@ -224,6 +281,18 @@ public class ContributionDao {
         static final String ADD_LICENSE_FIELD = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN license STRING;";
         static final String SET_DEFAULT_LICENSE = "UPDATE " + TABLE_NAME + " SET license='" + Prefs.Licenses.CC_BY_SA_3 + "';";
 
+        // Upgrade from version 6 ->
+        static final String ADD_FILEKEY_FIELD = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN filekey STRING;";
+        static final String ADD_CHUNK_OFFSET_FIELD = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN chunk_offset INTEGER;";
+        static final String SET_DEFAULT_CHUNK_OFFSET = "UPDATE " + TABLE_NAME + " SET chunk_offset = 0";
+
+        // Upgrade from version 7 ->
+        static final String ADD_SHA1_FIELD = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN sha1 STRING;";
+
+        // Upgrade from version 15 ->
+        static final String ADD_LOCAL_MODIFIED_FIELD = "ALTER TABLE " + TABLE_NAME + " ADD COLUMN local_modified INTEGER;";
+        static final String SET_DEFAULT_LOCAL_MODIFIED = "UPDATE " + TABLE_NAME + " SET local_modified = 0";
+
 
         public static void onCreate(SQLiteDatabase db) {
             db.execSQL(CREATE_TABLE_STATEMENT);
@@ -276,6 +345,72 @@ public class ContributionDao {
                 onUpdate(db, from, to);
                 return;
             }
+            if (from == 6) {
+                // Added stash key and offset for resumable chunked uploads
+                db.execSQL(ADD_FILEKEY_FIELD);
+                db.execSQL(ADD_CHUNK_OFFSET_FIELD);
+                db.execSQL(SET_DEFAULT_CHUNK_OFFSET);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 7) {
+                // Added SHA1 of the uploaded file
+                db.execSQL(ADD_SHA1_FIELD);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 8) {
+                // Do nothing -- added uploaded_hashes
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 9) {
+                // Do nothing -- added thumbnail_urls
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 10) {
+                // Do nothing -- added media_metadata
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 11) {
+                // Do nothing -- added nearby_places
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 12) {
+                // Do nothing -- added category_index
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 13) {
+                // Do nothing -- added category_searches
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 14) {
+                // Do nothing -- added frecency to categories
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 15) {
+                // Added the modification time of the hashed local file
+                db.execSQL(ADD_LOCAL_MODIFIED_FIELD);
+                db.execSQL(SET_DEFAULT_LOCAL_MODIFIED);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
         }
     }
 }
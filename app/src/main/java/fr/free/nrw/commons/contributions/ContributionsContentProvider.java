@@ -1,6 +1,9 @@
 package fr.free.nrw.commons.contributions;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -9,6 +12,8 @@ import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
+import java.util.ArrayList;
+
 import javax.inject.Inject;
 
 import fr.free.nrw.commons.data.DBOpenHelper;
@@ -23,15 +28,19 @@ public class ContributionsContentProvider extends CommonsDaggerContentProvider {
 
     private static final int CONTRIBUTIONS = 1;
     private static final int CONTRIBUTIONS_ID = 2;
+    private static final int HASHES = 3;
     private static final String BASE_PATH = "contributions";
+    private static final String HASHES_PATH = "uploaded_hashes";
     private static final UriMatcher uriMatcher = new UriMatcher(NO_MATCH);
     public static final String CONTRIBUTION_AUTHORITY = "fr.free.nrw.commons.contributions.contentprovider";
 
     public static final Uri BASE_URI = Uri.parse("content://" + CONTRIBUTION_AUTHORITY + "/" + BASE_PATH);
+    public static final Uri HASHES_URI = Uri.parse("content://" + CONTRIBUTION_AUTHORITY + "/" + HASHES_PATH);
 
     static {
         uriMatcher.addURI(CONTRIBUTION_AUTHORITY, BASE_PATH, CONTRIBUTIONS);
         uriMatcher.addURI(CONTRIBUTION_AUTHORITY, BASE_PATH + "/#", CONTRIBUTIONS_ID);
+        uriMatcher.addURI(CONTRIBUTION_AUTHORITY, HASHES_PATH, HASHES);
     }
 
     public static Uri uriForId(int id) {
@@ -40,6 +49,9 @@ public class ContributionsContentProvider extends CommonsDaggerContentProvider {
 
     @Inject DBOpenHelper dbOpenHelper;
 
+    // Set while applyBatch runs so that observers are notified once for the whole batch
+    private final ThreadLocal<Boolean> applyingBatch = new ThreadLocal<>();
+
     @SuppressWarnings("ConstantConditions")
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
@@ -67,6 +79,11 @@ public class ContributionsContentProvider extends CommonsDaggerContentProvider {
                         sortOrder
                 );
                 break;
+            case HASHES:
+                queryBuilder.setTables(UploadedHashDao.Table.TABLE_NAME);
+                cursor = queryBuilder.query(db, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI" + uri);
         }
@@ -91,13 +108,45 @@ public class ContributionsContentProvider extends CommonsDaggerContentProvider {
             case CONTRIBUTIONS:
                 id = sqlDB.insert(TABLE_NAME, null, contentValues);
                 break;
+            case HASHES:
+                sqlDB.insert(UploadedHashDao.Table.TABLE_NAME, null, contentValues);
+                return uri;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return Uri.parse(BASE_URI + "/" + id);
     }
 
+    /**
+     * Applies all the operations in a single transaction, rolling them all back if one fails.
+     */
+    @SuppressWarnings("ConstantConditions")
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase sqlDB = dbOpenHelper.getWritableDatabase();
+        sqlDB.beginTransaction();
+        applyingBatch.set(true);
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            sqlDB.setTransactionSuccessful();
+            return results;
+        } finally {
+            applyingBatch.remove();
+            sqlDB.endTransaction();
+            getContext().getContentResolver().notifyChange(BASE_URI, null);
+        }
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private void notifyChange(Uri uri) {
+        if (applyingBatch.get() == null) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
     @SuppressWarnings("ConstantConditions")
     @Override
     public int delete(@NonNull Uri uri, String s, String[] strings) {
@@ -114,10 +163,13 @@ public class ContributionsContentProvider extends CommonsDaggerContentProvider {
                         new String[]{uri.getLastPathSegment()}
                 );
                 break;
+            case HASHES:
+                rows = db.delete(UploadedHashDao.Table.TABLE_NAME, s, strings);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI" + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return rows;
     }
 
@@ -135,12 +187,17 @@ public class ContributionsContentProvider extends CommonsDaggerContentProvider {
                     sqlDB.insert(TABLE_NAME, null, value);
                 }
                 break;
+            case HASHES:
+                for (ContentValues value : values) {
+                    sqlDB.insert(UploadedHashDao.Table.TABLE_NAME, null, value);
+                }
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
         sqlDB.setTransactionSuccessful();
         sqlDB.endTransaction();
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return values.length;
     }
 
@@ -179,7 +236,7 @@ public class ContributionsContentProvider extends CommonsDaggerContentProvider {
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri + " with type " + uriType);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return rowsUpdated;
     }
 }
@@ -3,21 +3,28 @@ package fr.free.nrw.commons.contributions;
 import android.accounts.Account;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.SyncResult;
 import android.database.Cursor;
 import android.os.Bundle;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 
 import javax.inject.Inject;
@@ -33,14 +40,21 @@ import timber.log.Timber;
 import static fr.free.nrw.commons.contributions.Contribution.STATE_COMPLETED;
 import static fr.free.nrw.commons.contributions.ContributionDao.Table.COLUMN_FILENAME;
 import static fr.free.nrw.commons.contributions.ContributionsContentProvider.BASE_URI;
+import static fr.free.nrw.commons.contributions.ContributionsContentProvider.HASHES_URI;
 
 @SuppressWarnings("WeakerAccess")
 public class ContributionsSyncAdapter extends AbstractThreadedSyncAdapter {
 
     private static final String[] existsQuery = {COLUMN_FILENAME};
-    private static final String existsSelection = COLUMN_FILENAME + " = ?";
     private static final ContentValues[] EMPTY = {};
-    private static int COMMIT_THRESHOLD = 10;
+    private static final int HASH_QUERY_LIMIT = 50;
+
+    // Page size learnt by previous syncs
+    private static final String PREF_PAGE_LIMIT = "syncPageLimit";
+    // Checkpoint of a sync that did not finish, to resume it where it stopped
+    private static final String PREF_CHECKPOINT_USER = "syncCheckpointUser";
+    private static final String PREF_CHECKPOINT_CONTINUE = "syncCheckpointContinue";
+    private static final String PREF_CHECKPOINT_STARTED = "syncCheckpointStarted";
 
     @SuppressWarnings("WeakerAccess")
     @Inject MediaWikiApi mwApi;
@@ -50,26 +64,28 @@ public class ContributionsSyncAdapter extends AbstractThreadedSyncAdapter {
         super(context, autoInitialize);
     }
 
-    private int getLimit() {
-
-        int limit = 500;
-        Timber.d("Max number of uploads set to %d", limit);
-        return limit; // FIXME: Parameterize!
-    }
-
-    private boolean fileExists(ContentProviderClient client, String filename) {
-        if (filename == null) {
-            return false;
+    /**
+     * Looks up a whole page of file names with a single query.
+     * @return the subset of {@code filenames} that are already in the database
+     */
+    private Set<String> existingFilenames(ContentProviderClient client, List<String> filenames) {
+        Set<String> existing = new HashSet<>();
+        if (filenames.isEmpty()) {
+            return existing;
         }
+        String placeholders = TextUtils.join(",", Collections.nCopies(filenames.size(), "?"));
         Cursor cursor = null;
         try {
             cursor = client.query(BASE_URI,
                     existsQuery,
-                    existsSelection,
-                    new String[]{filename},
+                    COLUMN_FILENAME + " IN (" + placeholders + ")",
+                    filenames.toArray(new String[filenames.size()]),
                     ""
             );
-            return cursor != null && cursor.getCount() != 0;
+            while (cursor != null && cursor.moveToNext()) {
+                existing.add(cursor.getString(0));
+            }
+            return existing;
         } catch (RemoteException e) {
             throw new RuntimeException(e);
         } finally {
@@ -90,34 +106,61 @@ public class ContributionsSyncAdapter extends AbstractThreadedSyncAdapter {
         // This code is fraught with possibilities of race conditions, but lalalalala I can't hear you!
         String user = account.name;
         String lastModified = prefs.getString("lastSyncTimestamp", "");
-        Date curTime = new Date();
+        String curTime = toMWDate(new Date());
         LogEventResult result;
         Boolean done = false;
         String queryContinue = null;
+        if (user.equals(prefs.getString(PREF_CHECKPOINT_USER, null))) {
+            // Resume the interrupted sync, it still has to end at lastSyncTimestamp
+            queryContinue = prefs.getString(PREF_CHECKPOINT_CONTINUE, null);
+            curTime = prefs.getString(PREF_CHECKPOINT_STARTED, curTime);
+            Timber.d("Resuming sync started at %s from %s", curTime, queryContinue);
+        }
+        LogEventPager pager = new LogEventPager(prefs.getInt(PREF_PAGE_LIMIT, LogEventPager.DEFAULT_LIMIT));
         ContributionDao contributionDao = new ContributionDao(() -> contentProviderClient);
+        UploadedHashDao uploadedHashDao = new UploadedHashDao(() -> contentProviderClient);
         while (!done) {
 
+            int limit = pager.getLimit();
+            long requestStart = SystemClock.elapsedRealtime();
             try {
-                result = mwApi.logEvents(user, lastModified, queryContinue, getLimit());
+                result = mwApi.logEvents(user, lastModified, queryContinue, limit);
             } catch (IOException e) {
                 // There isn't really much we can do, eh?
                 // FIXME: Perhaps add EventLogging?
                 syncResult.stats.numIoExceptions += 1; // Not sure if this does anything. Shitty docs
                 Timber.d("Syncing failed due to %s", e);
+                pager.onPageFailed();
+                prefs.edit().putInt(PREF_PAGE_LIMIT, pager.getLimit()).apply();
                 return;
             }
-            Timber.d("Last modified at %s", lastModified);
+            pager.onPageLoaded(result.getLogEvents().size(), result.getResponseBytes(),
+                    SystemClock.elapsedRealtime() - requestStart);
+            Timber.d("Last modified at %s, page of %d took %d ms", lastModified, limit,
+                    SystemClock.elapsedRealtime() - requestStart);
 
             List<LogEventResult.LogEvent> logEvents = result.getLogEvents();
             Timber.d("%d results!", logEvents.size());
-            ArrayList<ContentValues> imageValues = new ArrayList<>();
+            List<String> pageFilenames = new ArrayList<>();
+            for (LogEventResult.LogEvent image : logEvents) {
+                if (!image.isDeleted() && image.getFilename() != null) {
+                    pageFilenames.add(image.getFilename());
+                }
+            }
+            Set<String> knownFilenames = existingFilenames(contentProviderClient, pageFilenames);
+
+            ArrayList<ContentProviderOperation> inserts = new ArrayList<>();
+            List<String> newFilenames = new ArrayList<>();
+            List<String> deletedFilenames = new ArrayList<>();
             for (LogEventResult.LogEvent image : logEvents) {
                 if (image.isDeleted()) {
                     // means that this upload was deleted.
+                    deletedFilenames.add(image.getFilename());
                     continue;
                 }
                 String filename = image.getFilename();
-                if (fileExists(contentProviderClient, filename)) {
+                // add() also catches files logged twice in the same page
+                if (filename == null || !knownFilenames.add(filename)) {
                     Timber.d("Skipping %s", filename);
                     continue;
                 }
@@ -127,35 +170,74 @@ public class ContributionsSyncAdapter extends AbstractThreadedSyncAdapter {
                         "", -1, dateUpdated, dateUpdated, user,
                         "", "");
                 contrib.setState(STATE_COMPLETED);
-                imageValues.add(contributionDao.toContentValues(contrib));
-
-                if (imageValues.size() % COMMIT_THRESHOLD == 0) {
-                    try {
-                        contentProviderClient.bulkInsert(BASE_URI, imageValues.toArray(EMPTY));
-                    } catch (RemoteException e) {
-                        throw new RuntimeException(e);
-                    }
-                    imageValues.clear();
-                }
+                inserts.add(ContentProviderOperation.newInsert(BASE_URI)
+                        .withValues(contributionDao.toContentValues(contrib))
+                        .build());
+                newFilenames.add(filename);
             }
 
-            if (imageValues.size() != 0) {
+            if (!inserts.isEmpty()) {
                 try {
-                    contentProviderClient.bulkInsert(BASE_URI, imageValues.toArray(EMPTY));
-                } catch (RemoteException e) {
+                    // One transaction per page instead of one per handful of rows
+                    contentProviderClient.applyBatch(inserts);
+                } catch (RemoteException | OperationApplicationException e) {
                     throw new RuntimeException(e);
                 }
             }
 
+            uploadedHashDao.deleteByFilenames(contentProviderClient, deletedFilenames);
+            indexHashes(contentProviderClient, uploadedHashDao, newFilenames);
+
             queryContinue = result.getQueryContinue();
             if (TextUtils.isEmpty(queryContinue)) {
                 done = true;
+            } else {
+                // Everything up to here is stored, a new sync can pick up from the next page
+                prefs.edit()
+                        .putString(PREF_CHECKPOINT_USER, user)
+                        .putString(PREF_CHECKPOINT_CONTINUE, queryContinue)
+                        .putString(PREF_CHECKPOINT_STARTED, curTime)
+                        .apply();
             }
         }
-        prefs.edit().putString("lastSyncTimestamp", toMWDate(curTime)).apply();
+        prefs.edit()
+                .putString("lastSyncTimestamp", curTime)
+                .putInt(PREF_PAGE_LIMIT, pager.getLimit())
+                .remove(PREF_CHECKPOINT_USER)
+                .remove(PREF_CHECKPOINT_CONTINUE)
+                .remove(PREF_CHECKPOINT_STARTED)
+                .apply();
         Timber.d("Oh hai, everyone! Look, a kitty!");
     }
 
+    /**
+     * Adds the SHA1 of newly synced uploads to the local duplicate index.
+     * Failures are not fatal, duplicate checks fall back to the network.
+     */
+    private void indexHashes(ContentProviderClient client, UploadedHashDao uploadedHashDao,
+                             List<String> filenames) {
+        for (int start = 0; start < filenames.size(); start += HASH_QUERY_LIMIT) {
+            List<String> batch = filenames.subList(start, Math.min(start + HASH_QUERY_LIMIT, filenames.size()));
+            Map<String, String> sha1s;
+            try {
+                sha1s = mwApi.fileSha1s(batch);
+            } catch (IOException e) {
+                Timber.d("Unable to fetch hashes, %s", e);
+                return;
+            }
+
+            ArrayList<ContentValues> hashValues = new ArrayList<>();
+            for (Map.Entry<String, String> sha1 : sha1s.entrySet()) {
+                hashValues.add(uploadedHashDao.toContentValues(sha1.getValue(), sha1.getKey()));
+            }
+            try {
+                client.bulkInsert(HASHES_URI, hashValues.toArray(EMPTY));
+            } catch (RemoteException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     private String toMWDate(Date date) {
         SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH); // Assuming MW always gives me UTC
         isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -0,0 +1,66 @@
+package fr.free.nrw.commons.contributions;
+
+/**
+ * Picks the lelimit of the next log events request from how the previous pages went.
+ * Full pages that come back quickly make the next page bigger, slow pages, large
+ * responses or failed requests make it smaller, so large accounts sync in few round
+ * trips without risking timeouts on slow connections.
+ */
+class LogEventPager {
+
+    static final int MIN_LIMIT = 50;
+    // Highest lelimit the API allows for regular users
+    static final int MAX_LIMIT = 500;
+    static final int DEFAULT_LIMIT = 100;
+    // Time a single page should take to download and parse
+    static final long TARGET_PAGE_MILLIS = 3000;
+    // Largest response a single page should hold, long file names make events bigger
+    static final long MAX_PAGE_BYTES = 128 * 1024;
+
+    private int limit;
+
+    LogEventPager(int initialLimit) {
+        limit = clamp(initialLimit, MIN_LIMIT, MAX_LIMIT);
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Adjusts the page size towards the one that would have taken {@link #TARGET_PAGE_MILLIS},
+     * without going past the number of events that fit in {@link #MAX_PAGE_BYTES}, moving
+     * at most by a factor of two per page.
+     * @param events number of log events the page returned
+     * @param bytes size of the response
+     * @param elapsedMillis time taken by the request
+     */
+    void onPageLoaded(int events, long bytes, long elapsedMillis) {
+        if (events <= 0) {
+            return;
+        }
+        long ideal = elapsedMillis <= 0
+                ? MAX_LIMIT
+                : TARGET_PAGE_MILLIS * events / elapsedMillis;
+        if (bytes > 0) {
+            ideal = Math.min(ideal, MAX_PAGE_BYTES * events / bytes);
+        }
+        if (events < limit) {
+            // A short page says nothing about bigger ones, only allow shrinking
+            ideal = Math.min(ideal, limit);
+        }
+        limit = clamp((int) Math.min(ideal, Integer.MAX_VALUE), limit / 2, limit * 2);
+        limit = clamp(limit, MIN_LIMIT, MAX_LIMIT);
+    }
+
+    /**
+     * Halves the page size after a request failed, big pages are the first to time out.
+     */
+    void onPageFailed() {
+        limit = clamp(limit / 2, MIN_LIMIT, MAX_LIMIT);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,166 @@
+package fr.free.nrw.commons.contributions;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.RemoteException;
+import android.text.TextUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import static fr.free.nrw.commons.contributions.ContributionsContentProvider.HASHES_URI;
+
+/**
+ * Index of the SHA1 of files known to be on Commons, filled by uploads and by
+ * the contributions sync. Files can be deleted on the server at any time, so the
+ * index is only a hint: duplicate checks fall back to it when the API can't be reached.
+ */
+public class UploadedHashDao {
+
+    private final Provider<ContentProviderClient> clientProvider;
+
+    @Inject
+    public UploadedHashDao(@Named("contribution") Provider<ContentProviderClient> clientProvider) {
+        this.clientProvider = clientProvider;
+    }
+
+    public boolean contains(String sha1) {
+        if (TextUtils.isEmpty(sha1)) {
+            return false;
+        }
+        Cursor cursor = null;
+        ContentProviderClient db = clientProvider.get();
+        try {
+            cursor = db.query(HASHES_URI,
+                    new String[]{Table.COLUMN_SHA1},
+                    Table.COLUMN_SHA1 + " = ?",
+                    new String[]{sha1},
+                    null);
+            return cursor != null && cursor.getCount() != 0;
+        } catch (RemoteException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.release();
+        }
+    }
+
+    public void save(String sha1, String filename) {
+        ContentProviderClient db = clientProvider.get();
+        try {
+            db.insert(HASHES_URI, toContentValues(sha1, filename));
+        } catch (RemoteException e) {
+            throw new RuntimeException(e);
+        } finally {
+            db.release();
+        }
+    }
+
+    /**
+     * Forgets a hash the server no longer knows.
+     */
+    public void delete(String sha1) {
+        ContentProviderClient db = clientProvider.get();
+        try {
+            db.delete(HASHES_URI, Table.COLUMN_SHA1 + " = ?", new String[]{sha1});
+        } catch (RemoteException e) {
+            throw new RuntimeException(e);
+        } finally {
+            db.release();
+        }
+    }
+
+    /**
+     * Forgets the hashes of files that no longer exist.
+     * @param filenames canonical file names, with the File: prefix
+     */
+    void deleteByFilenames(ContentProviderClient client, Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return;
+        }
+        String placeholders = TextUtils.join(",", Collections.nCopies(filenames.size(), "?"));
+        try {
+            client.delete(HASHES_URI,
+                    Table.COLUMN_FILENAME + " IN (" + placeholders + ")",
+                    filenames.toArray(new String[filenames.size()]));
+        } catch (RemoteException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    ContentValues toContentValues(String sha1, String filename) {
+        ContentValues cv = new ContentValues();
+        cv.put(Table.COLUMN_SHA1, sha1);
+        cv.put(Table.COLUMN_FILENAME, filename);
+        return cv;
+    }
+
+    public static class Table {
+        public static final String TABLE_NAME = "uploaded_hashes";
+
+        public static final String COLUMN_ID = "_id";
+        static final String COLUMN_SHA1 = "sha1";
+        static final String COLUMN_FILENAME = "filename";
+
+        // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
+        public static final String[] ALL_FIELDS = {
+                COLUMN_ID,
+                COLUMN_SHA1,
+                COLUMN_FILENAME
+        };
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_SHA1 + " STRING UNIQUE ON CONFLICT REPLACE,"
+                + COLUMN_FILENAME + " STRING"
+                + ");";
+
+        // Hashes of the files uploaded before the index existed
+        static final String BACKFILL_STATEMENT = "INSERT INTO " + TABLE_NAME
+                + " (" + COLUMN_SHA1 + ", " + COLUMN_FILENAME + ")"
+                + " SELECT " + ContributionDao.Table.COLUMN_SHA1 + ", " + ContributionDao.Table.COLUMN_FILENAME
+                + " FROM " + ContributionDao.Table.TABLE_NAME
+                + " WHERE " + ContributionDao.Table.COLUMN_SHA1 + " IS NOT NULL"
+                + " AND " + ContributionDao.Table.COLUMN_STATE + " = " + Contribution.STATE_COMPLETED;
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 8) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 8) {
+                // table added in version 9, the contributions table is already up to date
+                onCreate(db);
+                db.execSQL(BACKFILL_STATEMENT);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 9
+        }
+    }
+}
@@ -4,14 +4,20 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import fr.free.nrw.commons.MediaMetadataCache;
+import fr.free.nrw.commons.ThumbnailUrlCache;
 import fr.free.nrw.commons.category.CategoryDao;
+import fr.free.nrw.commons.category.CategoryIndex;
+import fr.free.nrw.commons.category.CategorySearchCache;
 import fr.free.nrw.commons.contributions.ContributionDao;
+import fr.free.nrw.commons.contributions.UploadedHashDao;
 import fr.free.nrw.commons.modifications.ModifierSequenceDao;
+import fr.free.nrw.commons.nearby.NearbyPlacesIndex;
 
 public class DBOpenHelper  extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "commons.db";
-    private static final int DATABASE_VERSION = 6;
+    private static final int DATABASE_VERSION = 16;
 
     /**
      * Do not use directly - @Inject an instance where it's needed and let
@@ -26,6 +32,14 @@ public class DBOpenHelper  extends SQLiteOpenHelper {
         ContributionDao.Table.onCreate(sqLiteDatabase);
         ModifierSequenceDao.Table.onCreate(sqLiteDatabase);
         CategoryDao.Table.onCreate(sqLiteDatabase);
+        UploadedHashDao.Table.onCreate(sqLiteDatabase);
+        ThumbnailUrlCache.Table.onCreate(sqLiteDatabase);
+        MediaMetadataCache.Table.onCreate(sqLiteDatabase);
+        NearbyPlacesIndex.PlacesTable.onCreate(sqLiteDatabase);
+        NearbyPlacesIndex.CoverageTable.onCreate(sqLiteDatabase);
+        CategoryIndex.Table.onCreate(sqLiteDatabase);
+        CategoryIndex.FullTextTable.onCreate(sqLiteDatabase);
+        CategorySearchCache.Table.onCreate(sqLiteDatabase);
     }
 
     @Override
@@ -33,5 +47,13 @@ public class DBOpenHelper  extends SQLiteOpenHelper {
         ContributionDao.Table.onUpdate(sqLiteDatabase, from, to);
         ModifierSequenceDao.Table.onUpdate(sqLiteDatabase, from, to);
         CategoryDao.Table.onUpdate(sqLiteDatabase, from, to);
+        UploadedHashDao.Table.onUpdate(sqLiteDatabase, from, to);
+        ThumbnailUrlCache.Table.onUpdate(sqLiteDatabase, from, to);
+        MediaMetadataCache.Table.onUpdate(sqLiteDatabase, from, to);
+        NearbyPlacesIndex.PlacesTable.onUpdate(sqLiteDatabase, from, to);
+        NearbyPlacesIndex.CoverageTable.onUpdate(sqLiteDatabase, from, to);
+        CategoryIndex.Table.onUpdate(sqLiteDatabase, from, to);
+        CategoryIndex.FullTextTable.onUpdate(sqLiteDatabase, from, to);
+        CategorySearchCache.Table.onUpdate(sqLiteDatabase, from, to);
     }
 }
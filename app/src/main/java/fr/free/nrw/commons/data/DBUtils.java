@@ -0,0 +1,22 @@
+package fr.free.nrw.commons.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+public class DBUtils {
+
+    /**
+     * Deletes the rows of a table past the {@code maxEntries} most recently used ones.
+     *
+     * @param idColumn the primary key of the table
+     * @param lastUsedColumn the column holding the time each row was last used
+     * @return the number of rows deleted
+     */
+    public static int evictLeastRecentlyUsed(SQLiteDatabase db, String table, String idColumn,
+                                             String lastUsedColumn, int maxEntries) {
+        return db.delete(table, idColumn + " IN (SELECT " + idColumn
+                        + " FROM " + table
+                        + " ORDER BY " + lastUsedColumn + " DESC"
+                        + " LIMIT -1 OFFSET " + maxEntries + ")",
+                null);
+    }
+}
@@ -6,13 +6,18 @@ import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.support.v4.util.LruCache;
 
+import java.io.File;
+import java.util.Arrays;
+
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import dagger.Lazy;
 import dagger.Module;
 import dagger.Provides;
 import fr.free.nrw.commons.BuildConfig;
 import fr.free.nrw.commons.CommonsApplication;
+import fr.free.nrw.commons.LicenseList;
 import fr.free.nrw.commons.auth.AccountUtil;
 import fr.free.nrw.commons.auth.SessionManager;
 import fr.free.nrw.commons.caching.CacheController;
@@ -20,8 +25,13 @@ import fr.free.nrw.commons.data.DBOpenHelper;
 import fr.free.nrw.commons.location.LocationServiceManager;
 import fr.free.nrw.commons.mwapi.ApacheHttpClientMediaWikiApi;
 import fr.free.nrw.commons.mwapi.MediaWikiApi;
+import fr.free.nrw.commons.mwapi.OkHttpMediaWikiApi;
 import fr.free.nrw.commons.nearby.NearbyPlaces;
 import fr.free.nrw.commons.upload.UploadController;
+import fr.free.nrw.commons.utils.InstrumentedThreadPoolExecutor;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 
 import static android.content.Context.MODE_PRIVATE;
 import static fr.free.nrw.commons.contributions.ContributionsContentProvider.CONTRIBUTION_AUTHORITY;
@@ -32,6 +42,7 @@ import static fr.free.nrw.commons.modifications.ModificationsContentProvider.MOD
 public class CommonsApplicationModule {
     public static final String CATEGORY_AUTHORITY = "fr.free.nrw.commons.categories.contentprovider";
     public static final long OK_HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+    public static final int IO_THREADS = 4;
 
     private CommonsApplication application;
     private Context applicationContext;
@@ -89,8 +100,9 @@ public class CommonsApplicationModule {
     @Provides
     public UploadController providesUploadController(Context context,
                                                      SessionManager sessionManager,
-                                                     @Named("default_preferences") SharedPreferences sharedPreferences) {
-        return new UploadController(sessionManager, context, sharedPreferences);
+                                                     @Named("default_preferences") SharedPreferences sharedPreferences,
+                                                     InstrumentedThreadPoolExecutor ioExecutor) {
+        return new UploadController(sessionManager, context, sharedPreferences, ioExecutor);
     }
 
     @Provides
@@ -103,7 +115,24 @@ public class CommonsApplicationModule {
 
     @Provides
     @Singleton
-    public MediaWikiApi provideMediaWikiApi(Context context, @Named("default_preferences") SharedPreferences sharedPreferences) {
+    public OkHttpClient provideOkHttpClient(Context context) {
+        return new OkHttpClient.Builder()
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .cache(new Cache(new File(context.getCacheDir(), "okhttp"), OK_HTTP_CACHE_SIZE))
+                .build();
+    }
+
+    /**
+     * The OkHttp implementation is picked with the USE_OKHTTP_API build config field.
+     */
+    @Provides
+    @Singleton
+    public MediaWikiApi provideMediaWikiApi(Context context,
+                                            @Named("default_preferences") SharedPreferences sharedPreferences,
+                                            Lazy<OkHttpClient> okHttpClient) {
+        if (BuildConfig.USE_OKHTTP_API) {
+            return new OkHttpMediaWikiApi(context, BuildConfig.WIKIMEDIA_API_HOST, sharedPreferences, okHttpClient.get());
+        }
         return new ApacheHttpClientMediaWikiApi(context, BuildConfig.WIKIMEDIA_API_HOST, sharedPreferences);
     }
 
@@ -125,12 +154,24 @@ public class CommonsApplicationModule {
         return new DBOpenHelper(context);
     }
 
+    @Provides
+    @Singleton
+    public LicenseList provideLicenseList(Context context) {
+        return new LicenseList(context.getResources());
+    }
+
     @Provides
     @Singleton
     public NearbyPlaces provideNearbyPlaces() {
         return new NearbyPlaces();
     }
 
+    @Provides
+    @Singleton
+    public InstrumentedThreadPoolExecutor provideIoExecutor() {
+        return new InstrumentedThreadPoolExecutor("io", IO_THREADS);
+    }
+
     @Provides
     @Singleton
     public LruCache<String, String> provideLruCache() {
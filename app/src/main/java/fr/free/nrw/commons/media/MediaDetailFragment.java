@@ -24,6 +24,7 @@ import java.util.Locale;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import dagger.Lazy;
 import fr.free.nrw.commons.License;
 import fr.free.nrw.commons.LicenseList;
 import fr.free.nrw.commons.Media;
@@ -34,6 +35,7 @@ import fr.free.nrw.commons.R;
 import fr.free.nrw.commons.di.CommonsDaggerSupportFragment;
 import fr.free.nrw.commons.location.LatLng;
 import fr.free.nrw.commons.ui.widget.CompatTextView;
+import fr.free.nrw.commons.utils.InstrumentedThreadPoolExecutor;
 import timber.log.Timber;
 
 public class MediaDetailFragment extends CommonsDaggerSupportFragment {
@@ -58,6 +60,11 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
 
     @Inject
     Provider<MediaDataExtractor> mediaDataExtractorProvider;
+    @Inject
+    InstrumentedThreadPoolExecutor ioExecutor;
+    // Built by the first fetch, on the background thread
+    @Inject
+    Lazy<LicenseList> licenseList;
 
     private MediaWikiImageView image;
     private MediaDetailSpacer spacer;
@@ -77,7 +84,6 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
     private ViewTreeObserver.OnScrollChangedListener scrollListener;
     private DataSetObserver dataObserver;
     private AsyncTask<Void,Void,Boolean> detailFetchTask;
-    private LicenseList licenseList;
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
@@ -123,8 +129,6 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
         uploadedDate = (TextView) view.findViewById(R.id.mediaDetailuploadeddate);
         categoryContainer = (LinearLayout) view.findViewById(R.id.mediaDetailCategoryContainer);
 
-        licenseList = new LicenseList(getActivity());
-
         // Progressively darken the image in the background when we scroll detail pane up
         scrollListener = this::updateTheDarkness;
         view.getViewTreeObserver().addOnScrollChangedListener(scrollListener);
@@ -187,7 +191,6 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
 
         // FIXME: For transparent images
         // FIXME: keep the spinner going while we load data
-        // FIXME: cache this data
         // Load image metadata: desc, license, categories
         detailFetchTask = new AsyncTask<Void, Void, Boolean>() {
             private MediaDataExtractor extractor;
@@ -200,7 +203,7 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
             @Override
             protected Boolean doInBackground(Void... voids) {
                 try {
-                    extractor.fetch(media.getFilename(), licenseList);
+                    extractor.fetch(media.getFilename(), licenseList.get());
                     return Boolean.TRUE;
                 } catch (IOException e) {
                     Timber.d(e);
@@ -225,7 +228,7 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
                 }
             }
         };
-        detailFetchTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        detailFetchTask.executeOnExecutor(ioExecutor);
 
         title.setText(media.getDisplayTitle());
         desc.setText(""); // fill in from network...
@@ -332,7 +335,7 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
         if (licenseKey == null || licenseKey.equals("")) {
             return getString(R.string.detail_license_empty);
         }
-        License licenseObj = licenseList.get(licenseKey);
+        License licenseObj = licenseList.get().get(licenseKey);
         if (licenseObj == null) {
             return licenseKey;
         } else {
@@ -367,7 +370,7 @@ public class MediaDetailFragment extends CommonsDaggerSupportFragment {
         if (licenseKey == null || licenseKey.equals("")) {
             return null;
         }
-        License licenseObj = licenseList.get(licenseKey);
+        License licenseObj = licenseList.get().get(licenseKey);
         if (licenseObj == null) {
             return null;
         } else {
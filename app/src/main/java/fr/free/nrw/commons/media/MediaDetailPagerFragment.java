@@ -25,16 +25,27 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 
+import dagger.Lazy;
+import fr.free.nrw.commons.LicenseList;
 import fr.free.nrw.commons.Media;
+import fr.free.nrw.commons.MediaDataExtractor;
 import fr.free.nrw.commons.R;
 import fr.free.nrw.commons.auth.SessionManager;
 import fr.free.nrw.commons.contributions.Contribution;
 import fr.free.nrw.commons.contributions.ContributionsActivity;
 import fr.free.nrw.commons.di.CommonsDaggerSupportFragment;
 import fr.free.nrw.commons.mwapi.MediaWikiApi;
+import fr.free.nrw.commons.utils.InstrumentedThreadPoolExecutor;
+import timber.log.Timber;
 
 import static android.Manifest.permission.READ_EXTERNAL_STORAGE;
 import static android.content.Context.DOWNLOAD_SERVICE;
@@ -46,9 +57,15 @@ public class MediaDetailPagerFragment extends CommonsDaggerSupportFragment imple
     @Inject MediaWikiApi mwApi;
     @Inject SessionManager sessionManager;
     @Inject @Named("default_preferences") SharedPreferences prefs;
+    @Inject Provider<MediaDataExtractor> mediaDataExtractorProvider;
+    @Inject InstrumentedThreadPoolExecutor ioExecutor;
+    // Parsing the licenses is only worth it, and only done, off the main thread
+    @Inject Lazy<LicenseList> licenseList;
 
     private ViewPager pager;
     private Boolean editable;
+    // Files whose metadata is being prefetched, touched from the io threads too
+    private final Set<String> prefetching = Collections.synchronizedSet(new HashSet<>());
 
     public MediaDetailPagerFragment() {
         this(false);
@@ -78,9 +95,11 @@ public class MediaDetailPagerFragment extends CommonsDaggerSupportFragment imple
                 pager.setCurrentItem(pageNumber, false);
                 getActivity().supportInvalidateOptionsMenu();
                 adapter.notifyDataSetChanged();
+                prefetchNeighbours(pageNumber);
             }, 100);
         } else {
             pager.setAdapter(adapter);
+            pager.post(() -> prefetchNeighbours(pager.getCurrentItem()));
         }
         return view;
     }
@@ -234,6 +253,45 @@ public class MediaDetailPagerFragment extends CommonsDaggerSupportFragment imple
         pager.setCurrentItem(i);
     }
 
+    /**
+     * Warms the metadata cache for the pages just past the ones the pager keeps alive,
+     * so that their details show up without a network round trip once swiped in.
+     */
+    private void prefetchNeighbours(int position) {
+        MediaDetailProvider provider = (MediaDetailProvider) getActivity();
+        if (provider == null) {
+            return;
+        }
+        int distance = pager.getOffscreenPageLimit() + 1;
+        for (int i : new int[]{position - distance, position + distance}) {
+            if (i < 0 || i >= provider.getTotalMediaCount()) {
+                continue;
+            }
+            Media media = provider.getMediaAtPosition(i);
+            if (media == null || media.getFilename() == null) {
+                continue;
+            }
+            if (media instanceof Contribution
+                    && ((Contribution) media).getState() != Contribution.STATE_COMPLETED) {
+                // Not on the server yet
+                continue;
+            }
+            String filename = media.getFilename();
+            if (!prefetching.add(filename)) {
+                continue;
+            }
+            ioExecutor.execute(() -> {
+                try {
+                    mediaDataExtractorProvider.get().fetch(filename, licenseList.get());
+                } catch (IOException e) {
+                    Timber.d(e, "Failed to prefetch the details of %s", filename);
+                } finally {
+                    prefetching.remove(filename);
+                }
+            });
+        }
+    }
+
     @Override
     public void onPageScrolled(int i, float v, int i2) {
         getActivity().supportInvalidateOptionsMenu();
@@ -241,6 +299,7 @@ public class MediaDetailPagerFragment extends CommonsDaggerSupportFragment imple
 
     @Override
     public void onPageSelected(int i) {
+        prefetchNeighbours(i);
     }
 
     @Override
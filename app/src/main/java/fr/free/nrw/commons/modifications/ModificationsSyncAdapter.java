@@ -13,6 +13,7 @@ import java.io.IOException;
 
 import javax.inject.Inject;
 
+import fr.free.nrw.commons.MediaMetadataCache;
 import fr.free.nrw.commons.auth.SessionManager;
 import fr.free.nrw.commons.contributions.Contribution;
 import fr.free.nrw.commons.contributions.ContributionDao;
@@ -26,6 +27,7 @@ public class ModificationsSyncAdapter extends AbstractThreadedSyncAdapter {
     @Inject MediaWikiApi mwApi;
     @Inject ContributionDao contributionDao;
     @Inject ModifierSequenceDao modifierSequenceDao;
+    @Inject MediaMetadataCache metadataCache;
     @Inject
     SessionManager sessionManager;
 
@@ -128,6 +130,7 @@ public class ModificationsSyncAdapter extends AbstractThreadedSyncAdapter {
                         Timber.d("Non success result! %s", editResult);
                     } else {
                         modifierSequenceDao.delete(sequence);
+                        metadataCache.remove(contrib.getFilename());
                     }
                 }
                 allModifications.moveToNext();
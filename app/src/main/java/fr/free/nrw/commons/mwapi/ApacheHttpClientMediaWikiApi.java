@@ -23,21 +23,30 @@ import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.util.EntityUtils;
 import org.mediawiki.api.ApiResult;
 import org.mediawiki.api.MWApi;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
 import fr.free.nrw.commons.BuildConfig;
 import fr.free.nrw.commons.PageTitle;
 import fr.free.nrw.commons.notification.Notification;
@@ -46,10 +55,15 @@ import io.reactivex.Observable;
 import io.reactivex.Single;
 import timber.log.Timber;
 
-import static fr.free.nrw.commons.notification.NotificationType.UNKNOWN;
-import static fr.free.nrw.commons.notification.NotificationUtils.getNotificationFromApiResult;
-import static fr.free.nrw.commons.notification.NotificationUtils.getNotificationType;
-import static fr.free.nrw.commons.notification.NotificationUtils.isCommonsNotification;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.fileTitles;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.parseMWDate;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readExistingFileNames;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readLogEvents;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readNotifications;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readSha1s;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readThumbnails;
+import static fr.free.nrw.commons.mwapi.UploadChunks.readChunk;
+import static fr.free.nrw.commons.mwapi.UploadChunks.skipFully;
 
 /**
  * @author Addshore
@@ -58,6 +72,8 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
     private String wikiMediaToolforgeUrl = "https://tools.wmflabs.org/";
 
     private static final String THUMB_SIZE = "640";
+    private static final int UPLOAD_CHUNK_SIZE = 1024 * 1024;
+    private String apiURL;
     private AbstractHttpClient httpClient;
     private MWApi api;
     private Context context;
@@ -74,6 +90,7 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
         params.setParameter(CoreProtocolPNames.USER_AGENT, getUserAgent());
         httpClient = new DefaultHttpClient(cm, params);
         api = new MWApi(apiURL, httpClient);
+        this.apiURL = apiURL;
         this.sharedPreferences = sharedPreferences;
     }
 
@@ -205,6 +222,19 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
                 .getNodes("/api/query/pages/page/imageinfo").size() > 0;
     }
 
+    @Override
+    @NonNull
+    public Set<String> existingFileNames(Collection<String> fileNames) throws IOException {
+        if (fileNames.isEmpty()) {
+            return new HashSet<>();
+        }
+        try (ApiXmlReader reader = stream(streamingQuery()
+                .data("prop", "imageinfo")
+                .data("titles", fileTitles(fileNames)))) {
+            return readExistingFileNames(reader, fileNames);
+        }
+    }
+
     @Override
     @Nullable
     public String edit(String editToken, String processedPageContent, String filename, String summary) throws IOException {
@@ -229,83 +259,90 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
                 .getString("/api/query/pages/page/imageinfo/ii/@thumburl");
     }
 
+    @Override
+    @NonNull
+    public Map<String, String> findThumbnailsByFilenames(Collection<String> filenames) throws IOException {
+        if (filenames.isEmpty()) {
+            return new HashMap<>();
+        }
+        try (ApiXmlReader reader = stream(streamingQuery()
+                .data("prop", "imageinfo")
+                .data("iiprop", "url")
+                .data("iiurlwidth", THUMB_SIZE)
+                .data("titles", TextUtils.join("|", filenames)))) {
+            return readThumbnails(reader, filenames);
+        }
+    }
+
     @Override
     @NonNull
     public MediaResult fetchMediaByFilename(String filename) throws IOException {
         ApiResult apiResult = api.action("query")
                 .param("prop", "revisions")
                 .param("titles", filename)
-                .param("rvprop", "content")
+                .param("rvprop", "content|ids")
                 .param("rvlimit", 1)
                 .param("rvgeneratexml", 1)
                 .get();
 
         return new MediaResult(
                 apiResult.getString("/api/query/pages/page/revisions/rev"),
-                apiResult.getString("/api/query/pages/page/revisions/rev/@parsetree"));
+                apiResult.getString("/api/query/pages/page/revisions/rev/@parsetree"),
+                ApiResponseParser.parseRevisionId(apiResult.getString("/api/query/pages/page/revisions/rev/@revid")));
+    }
+
+    @Override
+    public long fetchLatestRevisionId(String filename) throws IOException {
+        return ApiResponseParser.parseRevisionId(api.action("query")
+                .param("prop", "revisions")
+                .param("titles", filename)
+                .param("rvprop", "ids")
+                .get()
+                .getString("/api/query/pages/page/revisions/rev/@revid"));
     }
 
     @Override
     @NonNull
     public Observable<String> searchCategories(String filterValue, int searchCatsLimit) {
-        return Single.fromCallable(() -> {
-            List<ApiResult> categoryNodes = null;
-            try {
-                categoryNodes = api.action("query")
-                        .param("format", "xml")
-                        .param("list", "search")
-                        .param("srwhat", "text")
-                        .param("srnamespace", "14")
-                        .param("srlimit", searchCatsLimit)
-                        .param("srsearch", filterValue)
-                        .get()
-                        .getNodes("/api/query/search/p/@title");
+        return Observable.create(emitter -> {
+            try (ApiXmlReader reader = stream(streamingQuery()
+                    .data("list", "search")
+                    .data("srwhat", "text")
+                    .data("srnamespace", "14")
+                    .data("srlimit", String.valueOf(searchCatsLimit))
+                    .data("srsearch", filterValue))) {
+                while (!emitter.isDisposed() && reader.nextElement()) {
+                    if (reader.isAt("/api/query/search/p")) {
+                        emitter.onNext(reader.getAttribute("title").replace("Category:", ""));
+                    }
+                }
+                emitter.onComplete();
             } catch (IOException e) {
-                Timber.e("Failed to obtain searchCategories", e);
-            }
-
-            if (categoryNodes == null) {
-                return new ArrayList<String>();
-            }
-
-            List<String> categories = new ArrayList<>();
-            for (ApiResult categoryNode : categoryNodes) {
-                String cat = categoryNode.getDocument().getTextContent();
-                String catString = cat.replace("Category:", "");
-                categories.add(catString);
+                Timber.e(e, "Failed to obtain searchCategories");
+                emitter.tryOnError(e);
             }
-
-            return categories;
-        }).flatMapObservable(Observable::fromIterable);
+        });
     }
 
     @Override
     @NonNull
     public Observable<String> allCategories(String filterValue, int searchCatsLimit) {
-        return Single.fromCallable(() -> {
-            ArrayList<ApiResult> categoryNodes = null;
-            try {
-                categoryNodes = api.action("query")
-                        .param("list", "allcategories")
-                        .param("acprefix", filterValue)
-                        .param("aclimit", searchCatsLimit)
-                        .get()
-                        .getNodes("/api/query/allcategories/c");
+        return Observable.create(emitter -> {
+            try (ApiXmlReader reader = stream(streamingQuery()
+                    .data("list", "allcategories")
+                    .data("acprefix", filterValue)
+                    .data("aclimit", String.valueOf(searchCatsLimit)))) {
+                while (!emitter.isDisposed() && reader.nextElement()) {
+                    if (reader.isAt("/api/query/allcategories/c")) {
+                        emitter.onNext(reader.getText());
+                    }
+                }
+                emitter.onComplete();
             } catch (IOException e) {
-                Timber.e("Failed to obtain allCategories", e);
-            }
-
-            if (categoryNodes == null) {
-                return new ArrayList<String>();
+                Timber.e(e, "Failed to obtain allCategories");
+                emitter.tryOnError(e);
             }
-
-            List<String> categories = new ArrayList<>();
-            for (ApiResult categoryNode : categoryNodes) {
-                categories.add(categoryNode.getDocument().getTextContent());
-            }
-
-            return categories;
-        }).flatMapObservable(Observable::fromIterable);
+        });
     }
 
     @Override
@@ -347,38 +384,24 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
     @Override
     @NonNull
     public LogEventResult logEvents(String user, String lastModified, String queryContinue, int limit) throws IOException {
-        org.mediawiki.api.MWApi.RequestBuilder builder = api.action("query")
-                .param("list", "logevents")
-                .param("letype", "upload")
-                .param("leprop", "title|timestamp|ids")
-                .param("leuser", user)
-                .param("lelimit", limit);
+        Http.HttpRequestBuilder builder = streamingQuery()
+                .data("list", "logevents")
+                .data("letype", "upload")
+                .data("leprop", "title|timestamp|ids")
+                .data("leuser", user)
+                .data("lelimit", String.valueOf(limit));
         if (!TextUtils.isEmpty(lastModified)) {
-            builder.param("leend", lastModified);
+            builder.data("leend", lastModified);
         }
         if (!TextUtils.isEmpty(queryContinue)) {
-            builder.param("lestart", queryContinue);
+            builder.data("lestart", queryContinue);
         }
-        ApiResult result = builder.get();
 
-        return new LogEventResult(
-                getLogEventsFromResult(result),
-                result.getString("/api/query-continue/logevents/@lestart"));
-    }
-
-    @NonNull
-    private ArrayList<LogEventResult.LogEvent> getLogEventsFromResult(ApiResult result) {
-        ArrayList<ApiResult> uploads = result.getNodes("/api/query/logevents/item");
-        Timber.d("%d results!", uploads.size());
-        ArrayList<LogEventResult.LogEvent> logEvents = new ArrayList<>();
-        for (ApiResult image : uploads) {
-            logEvents.add(new LogEventResult.LogEvent(
-                    image.getString("@pageid"),
-                    image.getString("@title"),
-                    parseMWDate(image.getString("@timestamp")))
-            );
+        try (ApiXmlReader reader = stream(builder)) {
+            LogEventResult result = readLogEvents(reader);
+            Timber.d("%d results!", result.getLogEvents().size());
+            return result;
         }
-        return logEvents;
     }
 
     @Override
@@ -395,39 +418,17 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
     @Override
     @NonNull
     public List<Notification> getNotifications() {
-        ApiResult notificationNode = null;
-        try {
-            notificationNode = api.action("query")
-                    .param("notprop", "list")
-                    .param("format", "xml")
-                    .param("meta", "notifications")
-                    .param("notfilter", "!read")
-                    .get()
-                    .getNode("/api/query/notifications/list");
+        try (ApiXmlReader reader = stream(streamingQuery()
+                .data("notprop", "list")
+                .data("meta", "notifications")
+                .data("notfilter", "!read"))) {
+            return readNotifications(context, reader);
         } catch (IOException e) {
-            Timber.e("Failed to obtain searchCategories", e);
-        }
-
-        if (notificationNode == null) {
+            Timber.e("Failed to obtain notifications", e);
             return new ArrayList<>();
         }
-
-        List<Notification> notifications = new ArrayList<>();
-
-        NodeList childNodes = notificationNode.getDocument().getChildNodes();
-
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node node = childNodes.item(i);
-            if (isCommonsNotification(node)
-                    && !getNotificationType(node).equals(UNKNOWN)) {
-                notifications.add(getNotificationFromApiResult(context, node));
-            }
-        }
-
-        return notifications;
     }
 
-
     @Override
     public boolean existingFile(String fileSha1) throws IOException {
         return api.action("query")
@@ -438,6 +439,20 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
                 .getNodes("/api/query/allimages/img").size() > 0;
     }
 
+    @Override
+    @NonNull
+    public Map<String, String> fileSha1s(Collection<String> titles) throws IOException {
+        if (titles.isEmpty()) {
+            return new HashMap<>();
+        }
+        try (ApiXmlReader reader = stream(streamingQuery()
+                .data("prop", "imageinfo")
+                .data("iiprop", "sha1")
+                .data("titles", TextUtils.join("|", titles)))) {
+            return readSha1s(reader);
+        }
+    }
+
     @Override
     public boolean logEvents(LogBuilder[] logBuilders) {
         boolean allSuccess = true;
@@ -473,6 +488,106 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
 
         Log.e("WTF", "Result: " + result.toString());
 
+        return getUploadResult(result);
+    }
+
+    @Override
+    @NonNull
+    public UploadResult uploadFileInChunks(String filename,
+                                           @NonNull InputStream file,
+                                           long dataLength,
+                                           @Nullable String fileKey,
+                                           long offset,
+                                           String pageContents,
+                                           String editSummary,
+                                           ChunkListener chunkListener,
+                                           final ProgressListener progressListener) throws IOException {
+        String editToken = api.getEditToken();
+        skipFully(file, offset);
+
+        byte[] chunk = new byte[UPLOAD_CHUNK_SIZE];
+        while (offset < dataLength) {
+            int chunkLength = readChunk(file, chunk);
+            if (chunkLength == 0) {
+                throw new IOException("Unexpected end of file at offset " + offset + " of " + dataLength);
+            }
+
+            final long chunkStart = offset;
+            Http.HttpRequestBuilder builder = Http.multipart(apiURL)
+                    .data("action", "upload")
+                    .data("format", "xml")
+                    .data("stash", "1")
+                    .data("ignorewarnings", "1")
+                    .data("token", editToken)
+                    .data("filename", filename)
+                    .data("filesize", String.valueOf(dataLength))
+                    .data("offset", String.valueOf(chunkStart))
+                    .sendProgressListener((transferred, total) ->
+                            progressListener.onProgress(chunkStart + transferred, dataLength));
+            if (fileKey != null) {
+                builder.data("filekey", fileKey);
+            }
+            builder.file("chunk", filename, new ByteArrayInputStream(chunk, 0, chunkLength), chunkLength);
+
+            Document result = parseXmlResponse(builder.use(httpClient).asResponse());
+            String resultStatus = evaluateXPath(result, "/api/upload/@result");
+            if (!resultStatus.equals("Continue") && !resultStatus.equals("Success")) {
+                return new UploadResult(resultStatus, evaluateXPath(result, "/api/error/@code"));
+            }
+
+            fileKey = evaluateXPath(result, "/api/upload/@filekey");
+            String nextOffset = evaluateXPath(result, "/api/upload/@offset");
+            offset = TextUtils.isEmpty(nextOffset) ? chunkStart + chunkLength : Long.parseLong(nextOffset);
+            Timber.d("Stashed %d of %d bytes as %s", offset, dataLength, fileKey);
+            chunkListener.onChunkUploaded(fileKey, offset);
+        }
+
+        // Every chunk is in the stash, publish the assembled file
+        ApiResult result = api.action("upload")
+                .param("filename", filename)
+                .param("filekey", fileKey)
+                .param("text", pageContents)
+                .param("comment", editSummary)
+                .param("ignorewarnings", "1")
+                .param("token", editToken)
+                .post();
+
+        return getUploadResult(result);
+    }
+
+    /**
+     * Query request for the calls read with {@link ApiXmlReader}, which need the raw response.
+     */
+    private Http.HttpRequestBuilder streamingQuery() {
+        return Http.get(apiURL)
+                .data("action", "query")
+                .data("format", "xml");
+    }
+
+    private ApiXmlReader stream(Http.HttpRequestBuilder request) throws IOException {
+        return new ApiXmlReader(request.use(httpClient).asResponse().getEntity().getContent());
+    }
+
+    private Document parseXmlResponse(HttpResponse response) throws IOException {
+        try {
+            return DocumentBuilderFactory.newInstance()
+                    .newDocumentBuilder()
+                    .parse(response.getEntity().getContent());
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unable to parse upload response", e);
+        }
+    }
+
+    private String evaluateXPath(Document document, String expression) throws IOException {
+        try {
+            return XPathFactory.newInstance().newXPath().evaluate(expression, document);
+        } catch (XPathExpressionException e) {
+            throw new IOException("Unable to read upload response", e);
+        }
+    }
+
+    @NonNull
+    private UploadResult getUploadResult(ApiResult result) {
         String resultStatus = result.getString("/api/upload/@result");
         if (!resultStatus.equals("Success")) {
             String errorCode = result.getString("/api/error/@code");
@@ -504,13 +619,4 @@ public class ApacheHttpClientMediaWikiApi implements MediaWikiApi {
             return Integer.parseInt(uploadCount);
         });
     }
-
-    private Date parseMWDate(String mwDate) {
-        SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH); // Assuming MW always gives me UTC
-        try {
-            return isoFormat.parse(mwDate);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
-    }
 }
@@ -0,0 +1,211 @@
+package fr.free.nrw.commons.mwapi;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import fr.free.nrw.commons.notification.Notification;
+import fr.free.nrw.commons.notification.NotificationType;
+
+import static fr.free.nrw.commons.notification.NotificationType.UNKNOWN;
+import static fr.free.nrw.commons.notification.NotificationUtils.buildNotification;
+import static fr.free.nrw.commons.notification.NotificationUtils.isCommonsWiki;
+
+/**
+ * Converts streamed API responses into model objects, shared by the {@link MediaWikiApi}
+ * implementations so they only differ in how they talk HTTP.
+ */
+final class ApiResponseParser {
+
+    private ApiResponseParser() {
+    }
+
+    @NonNull
+    static LogEventResult readLogEvents(ApiXmlReader reader) throws IOException {
+        List<LogEventResult.LogEvent> logEvents = new ArrayList<>();
+        String queryContinue = "";
+        while (reader.nextElement()) {
+            if (reader.isAt("/api/query/logevents/item")) {
+                logEvents.add(new LogEventResult.LogEvent(
+                        reader.getAttribute("pageid"),
+                        reader.getAttribute("title"),
+                        parseMWDate(reader.getAttribute("timestamp"))));
+            } else if (reader.isAt("/api/query-continue/logevents")) {
+                queryContinue = reader.getAttribute("lestart");
+            }
+        }
+        return new LogEventResult(logEvents, queryContinue, reader.getBytesRead());
+    }
+
+    @NonNull
+    static List<Notification> readNotifications(Context context, ApiXmlReader reader) throws IOException {
+        List<Notification> notifications = new ArrayList<>();
+        while (reader.nextElement()) {
+            if (reader.isAt("/api/query/notifications/list")) {
+                int listDepth = reader.getDepth();
+                while (reader.nextElement(listDepth)) {
+                    Notification notification = readNotification(context, reader);
+                    if (notification != null) {
+                        notifications.add(notification);
+                    }
+                }
+            }
+        }
+        return notifications;
+    }
+
+    /**
+     * Reads one notification element up to its end.
+     * @return the notification, or null if it's not one from Commons the app can show
+     */
+    @Nullable
+    private static Notification readNotification(Context context, ApiXmlReader reader) throws IOException {
+        int depth = reader.getDepth();
+        boolean fromCommons = isCommonsWiki(reader.getAttribute("wiki"));
+        NotificationType type = NotificationType.handledValueOf(reader.getAttribute("type"));
+        String agent = "";
+        String timestamp = "";
+        String titleFull = null;
+        String titleText = "";
+        while (reader.nextElement(depth)) {
+            if (reader.getDepth() != depth + 1) {
+                continue;
+            }
+            switch (reader.getName()) {
+                case "agent":
+                    agent = reader.getAttribute("name");
+                    break;
+                case "timestamp":
+                    timestamp = reader.getAttribute("date");
+                    break;
+                case "title":
+                    titleFull = reader.getAttribute("full");
+                    titleText = reader.getAttribute("text");
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!fromCommons || type.equals(UNKNOWN)) {
+            return null;
+        }
+        return buildNotification(context, type, agent, timestamp, titleFull, titleText);
+    }
+
+    /**
+     * @return the titles parameter querying the given files
+     */
+    static String fileTitles(Collection<String> fileNames) {
+        List<String> titles = new ArrayList<>(fileNames.size());
+        for (String fileName : fileNames) {
+            titles.add("File:" + fileName);
+        }
+        return TextUtils.join("|", titles);
+    }
+
+    /**
+     * Reads an imageinfo query on {@link #fileTitles(Collection)}.
+     * @return the file names that exist on the server, as they were asked for
+     */
+    @NonNull
+    static Set<String> readExistingFileNames(ApiXmlReader reader, Collection<String> fileNames) throws IOException {
+        Map<String, String> normalized = new HashMap<>();
+        Map<String, String> timestamps = readImageInfo(reader, "timestamp", normalized);
+        Set<String> existing = new HashSet<>();
+        for (String fileName : fileNames) {
+            if (timestamps.containsKey(normalizedTitle(normalized, "File:" + fileName))) {
+                existing.add(fileName);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Reads an imageinfo query for the url property.
+     * @return the thumbnail URLs of the files that have one, keyed by the title asked for
+     */
+    @NonNull
+    static Map<String, String> readThumbnails(ApiXmlReader reader, Collection<String> titles) throws IOException {
+        Map<String, String> normalized = new HashMap<>();
+        Map<String, String> thumbUrls = readImageInfo(reader, "thumburl", normalized);
+        Map<String, String> thumbnails = new HashMap<>();
+        for (String title : titles) {
+            String thumbUrl = thumbUrls.get(normalizedTitle(normalized, title));
+            if (!TextUtils.isEmpty(thumbUrl)) {
+                thumbnails.put(title, thumbUrl);
+            }
+        }
+        return thumbnails;
+    }
+
+    /**
+     * Reads an imageinfo query for the sha1 property.
+     * @return the hashes of the files that have one, keyed by the title the server returned
+     */
+    @NonNull
+    static Map<String, String> readSha1s(ApiXmlReader reader) throws IOException {
+        Map<String, String> sha1s = readImageInfo(reader, "sha1", new HashMap<>());
+        for (String title : new ArrayList<>(sha1s.keySet())) {
+            if (TextUtils.isEmpty(sha1s.get(title))) {
+                sha1s.remove(title);
+            }
+        }
+        return sha1s;
+    }
+
+    /**
+     * Reads an attribute of the latest image info of every page that has one.
+     * @param normalized filled with the titles the server normalized, to the ones it returned
+     * @return the attribute, empty if absent, keyed by the title of the page
+     */
+    private static Map<String, String> readImageInfo(ApiXmlReader reader, String attribute,
+                                                     Map<String, String> normalized) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        String title = null;
+        while (reader.nextElement()) {
+            if (reader.isAt("/api/query/normalized/n")) {
+                normalized.put(reader.getAttribute("from"), reader.getAttribute("to"));
+            } else if (reader.isAt("/api/query/pages/page")) {
+                title = reader.getAttribute("title");
+            } else if (reader.isAt("/api/query/pages/page/imageinfo/ii") && !values.containsKey(title)) {
+                values.put(title, reader.getAttribute(attribute));
+            }
+        }
+        return values;
+    }
+
+    private static String normalizedTitle(Map<String, String> normalized, String title) {
+        String normalizedTitle = normalized.get(title);
+        return normalizedTitle == null ? title : normalizedTitle;
+    }
+
+    static Date parseMWDate(String mwDate) {
+        SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH); // Assuming MW always gives me UTC
+        try {
+            return isoFormat.parse(mwDate);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the revision id, 0 when the attribute was missing because the page doesn't exist
+     */
+    static long parseRevisionId(String revid) {
+        return TextUtils.isEmpty(revid) ? 0 : Long.parseLong(revid);
+    }
+}
@@ -0,0 +1,167 @@
+package fr.free.nrw.commons.mwapi;
+
+import android.support.annotation.NonNull;
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Walks an XML API response one element at a time with a pull parser, so that
+ * records can be handed out while the rest of the response is still being read
+ * instead of building the whole document in memory first.
+ */
+class ApiXmlReader implements Closeable {
+
+    private final CountingInputStream stream;
+    private final XmlPullParser parser;
+    private final List<String> path = new ArrayList<>();
+
+    ApiXmlReader(InputStream stream) throws IOException {
+        this.stream = new CountingInputStream(stream);
+        parser = Xml.newPullParser();
+        try {
+            parser.setInput(this.stream, null);
+        } catch (XmlPullParserException e) {
+            throw new IOException("Unable to read API response", e);
+        }
+    }
+
+    /**
+     * Moves to the start of the next element, wherever it is in the document.
+     * @return false once the document is over
+     */
+    boolean nextElement() throws IOException {
+        return nextElement(0);
+    }
+
+    /**
+     * Moves to the start of the next element nested in the element at the given depth.
+     * @param parentDepth {@link #getDepth()} of the enclosing element
+     * @return false once the enclosing element is over
+     */
+    boolean nextElement(int parentDepth) throws IOException {
+        try {
+            while (true) {
+                switch (parser.next()) {
+                    case XmlPullParser.START_TAG:
+                        path.add(parser.getName());
+                        return true;
+                    case XmlPullParser.END_TAG:
+                        path.remove(path.size() - 1);
+                        if (path.size() < parentDepth) {
+                            return false;
+                        }
+                        break;
+                    case XmlPullParser.END_DOCUMENT:
+                        return false;
+                    default:
+                        break;
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException("Unable to parse API response", e);
+        }
+    }
+
+    /**
+     * @param elementPath slash separated element names from the root, like /api/query/allcategories/c
+     * @return true if the current element is at exactly that path
+     */
+    boolean isAt(@NonNull String elementPath) {
+        String[] names = elementPath.substring(1).split("/");
+        if (names.length != path.size()) {
+            return false;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (!names[i].equals(path.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getDepth() {
+        return path.size();
+    }
+
+    String getName() {
+        return parser.getName();
+    }
+
+    /**
+     * @return the attribute of the current element, or an empty string if it's absent
+     */
+    @NonNull
+    String getAttribute(String name) {
+        String value = parser.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Reads the text of the current element and moves to its end.
+     */
+    @NonNull
+    String getText() throws IOException {
+        try {
+            String text = parser.nextText();
+            path.remove(path.size() - 1);
+            return text;
+        } catch (XmlPullParserException e) {
+            throw new IOException("Unable to parse API response", e);
+        }
+    }
+
+    /**
+     * @return the number of bytes of the response read so far, the parser reads ahead
+     * of the current element
+     */
+    long getBytesRead() {
+        return stream.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package fr.free.nrw.commons.mwapi;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import timber.log.Timber;
+
+/**
+ * Network interceptor counting how often requests reuse a pooled connection
+ * and how many of them go over HTTP/2. The counts are logged every
+ * {@link #LOG_INTERVAL} requests.
+ */
+public class ConnectionMetricsInterceptor implements Interceptor {
+
+    static final int LOG_INTERVAL = 100;
+
+    private final Set<Connection> seenConnections =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong newConnections = new AtomicLong();
+    private final AtomicLong http2Requests = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Connection connection = chain.connection();
+        long count = requests.incrementAndGet();
+        if (connection != null) {
+            if (seenConnections.add(connection)) {
+                newConnections.incrementAndGet();
+            }
+            if (connection.protocol() == Protocol.HTTP_2) {
+                http2Requests.incrementAndGet();
+            }
+        }
+        if (count % LOG_INTERVAL == 0) {
+            Timber.d("API connections: %s", this);
+        }
+        return chain.proceed(chain.request());
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getNewConnectionCount() {
+        return newConnections.get();
+    }
+
+    /**
+     * @return the number of requests sent on a connection opened by an earlier request
+     */
+    public long getReusedConnectionCount() {
+        return requests.get() - newConnections.get();
+    }
+
+    public long getHttp2RequestCount() {
+        return http2Requests.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%d requests, %d new connections, %d reused, %d over HTTP/2",
+                getRequestCount(), getNewConnectionCount(), getReusedConnectionCount(), getHttp2RequestCount());
+    }
+}
@@ -9,10 +9,12 @@ import java.util.List;
 public class LogEventResult {
     private final List<LogEvent> logEvents;
     private final String queryContinue;
+    private final long responseBytes;
 
-    LogEventResult(@NonNull List<LogEvent> logEvents, String queryContinue) {
+    LogEventResult(@NonNull List<LogEvent> logEvents, String queryContinue, long responseBytes) {
         this.logEvents = logEvents;
         this.queryContinue = queryContinue;
+        this.responseBytes = responseBytes;
     }
 
     @NonNull
@@ -25,6 +27,13 @@ public class LogEventResult {
         return queryContinue;
     }
 
+    /**
+     * @return size of the response the events were read from, once decompressed
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
     public static class LogEvent {
         private final String pageId;
         private final String filename;
@@ -3,16 +3,19 @@ package fr.free.nrw.commons.mwapi;
 public class MediaResult {
     private final String wikiSource;
     private final String parseTreeXmlSource;
+    private final long revisionId;
 
     /**
      * Full-fledged constructor of MediaResult
      *
      * @param wikiSource         Media wiki source
      * @param parseTreeXmlSource Media tree parsed in XML
+     * @param revisionId         Id of the revision the source was taken from
      */
-    MediaResult(String wikiSource, String parseTreeXmlSource) {
+    MediaResult(String wikiSource, String parseTreeXmlSource, long revisionId) {
         this.wikiSource = wikiSource;
         this.parseTreeXmlSource = parseTreeXmlSource;
+        this.revisionId = revisionId;
     }
 
     /**
@@ -30,4 +33,12 @@ public class MediaResult {
     public String getParseTreeXmlSource() {
         return parseTreeXmlSource;
     }
+
+    /**
+     * Gets the revision id
+     * @return Id of the revision, 0 if the page doesn't exist
+     */
+    public long getRevisionId() {
+        return revisionId;
+    }
 }
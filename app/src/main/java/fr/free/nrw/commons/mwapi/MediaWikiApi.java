@@ -5,7 +5,10 @@ import android.support.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import fr.free.nrw.commons.notification.Notification;
 import io.reactivex.Observable;
@@ -28,19 +31,48 @@ public interface MediaWikiApi {
 
     boolean fileExistsWithName(String fileName) throws IOException;
 
+    /**
+     * Checks several file names with a single query.
+     * @param fileNames file names without the File: prefix, at most 50
+     * @return the subset of {@code fileNames} that already exist
+     */
+    @NonNull
+    Set<String> existingFileNames(Collection<String> fileNames) throws IOException;
+
     String findThumbnailByFilename(String filename) throws IOException;
 
+    /**
+     * Fetches the thumbnail URL of several files with a single query.
+     * @param filenames file titles with the File: prefix, at most 50
+     * @return the thumbnail URL of each file that exists, keyed by the requested title
+     */
+    @NonNull
+    Map<String, String> findThumbnailsByFilenames(Collection<String> filenames) throws IOException;
+
     boolean logEvents(LogBuilder[] logBuilders);
 
     @NonNull
     UploadResult uploadFile(String filename, InputStream file, long dataLength, String pageContents, String editSummary, ProgressListener progressListener) throws IOException;
 
+    /**
+     * Uploads a file through the upload stash, one chunk per request, and publishes it
+     * once all chunks have been acknowledged. Passing the file key and offset of an
+     * interrupted upload resumes it from the last acknowledged chunk.
+     */
+    @NonNull
+    UploadResult uploadFileInChunks(String filename, InputStream file, long dataLength, @Nullable String fileKey, long offset, String pageContents, String editSummary, ChunkListener chunkListener, ProgressListener progressListener) throws IOException;
+
     @Nullable
     String edit(String editToken, String processedPageContent, String filename, String summary) throws IOException;
 
     @NonNull
     MediaResult fetchMediaByFilename(String filename) throws IOException;
 
+    /**
+     * @return the id of the latest revision of the page, 0 if it doesn't exist
+     */
+    long fetchLatestRevisionId(String filename) throws IOException;
+
     @NonNull
     Observable<String> searchCategories(String filterValue, int searchCatsLimit);
 
@@ -58,6 +90,14 @@ public interface MediaWikiApi {
 
     boolean existingFile(String fileSha1) throws IOException;
 
+    /**
+     * Fetches the SHA1 of several files with a single query.
+     * @param titles file titles with the File: prefix, at most 50
+     * @return the SHA1 of each title that exists, keyed by title
+     */
+    @NonNull
+    Map<String, String> fileSha1s(Collection<String> titles) throws IOException;
+
 
 
     @NonNull
@@ -69,4 +109,8 @@ public interface MediaWikiApi {
     interface ProgressListener {
         void onProgress(long transferred, long total);
     }
+
+    interface ChunkListener {
+        void onChunkUploaded(String fileKey, long offset);
+    }
 }
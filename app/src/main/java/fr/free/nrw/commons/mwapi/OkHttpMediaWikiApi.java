@@ -0,0 +1,789 @@
+package fr.free.nrw.commons.mwapi;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.text.TextUtils;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.notification.Notification;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+import timber.log.Timber;
+
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.fileTitles;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.parseMWDate;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readExistingFileNames;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readLogEvents;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readNotifications;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readSha1s;
+import static fr.free.nrw.commons.mwapi.ApiResponseParser.readThumbnails;
+import static fr.free.nrw.commons.mwapi.UploadChunks.readChunk;
+import static fr.free.nrw.commons.mwapi.UploadChunks.skipFully;
+
+/**
+ * {@link MediaWikiApi} on top of OkHttp, which pools and reuses connections,
+ * multiplexes requests over HTTP/2, transparently gzips responses and
+ * serves cacheable responses from its disk cache.
+ */
+public class OkHttpMediaWikiApi implements MediaWikiApi {
+    private String wikiMediaToolforgeUrl = "https://tools.wmflabs.org/";
+
+    private static final String THUMB_SIZE = "640";
+    private static final int UPLOAD_CHUNK_SIZE = 1024 * 1024;
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private final HttpUrl apiUrl;
+    private final OkHttpClient client;
+    // Sends bodies that can only be read once, which a retry would send empty
+    private final OkHttpClient uploadClient;
+    private final ApiCookieJar cookieJar;
+    private final ConnectionMetricsInterceptor connectionMetrics = new ConnectionMetricsInterceptor();
+    private final Context context;
+    private final SharedPreferences sharedPreferences;
+
+    /**
+     * @param client shared client, its connection pool and cache are reused
+     */
+    public OkHttpMediaWikiApi(Context context, String apiURL, SharedPreferences sharedPreferences,
+                              OkHttpClient client) {
+        this.context = context;
+        this.apiUrl = HttpUrl.parse(apiURL);
+        this.sharedPreferences = sharedPreferences;
+        this.cookieJar = new ApiCookieJar(apiUrl);
+        this.client = client.newBuilder()
+                .cookieJar(cookieJar)
+                .addNetworkInterceptor(connectionMetrics)
+                .build();
+        this.uploadClient = this.client.newBuilder()
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    @Override
+    @NonNull
+    public String getUserAgent() {
+        return "Commons/" + BuildConfig.VERSION_NAME + " (https://mediawiki.org/wiki/Apps/Commons) Android/" + Build.VERSION.RELEASE;
+    }
+
+    @VisibleForTesting
+    public void setWikiMediaToolforgeUrl(String wikiMediaToolforgeUrl) {
+        this.wikiMediaToolforgeUrl = wikiMediaToolforgeUrl;
+    }
+
+    public ConnectionMetricsInterceptor getConnectionMetrics() {
+        return connectionMetrics;
+    }
+
+    @Override
+    public String login(String username, String password) throws IOException {
+        String loginToken = getLoginToken();
+        Timber.d("Login token is %s", loginToken);
+        return getErrorCodeToReturn(action("clientlogin")
+                .param("rememberMe", "1")
+                .param("username", username)
+                .param("password", password)
+                .param("logintoken", loginToken)
+                .param("loginreturnurl", "https://commons.wikimedia.org")
+                .post());
+    }
+
+    @Override
+    public String login(String username, String password, String twoFactorCode) throws IOException {
+        String loginToken = getLoginToken();
+        Timber.d("Login token is %s", loginToken);
+        return getErrorCodeToReturn(action("clientlogin")
+                .param("rememberMe", "true")
+                .param("username", username)
+                .param("password", password)
+                .param("logintoken", loginToken)
+                .param("logincontinue", "true")
+                .param("OATHToken", twoFactorCode)
+                .post());
+    }
+
+    private String getLoginToken() throws IOException {
+        return getString(action("query")
+                .param("meta", "tokens")
+                .param("type", "login")
+                .post(), "/api/query/tokens/@logintoken");
+    }
+
+    /**
+     * @see ApacheHttpClientMediaWikiApi for the meaning of the returned codes
+     */
+    private String getErrorCodeToReturn(Document loginResult) throws IOException {
+        String status = getString(loginResult, "/api/clientlogin/@status");
+        if (status.equals("PASS")) {
+            setAuthCookieOnLogin(true);
+            return status;
+        } else if (status.equals("FAIL")) {
+            setAuthCookieOnLogin(false);
+            return getString(loginResult, "/api/clientlogin/@messagecode");
+        } else if (
+                status.equals("UI")
+                        && getString(loginResult, "/api/clientlogin/requests/_v/@id").equals("TOTPAuthenticationRequest")
+                        && getString(loginResult, "/api/clientlogin/requests/_v/@provider").equals("Two-factor authentication (OATH).")
+                ) {
+            setAuthCookieOnLogin(false);
+            return "2FA";
+        }
+
+        // UI, REDIRECT, RESTART
+        return "genericerror-" + status;
+    }
+
+    private void setAuthCookieOnLogin(boolean isLoggedIn) {
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        if (isLoggedIn) {
+            editor.putBoolean("isUserLoggedIn", true);
+            editor.putString("getAuthCookie", getAuthCookie());
+        } else {
+            editor.putBoolean("isUserLoggedIn", false);
+            editor.remove("getAuthCookie");
+        }
+        editor.apply();
+    }
+
+    @Override
+    public String getAuthCookie() {
+        return cookieJar.getAuthCookie();
+    }
+
+    @Override
+    public void setAuthCookie(String authCookie) {
+        cookieJar.setAuthCookie(authCookie);
+    }
+
+    @Override
+    public boolean validateLogin() throws IOException {
+        String userId = getString(action("query")
+                .param("meta", "userinfo")
+                .get(), "/api/query/userinfo/@id");
+        return !TextUtils.isEmpty(userId) && !userId.equals("0");
+    }
+
+    @Override
+    public String getEditToken() throws IOException {
+        return getString(action("tokens")
+                .param("type", "edit")
+                .get(), "/api/tokens/@edittoken");
+    }
+
+    @Override
+    public boolean fileExistsWithName(String fileName) throws IOException {
+        return getNodes(action("query")
+                .param("prop", "imageinfo")
+                .param("titles", "File:" + fileName)
+                .get(), "/api/query/pages/page/imageinfo").getLength() > 0;
+    }
+
+    @Override
+    @NonNull
+    public Set<String> existingFileNames(Collection<String> fileNames) throws IOException {
+        if (fileNames.isEmpty()) {
+            return new HashSet<>();
+        }
+        try (ApiXmlReader reader = action("query")
+                .param("prop", "imageinfo")
+                .param("titles", fileTitles(fileNames))
+                .stream()) {
+            return readExistingFileNames(reader, fileNames);
+        }
+    }
+
+    @Override
+    @Nullable
+    public String edit(String editToken, String processedPageContent, String filename, String summary) throws IOException {
+        return getString(action("edit")
+                .param("title", filename)
+                .param("token", editToken)
+                .param("text", processedPageContent)
+                .param("summary", summary)
+                .post(), "/api/edit/@result");
+    }
+
+    @Override
+    public String findThumbnailByFilename(String filename) throws IOException {
+        return getString(action("query")
+                .param("prop", "imageinfo")
+                .param("iiprop", "url")
+                .param("iiurlwidth", THUMB_SIZE)
+                .param("titles", filename)
+                .get(), "/api/query/pages/page/imageinfo/ii/@thumburl");
+    }
+
+    @Override
+    @NonNull
+    public Map<String, String> findThumbnailsByFilenames(Collection<String> filenames) throws IOException {
+        if (filenames.isEmpty()) {
+            return new HashMap<>();
+        }
+        try (ApiXmlReader reader = action("query")
+                .param("prop", "imageinfo")
+                .param("iiprop", "url")
+                .param("iiurlwidth", THUMB_SIZE)
+                .param("titles", TextUtils.join("|", filenames))
+                .stream()) {
+            return readThumbnails(reader, filenames);
+        }
+    }
+
+    @Override
+    @NonNull
+    public MediaResult fetchMediaByFilename(String filename) throws IOException {
+        Document result = action("query")
+                .param("prop", "revisions")
+                .param("titles", filename)
+                .param("rvprop", "content|ids")
+                .param("rvlimit", 1)
+                .param("rvgeneratexml", 1)
+                .get();
+
+        return new MediaResult(
+                getString(result, "/api/query/pages/page/revisions/rev"),
+                getString(result, "/api/query/pages/page/revisions/rev/@parsetree"),
+                ApiResponseParser.parseRevisionId(getString(result, "/api/query/pages/page/revisions/rev/@revid")));
+    }
+
+    @Override
+    public long fetchLatestRevisionId(String filename) throws IOException {
+        Document result = action("query")
+                .param("prop", "revisions")
+                .param("titles", filename)
+                .param("rvprop", "ids")
+                .get();
+        return ApiResponseParser.parseRevisionId(getString(result, "/api/query/pages/page/revisions/rev/@revid"));
+    }
+
+    @Override
+    @NonNull
+    public Observable<String> searchCategories(String filterValue, int searchCatsLimit) {
+        return Observable.create(emitter -> {
+            try (ApiXmlReader reader = action("query")
+                    .param("list", "search")
+                    .param("srwhat", "text")
+                    .param("srnamespace", "14")
+                    .param("srlimit", searchCatsLimit)
+                    .param("srsearch", filterValue)
+                    .stream()) {
+                while (!emitter.isDisposed() && reader.nextElement()) {
+                    if (reader.isAt("/api/query/search/p")) {
+                        emitter.onNext(reader.getAttribute("title").replace("Category:", ""));
+                    }
+                }
+                emitter.onComplete();
+            } catch (IOException e) {
+                Timber.e(e, "Failed to obtain searchCategories");
+                emitter.tryOnError(e);
+            }
+        });
+    }
+
+    @Override
+    @NonNull
+    public Observable<String> allCategories(String filterValue, int searchCatsLimit) {
+        return Observable.create(emitter -> {
+            try (ApiXmlReader reader = action("query")
+                    .param("list", "allcategories")
+                    .param("acprefix", filterValue)
+                    .param("aclimit", searchCatsLimit)
+                    .stream()) {
+                while (!emitter.isDisposed() && reader.nextElement()) {
+                    if (reader.isAt("/api/query/allcategories/c")) {
+                        emitter.onNext(reader.getText());
+                    }
+                }
+                emitter.onComplete();
+            } catch (IOException e) {
+                Timber.e(e, "Failed to obtain allCategories");
+                emitter.tryOnError(e);
+            }
+        });
+    }
+
+    @Override
+    @NonNull
+    public Observable<String> searchTitles(String title, int searchCatsLimit) {
+        return searchCategories(title, searchCatsLimit);
+    }
+
+    @Override
+    @NonNull
+    public LogEventResult logEvents(String user, String lastModified, String queryContinue, int limit) throws IOException {
+        RequestBuilder builder = action("query")
+                .param("list", "logevents")
+                .param("letype", "upload")
+                .param("leprop", "title|timestamp|ids")
+                .param("leuser", user)
+                .param("lelimit", limit);
+        if (!TextUtils.isEmpty(lastModified)) {
+            builder.param("leend", lastModified);
+        }
+        if (!TextUtils.isEmpty(queryContinue)) {
+            builder.param("lestart", queryContinue);
+        }
+
+        try (ApiXmlReader reader = builder.stream()) {
+            LogEventResult result = readLogEvents(reader);
+            Timber.d("%d results!", result.getLogEvents().size());
+            return result;
+        }
+    }
+
+    @Override
+    @Nullable
+    public String revisionsByFilename(String filename) throws IOException {
+        return getString(action("query")
+                .param("prop", "revisions")
+                .param("rvprop", "timestamp|content")
+                .param("titles", filename)
+                .get(), "/api/query/pages/page/revisions/rev");
+    }
+
+    @Override
+    @NonNull
+    public List<Notification> getNotifications() {
+        try (ApiXmlReader reader = action("query")
+                .param("notprop", "list")
+                .param("meta", "notifications")
+                .param("notfilter", "!read")
+                .stream()) {
+            return readNotifications(context, reader);
+        } catch (IOException e) {
+            Timber.e("Failed to obtain notifications", e);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public boolean existingFile(String fileSha1) throws IOException {
+        return getNodes(action("query")
+                .param("list", "allimages")
+                .param("aisha1", fileSha1)
+                .get(), "/api/query/allimages/img").getLength() > 0;
+    }
+
+    @Override
+    @NonNull
+    public Map<String, String> fileSha1s(Collection<String> titles) throws IOException {
+        if (titles.isEmpty()) {
+            return new HashMap<>();
+        }
+        try (ApiXmlReader reader = action("query")
+                .param("prop", "imageinfo")
+                .param("iiprop", "sha1")
+                .param("titles", TextUtils.join("|", titles))
+                .stream()) {
+            return readSha1s(reader);
+        }
+    }
+
+    @Override
+    public boolean logEvents(LogBuilder[] logBuilders) {
+        boolean allSuccess = true;
+        for (LogBuilder logBuilder : logBuilders) {
+            Request request = new Request.Builder()
+                    .url(logBuilder.toUrl())
+                    .header("User-Agent", getUserAgent())
+                    .build();
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() != 204) {
+                    allSuccess = false;
+                }
+                Timber.d("EventLog hit %s", request.url());
+            } catch (IOException e) {
+                // Probably just ignore for now. Can be much more robust with a service, etc later on.
+                Timber.d("IO Error, EventLog hit skipped");
+            }
+        }
+        return allSuccess;
+    }
+
+    @Override
+    @NonNull
+    public UploadResult uploadFile(String filename,
+                                   @NonNull InputStream file,
+                                   long dataLength,
+                                   String pageContents,
+                                   String editSummary,
+                                   final ProgressListener progressListener) throws IOException {
+        String editToken = getEditToken();
+        Document result = action("upload")
+                .param("token", editToken)
+                .param("text", pageContents)
+                .param("ignorewarnings", "1")
+                .param("comment", editSummary)
+                .param("filename", filename)
+                .postStream("file", filename, new StreamRequestBody(file, dataLength, progressListener));
+        return getUploadResult(result);
+    }
+
+    @Override
+    @NonNull
+    public UploadResult uploadFileInChunks(String filename,
+                                           @NonNull InputStream file,
+                                           long dataLength,
+                                           @Nullable String fileKey,
+                                           long offset,
+                                           String pageContents,
+                                           String editSummary,
+                                           ChunkListener chunkListener,
+                                           final ProgressListener progressListener) throws IOException {
+        String editToken = getEditToken();
+        skipFully(file, offset);
+
+        byte[] chunk = new byte[UPLOAD_CHUNK_SIZE];
+        while (offset < dataLength) {
+            int chunkLength = readChunk(file, chunk);
+            if (chunkLength == 0) {
+                throw new IOException("Unexpected end of file at offset " + offset + " of " + dataLength);
+            }
+
+            final long chunkStart = offset;
+            RequestBuilder builder = action("upload")
+                    .param("stash", "1")
+                    .param("ignorewarnings", "1")
+                    .param("token", editToken)
+                    .param("filename", filename)
+                    .param("filesize", dataLength)
+                    .param("offset", chunkStart);
+            if (fileKey != null) {
+                builder.param("filekey", fileKey);
+            }
+            RequestBody chunkBody = RequestBody.create(OCTET_STREAM, chunk, 0, chunkLength);
+            Document result = builder.postFile("chunk", filename, chunkBody);
+            progressListener.onProgress(chunkStart + chunkLength, dataLength);
+
+            String resultStatus = getString(result, "/api/upload/@result");
+            if (!resultStatus.equals("Continue") && !resultStatus.equals("Success")) {
+                return new UploadResult(resultStatus, getString(result, "/api/error/@code"));
+            }
+
+            fileKey = getString(result, "/api/upload/@filekey");
+            String nextOffset = getString(result, "/api/upload/@offset");
+            offset = TextUtils.isEmpty(nextOffset) ? chunkStart + chunkLength : Long.parseLong(nextOffset);
+            Timber.d("Stashed %d of %d bytes as %s", offset, dataLength, fileKey);
+            chunkListener.onChunkUploaded(fileKey, offset);
+        }
+
+        // Every chunk is in the stash, publish the assembled file
+        Document result = action("upload")
+                .param("filename", filename)
+                .param("filekey", fileKey)
+                .param("text", pageContents)
+                .param("comment", editSummary)
+                .param("ignorewarnings", "1")
+                .param("token", editToken)
+                .post();
+
+        return getUploadResult(result);
+    }
+
+    @NonNull
+    private UploadResult getUploadResult(Document result) throws IOException {
+        String resultStatus = getString(result, "/api/upload/@result");
+        if (!resultStatus.equals("Success")) {
+            String errorCode = getString(result, "/api/error/@code");
+            return new UploadResult(resultStatus, errorCode);
+        } else {
+            return new UploadResult(resultStatus,
+                    parseMWDate(getString(result, "/api/upload/imageinfo/@timestamp")),
+                    "File:" + getString(result, "/api/upload/@filename").replace("_", " "), // Title vs Filename
+                    getString(result, "/api/upload/imageinfo/@url"));
+        }
+    }
+
+    @Override
+    @NonNull
+    public Single<Integer> getUploadCount(String userName) {
+        HttpUrl url = HttpUrl.parse(wikiMediaToolforgeUrl + "urbanecmbot/uploadsbyuser/uploadsbyuser.py")
+                .newBuilder()
+                .addQueryParameter("user", userName)
+                .build();
+        return Single.fromCallable(() -> {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .header("User-Agent", getUserAgent())
+                    .build();
+            try (Response response = client.newCall(request).execute()) {
+                return Integer.parseInt(response.body().string().trim());
+            }
+        });
+    }
+
+    private RequestBuilder action(String action) {
+        return new RequestBuilder(action);
+    }
+
+    private static String getString(Node node, String expression) throws IOException {
+        try {
+            return XPathFactory.newInstance().newXPath().evaluate(expression, node);
+        } catch (XPathExpressionException e) {
+            throw new IOException("Unable to read API response", e);
+        }
+    }
+
+    private static NodeList getNodes(Node node, String expression) throws IOException {
+        try {
+            return (NodeList) XPathFactory.newInstance().newXPath()
+                    .evaluate(expression, node, XPathConstants.NODESET);
+        } catch (XPathExpressionException e) {
+            throw new IOException("Unable to read API response", e);
+        }
+    }
+
+    /**
+     * Fluent builder for API requests, mirroring the one of the MediaWiki API library.
+     */
+    private class RequestBuilder {
+        private final Map<String, String> params = new LinkedHashMap<>();
+
+        RequestBuilder(String action) {
+            params.put("action", action);
+            params.put("format", "xml");
+        }
+
+        RequestBuilder param(String name, Object value) {
+            params.put(name, String.valueOf(value));
+            return this;
+        }
+
+        Document get() throws IOException {
+            return parse(execute(newRequest().url(queryUrl())));
+        }
+
+        Document post() throws IOException {
+            FormBody.Builder body = new FormBody.Builder();
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                body.add(param.getKey(), param.getValue());
+            }
+            return parse(execute(newRequest().url(apiUrl).post(body.build())));
+        }
+
+        Document postFile(String name, String filename, RequestBody file) throws IOException {
+            return parse(execute(client, newRequest().url(apiUrl).post(multipart(name, filename, file))));
+        }
+
+        /**
+         * Posts a file that can only be read once, without retrying on connection failures.
+         */
+        Document postStream(String name, String filename, StreamRequestBody file) throws IOException {
+            return parse(execute(uploadClient, newRequest().url(apiUrl).post(multipart(name, filename, file))));
+        }
+
+        private MultipartBody multipart(String name, String filename, RequestBody file) {
+            MultipartBody.Builder body = new MultipartBody.Builder().setType(MultipartBody.FORM);
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                body.addFormDataPart(param.getKey(), param.getValue());
+            }
+            body.addFormDataPart(name, filename, file);
+            return body.build();
+        }
+
+        /**
+         * GETs the request and hands the response to a pull parser as it arrives.
+         */
+        ApiXmlReader stream() throws IOException {
+            return new ApiXmlReader(execute(newRequest().url(queryUrl())).body().byteStream());
+        }
+
+        private HttpUrl queryUrl() {
+            HttpUrl.Builder url = apiUrl.newBuilder();
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                url.addQueryParameter(param.getKey(), param.getValue());
+            }
+            return url.build();
+        }
+
+        private Request.Builder newRequest() {
+            return new Request.Builder().header("User-Agent", getUserAgent());
+        }
+
+        private Response execute(Request.Builder request) throws IOException {
+            return execute(client, request);
+        }
+
+        private Response execute(OkHttpClient client, Request.Builder request) throws IOException {
+            Response response = client.newCall(request.build()).execute();
+            if (!response.isSuccessful()) {
+                response.close();
+                throw new IOException("API request failed with HTTP " + response.code());
+            }
+            return response;
+        }
+
+        private Document parse(Response response) throws IOException {
+            try (Response closing = response) {
+                return DocumentBuilderFactory.newInstance()
+                        .newDocumentBuilder()
+                        .parse(closing.body().byteStream());
+            } catch (ParserConfigurationException | SAXException e) {
+                throw new IOException("Unable to parse API response", e);
+            }
+        }
+    }
+
+    /**
+     * Streams an upload from its {@link InputStream}, reporting progress as bytes are written.
+     * The stream can only be sent once, so it is posted with retries disabled.
+     */
+    private static class StreamRequestBody extends RequestBody {
+        private final InputStream stream;
+        private final long length;
+        private final ProgressListener progressListener;
+
+        StreamRequestBody(InputStream stream, long length, ProgressListener progressListener) {
+            this.stream = stream;
+            this.length = length;
+            this.progressListener = progressListener;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return OCTET_STREAM;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(@NonNull BufferedSink sink) throws IOException {
+            Source source = Okio.source(stream);
+            long transferred = 0;
+            long read;
+            while ((read = source.read(sink.buffer(), 8192)) != -1) {
+                transferred += read;
+                sink.emitCompleteSegments();
+                progressListener.onProgress(transferred, length);
+            }
+        }
+    }
+
+    /**
+     * Keeps the session cookies of the API, in the same "name=value;" form the
+     * MediaWiki API library stores in the preferences. Cookies are told apart by name,
+     * domain and path, and the ones expired, which is how the server deletes them,
+     * are dropped.
+     */
+    private static class ApiCookieJar implements CookieJar {
+        private final HttpUrl apiUrl;
+        private final Map<String, Cookie> cookies = new LinkedHashMap<>();
+
+        ApiCookieJar(HttpUrl apiUrl) {
+            this.apiUrl = apiUrl;
+        }
+
+        private static String key(Cookie cookie) {
+            return cookie.name() + ";" + cookie.domain() + ";" + cookie.path();
+        }
+
+        @Override
+        public synchronized void saveFromResponse(@NonNull HttpUrl url, @NonNull List<Cookie> responseCookies) {
+            long now = System.currentTimeMillis();
+            for (Cookie cookie : responseCookies) {
+                if (cookie.expiresAt() <= now) {
+                    cookies.remove(key(cookie));
+                } else {
+                    cookies.put(key(cookie), cookie);
+                }
+            }
+        }
+
+        @Override
+        public synchronized List<Cookie> loadForRequest(@NonNull HttpUrl url) {
+            List<Cookie> matching = new ArrayList<>();
+            for (Cookie cookie : liveCookies()) {
+                if (cookie.matches(url)) {
+                    matching.add(cookie);
+                }
+            }
+            return matching;
+        }
+
+        /**
+         * @return the cookies sent to the API itself
+         */
+        synchronized String getAuthCookie() {
+            StringBuilder authCookie = new StringBuilder();
+            for (Cookie cookie : liveCookies()) {
+                if (cookie.matches(apiUrl)) {
+                    authCookie.append(cookie.name()).append('=').append(cookie.value()).append(';');
+                }
+            }
+            return authCookie.toString();
+        }
+
+        synchronized void setAuthCookie(String authCookie) {
+            if (authCookie == null) {
+                return;
+            }
+            for (String pair : authCookie.split(";")) {
+                String[] parts = pair.split("=", 2);
+                if (parts.length == 2 && !parts[0].trim().isEmpty()) {
+                    Cookie cookie = new Cookie.Builder()
+                            .name(parts[0].trim())
+                            .value(parts[1])
+                            .domain(apiUrl.host())
+                            .build();
+                    cookies.put(key(cookie), cookie);
+                }
+            }
+        }
+
+        private List<Cookie> liveCookies() {
+            long now = System.currentTimeMillis();
+            List<Cookie> live = new ArrayList<>(cookies.size());
+            for (Iterator<Cookie> it = cookies.values().iterator(); it.hasNext(); ) {
+                Cookie cookie = it.next();
+                if (cookie.expiresAt() <= now) {
+                    it.remove();
+                } else {
+                    live.add(cookie);
+                }
+            }
+            return live;
+        }
+    }
+}
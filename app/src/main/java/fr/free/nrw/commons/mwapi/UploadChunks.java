@@ -0,0 +1,42 @@
+package fr.free.nrw.commons.mwapi;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a file for a chunked upload, shared by the {@link MediaWikiApi} implementations.
+ */
+final class UploadChunks {
+
+    private UploadChunks() {
+    }
+
+    /**
+     * Skips to the offset an interrupted upload resumes from.
+     */
+    static void skipFully(InputStream stream, long count) throws IOException {
+        while (count > 0) {
+            long skipped = stream.skip(count);
+            if (skipped <= 0) {
+                throw new IOException("Unable to skip to the resume offset, " + count + " bytes left");
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Fills {@code chunk} from {@code stream}, stopping early only at the end of the stream.
+     * @return the number of bytes read
+     */
+    static int readChunk(InputStream stream, byte[] chunk) throws IOException {
+        int length = 0;
+        while (length < chunk.length) {
+            int read = stream.read(chunk, length, chunk.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+}
@@ -35,7 +35,6 @@ import fr.free.nrw.commons.location.LocationUpdateListener;
 import fr.free.nrw.commons.theme.NavigationBaseActivity;
 import fr.free.nrw.commons.utils.UriSerializer;
 import fr.free.nrw.commons.utils.ViewUtil;
-import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
@@ -62,6 +61,7 @@ public class NearbyActivity extends NavigationBaseActivity implements LocationUp
     private SharedPreferences sharedPreferences;
     private NearbyActivityMode viewMode;
     private Disposable placesDisposable;
+    private List<Place> placeList; // Latest places loaded, possibly partial
     private boolean lockNearbyView; //Determines if the nearby places needs to be refreshed
 
     @Override
@@ -220,6 +220,7 @@ public class NearbyActivity extends NavigationBaseActivity implements LocationUp
     }
 
     private void toggleView() {
+        updateBundle();
         if (viewMode.isMap()) {
             setMapFragment();
         } else {
@@ -281,41 +282,74 @@ public class NearbyActivity extends NavigationBaseActivity implements LocationUp
         }
 
         progressBar.setVisibility(View.VISIBLE);
-        placesDisposable = Observable.fromCallable(() -> nearbyController
-                .loadAttractionsFromLocation(curLatLang, this))
+        if (placesDisposable != null) {
+            placesDisposable.dispose();
+        }
+        placeList = null;
+        placesDisposable = nearbyController
+                .loadAttractionsFromLocation(curLatLang, this)
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(this::populatePlaces);
+                .subscribe(this::populatePlaces, this::onPlacesError, this::onPlacesLoaded);
     }
 
+    /**
+     * Shows the places loaded so far, in the fragment already displayed when there is one.
+     */
     private void populatePlaces(List<Place> placeList) {
-        Gson gson = new GsonBuilder()
-                .registerTypeAdapter(Uri.class, new UriSerializer())
-                .create();
-        String gsonPlaceList = gson.toJson(placeList);
-        String gsonCurLatLng = gson.toJson(curLatLang);
+        this.placeList = placeList;
+        lockNearbyView(true);
 
-        if (placeList.size() == 0) {
-            int duration = Toast.LENGTH_SHORT;
-            Toast toast = Toast.makeText(this, R.string.no_nearby, duration);
-            toast.show();
+        Fragment fragment = getSupportFragmentManager().findFragmentById(R.id.container);
+        if (viewMode.isMap() && fragment instanceof NearbyMapFragment) {
+            ((NearbyMapFragment) fragment).updatePlaces(curLatLang, placeList);
+        } else if (!viewMode.isMap() && fragment instanceof NearbyListFragment) {
+            ((NearbyListFragment) fragment).updatePlaces(curLatLang, placeList);
+        } else {
+            // Begin the transaction
+            updateBundle();
+            if (viewMode.isMap()) {
+                setMapFragment();
+            } else {
+                setListFragment();
+            }
         }
+    }
 
-        bundle.clear();
-        bundle.putString("PlaceList", gsonPlaceList);
-        bundle.putString("CurLatLng", gsonCurLatLng);
-
-        lockNearbyView(true);
-        // Begin the transaction
-        if (viewMode.isMap()) {
-            setMapFragment();
-        } else {
-            setListFragment();
+    private void onPlacesLoaded() {
+        // Fragments recreated later start from the complete list
+        updateBundle();
+        if (placeList == null || placeList.isEmpty()) {
+            Toast.makeText(this, R.string.no_nearby, Toast.LENGTH_SHORT).show();
         }
+        hideProgressBar();
+    }
 
+    private void onPlacesError(Throwable throwable) {
+        Timber.e(throwable, "Unable to load nearby places");
+        // Let a refresh try again from the same location
+        curLatLang = null;
+        if (placeList == null) {
+            Toast.makeText(this, R.string.no_nearby, Toast.LENGTH_SHORT).show();
+        }
         hideProgressBar();
     }
 
+    /**
+     * Stores the places in the arguments of the fragments shown.
+     */
+    private void updateBundle() {
+        if (placeList == null) {
+            return;
+        }
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(Uri.class, new UriSerializer())
+                .create();
+        bundle.clear();
+        bundle.putString("PlaceList", gson.toJson(placeList));
+        bundle.putString("CurLatLng", gson.toJson(curLatLang));
+    }
+
     private void lockNearbyView(boolean lock) {
         if (lock) {
             lockNearbyView = true;
@@ -9,10 +9,8 @@ import com.mapbox.mapboxsdk.annotations.IconFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -20,52 +18,46 @@ import javax.inject.Named;
 import fr.free.nrw.commons.R;
 import fr.free.nrw.commons.location.LatLng;
 import fr.free.nrw.commons.utils.UiUtils;
+import io.reactivex.Observable;
 import timber.log.Timber;
 
-import static fr.free.nrw.commons.utils.LengthUtils.computeDistanceBetween;
 import static fr.free.nrw.commons.utils.LengthUtils.formatDistanceBetween;
 
 public class NearbyController {
     private static final int MAX_RESULTS = 1000;
-    private final NearbyPlaces nearbyPlaces;
+    private final NearbyPlacesIndex nearbyPlacesIndex;
+    private final OfflinePlacesStore offlinePlacesStore;
     private final SharedPreferences prefs;
 
     @Inject
-    public NearbyController(NearbyPlaces nearbyPlaces,
+    public NearbyController(NearbyPlacesIndex nearbyPlacesIndex,
+                            OfflinePlacesStore offlinePlacesStore,
                             @Named("default_preferences") SharedPreferences prefs) {
-        this.nearbyPlaces = nearbyPlaces;
+        this.nearbyPlacesIndex = nearbyPlacesIndex;
+        this.offlinePlacesStore = offlinePlacesStore;
         this.prefs = prefs;
     }
 
     /**
      * Prepares Place list to make their distance information update later.
+     * Places from Wikidata are streamed, a first list is emitted as soon as part of
+     * the area is known and refined as the rest of it arrives. Without Wikidata, places
+     * come from the offline copy of the wiki-needs-pictures dataset.
      * @param curLatLng current location for user
      * @param context context
-     * @return Place list without distance information
+     * @return Place lists without distance information, the last one complete
      */
-    public List<Place> loadAttractionsFromLocation(LatLng curLatLng, Context context) {
+    public Observable<List<Place>> loadAttractionsFromLocation(LatLng curLatLng, Context context) {
         Timber.d("Loading attractions near %s", curLatLng);
         if (curLatLng == null) {
-            return Collections.emptyList();
+            return Observable.just(Collections.emptyList());
         }
-        List<Place> places = prefs.getBoolean("useWikidata", true)
-                ? nearbyPlaces.getFromWikidataQuery(curLatLng, Locale.getDefault().getLanguage())
-                : nearbyPlaces.getFromWikiNeedsPictures();
-        if (curLatLng != null) {
-            Timber.d("Sorting places by distance...");
-            final Map<Place, Double> distances = new HashMap<>();
-            for (Place place: places) {
-                distances.put(place, computeDistanceBetween(place.location, curLatLng));
-            }
-            Collections.sort(places,
-                    (lhs, rhs) -> {
-                        double lhsDistance = distances.get(lhs);
-                        double rhsDistance = distances.get(rhs);
-                        return (int) (lhsDistance - rhsDistance);
-                    }
-            );
+        if (prefs.getBoolean("useWikidata", true)) {
+            // Already the nearest ones, sorted by distance
+            return nearbyPlacesIndex.getNearest(curLatLng, Locale.getDefault().getLanguage(), MAX_RESULTS);
         }
-        return places;
+        // Offline dataset, downloaded once
+        return Observable.fromCallable(() -> offlinePlacesStore.getNearest(curLatLng, MAX_RESULTS));
     }
 
     /**
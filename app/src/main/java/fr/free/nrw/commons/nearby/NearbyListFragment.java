@@ -80,4 +80,15 @@ public class NearbyListFragment extends Fragment {
 
         recyclerView.setAdapter(adapterFactory.create(placeList));
     }
+
+    /**
+     * Replaces the places listed, as more of them are loaded.
+     */
+    void updatePlaces(LatLng curLatLng, List<Place> placeList) {
+        if (recyclerView == null) {
+            return;
+        }
+        recyclerView.setAdapter(adapterFactory.create(
+                NearbyController.loadAttractionsFromLocationToPlaces(curLatLng, placeList)));
+    }
 }
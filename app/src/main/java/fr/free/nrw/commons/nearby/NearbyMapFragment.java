@@ -14,6 +14,7 @@ import com.mapbox.mapboxsdk.Mapbox;
 import com.mapbox.mapboxsdk.annotations.MarkerOptions;
 import com.mapbox.mapboxsdk.annotations.PolygonOptions;
 import com.mapbox.mapboxsdk.camera.CameraPosition;
+import com.mapbox.mapboxsdk.camera.CameraUpdateFactory;
 import com.mapbox.mapboxsdk.constants.Style;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.maps.MapView;
@@ -30,6 +31,7 @@ import fr.free.nrw.commons.utils.UriDeserializer;
 
 public class NearbyMapFragment extends android.support.v4.app.Fragment {
     private MapView mapView;
+    private MapboxMap mapboxMap;
     private List<NearbyBaseMarker> baseMarkerOptions;
     private fr.free.nrw.commons.location.LatLng curLatLng;
 
@@ -87,6 +89,7 @@ public class NearbyMapFragment extends android.support.v4.app.Fragment {
         mapView = new MapView(getActivity(), options);
         mapView.onCreate(savedInstanceState);
         mapView.getMapAsync(mapboxMap -> {
+            this.mapboxMap = mapboxMap;
             mapboxMap.addMarkers(baseMarkerOptions);
 
             mapboxMap.setOnMarkerClickListener(marker -> {
@@ -104,6 +107,27 @@ public class NearbyMapFragment extends android.support.v4.app.Fragment {
         mapView.setStyleUrl("asset://mapstyle.json");
     }
 
+    /**
+     * Replaces the places shown, as more of them are loaded, without recreating the map.
+     */
+    void updatePlaces(fr.free.nrw.commons.location.LatLng curLatLng, List<Place> placeList) {
+        boolean moved = !curLatLng.equals(this.curLatLng);
+        this.curLatLng = curLatLng;
+        baseMarkerOptions = NearbyController
+                .loadAttractionsFromLocationToBaseMarkerOptions(curLatLng, placeList, getActivity());
+        if (mapboxMap == null) {
+            // Drawn once the map is ready
+            return;
+        }
+        mapboxMap.clear();
+        mapboxMap.addMarkers(baseMarkerOptions);
+        addCurrentLocationMarker(mapboxMap);
+        if (moved) {
+            mapboxMap.moveCamera(CameraUpdateFactory.newLatLng(
+                    new LatLng(curLatLng.getLatitude(), curLatLng.getLongitude())));
+        }
+    }
+
     /**
      * Adds a marker for the user's current position. Adds a
      * circle which uses the accuracy * 2, to draw a circle
@@ -185,6 +209,7 @@ public class NearbyMapFragment extends android.support.v4.app.Fragment {
 
     @Override
     public void onDestroyView() {
+        mapboxMap = null;
         if (mapView != null) {
             mapView.onDestroy();
         }
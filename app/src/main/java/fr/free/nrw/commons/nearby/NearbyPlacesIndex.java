@@ -0,0 +1,597 @@
+package fr.free.nrw.commons.nearby;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import fr.free.nrw.commons.data.DBOpenHelper;
+import fr.free.nrw.commons.location.LatLng;
+import fr.free.nrw.commons.utils.InstrumentedThreadPoolExecutor;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import timber.log.Timber;
+
+/**
+ * Persistent spatial index of the places fetched from Wikidata. The world is cut in
+ * square tiles of {@link #TILE_DEGREES}, places are stored with the tile they fall in
+ * and the areas already queried are kept as rectangles of tiles. Looking up the places
+ * near a location grows a square of tiles around it until it holds enough places closer
+ * than any place outside of it could be, querying only the tiles no earlier lookup covered, so small moves are answered from
+ * the database alone. The uncovered tiles are queried in chunks on a small pool, and
+ * partial results are handed out while the remaining chunks are still running.
+ */
+@Singleton
+public class NearbyPlacesIndex {
+
+    static final double TILE_DEGREES = 0.02;
+    static final int MAX_TILE_X = (int) Math.round(360 / TILE_DEGREES) - 1;
+    static final int MAX_TILE_Y = (int) Math.round(180 / TILE_DEGREES) - 1;
+    // Half widths, in tiles, of the squares tried in turn around the location
+    private static final int[] HALF_WIDTHS = {0, 1, 2, 4, 8, 16, 32, 64};
+    static final int MIN_RESULTS = 40;
+    static final long TTL_MILLIS = TimeUnit.DAYS.toMillis(7);
+    // The query service rejects clients running more than a few queries at once
+    private static final int QUERY_THREADS = 3;
+    static final long PARTIAL_RESULTS_INTERVAL_MILLIS = 1000;
+
+    private final DBOpenHelper dbOpenHelper;
+    private final NearbyPlaces nearbyPlaces;
+    private final Executor queryExecutor;
+
+    @Inject
+    public NearbyPlacesIndex(DBOpenHelper dbOpenHelper, NearbyPlaces nearbyPlaces) {
+        this(dbOpenHelper, nearbyPlaces, new InstrumentedThreadPoolExecutor("nearby", QUERY_THREADS));
+    }
+
+    NearbyPlacesIndex(DBOpenHelper dbOpenHelper, NearbyPlaces nearbyPlaces, Executor queryExecutor) {
+        this.dbOpenHelper = dbOpenHelper;
+        this.nearbyPlaces = nearbyPlaces;
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * Finds the places closest to a location, querying Wikidata for the uncovered
+     * parts of the area searched, several chunks of it at a time. The nearest places
+     * known are emitted as soon as the first chunks are stored, then again as the search
+     * goes on, at most every {@link #PARTIAL_RESULTS_INTERVAL_MILLIS}, and once it ends.
+     * If a query fails, the search stops at the area it was in.
+     * @param limit most places emitted
+     * @return lists of places sorted by distance, the last one complete
+     */
+    @NonNull
+    public Observable<List<Place>> getNearest(@NonNull LatLng location, @NonNull String lang, int limit) {
+        return Observable.create(emitter -> new Lookup(emitter, location, lang, limit).run());
+    }
+
+    static int tileX(double longitude) {
+        return Math.max(0, Math.min(MAX_TILE_X, (int) Math.floor((longitude + 180) / TILE_DEGREES)));
+    }
+
+    static int tileY(double latitude) {
+        return Math.max(0, Math.min(MAX_TILE_Y, (int) Math.floor((latitude + 90) / TILE_DEGREES)));
+    }
+
+    /**
+     * Cuts a rectangle of tiles in chunks of at most {@code side} tiles square, so that
+     * each query covers about the same area whatever the shape of the rectangle.
+     * @return chunks as {minX, minY, maxX, maxY}
+     */
+    static List<int[]> chunks(int[] rect, int side) {
+        List<int[]> chunks = new ArrayList<>();
+        for (int y = rect[1]; y <= rect[3]; y += side) {
+            for (int x = rect[0]; x <= rect[2]; x += side) {
+                chunks.add(new int[]{x, y, Math.min(rect[2], x + side - 1), Math.min(rect[3], y + side - 1)});
+            }
+        }
+        return chunks;
+    }
+
+    private class Lookup {
+        private final ObservableEmitter<List<Place>> emitter;
+        private final LatLng location;
+        private final String lang;
+        private final int limit;
+        private final SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        private int[] square;
+        private long lastEmission;
+
+        Lookup(ObservableEmitter<List<Place>> emitter, LatLng location, String lang, int limit) {
+            this.emitter = emitter;
+            this.location = location;
+            this.lang = lang;
+            this.limit = limit;
+        }
+
+        @WorkerThread
+        void run() {
+            dropExpired(db);
+            int x = tileX(location.getLongitude());
+            int y = tileY(location.getLatitude());
+            for (int halfWidth : HALF_WIDTHS) {
+                square = new int[]{
+                        Math.max(0, x - halfWidth), Math.max(0, y - halfWidth),
+                        Math.min(MAX_TILE_X, x + halfWidth), Math.min(MAX_TILE_Y, y + halfWidth)};
+                // The ring added at each step is half as thick as the square is wide,
+                // chunks that size keep the number of queries per step about constant
+                boolean complete = fetchUncovered(Math.max(1, halfWidth / 2));
+                if (emitter.isDisposed()) {
+                    return;
+                }
+                if (!complete || isEnough(db, lang, square, location)) {
+                    break;
+                }
+            }
+            emitter.onNext(nearest(db, lang, square, location, limit));
+            emitter.onComplete();
+        }
+
+        /**
+         * @return false if a query failed or the lookup was disposed
+         */
+        private boolean fetchUncovered(int chunkSide) {
+            CompletionService<List<Place>> completionService = new ExecutorCompletionService<>(queryExecutor);
+            Map<Future<List<Place>>, int[]> pending = new HashMap<>();
+            for (int[] rect : uncoveredRectangles(coveredTiles(db, lang, square), square)) {
+                for (int[] chunk : chunks(rect, chunkSide)) {
+                    pending.put(completionService.submit(() -> query(chunk)), chunk);
+                }
+            }
+            boolean complete = true;
+            try {
+                while (!pending.isEmpty()) {
+                    Future<List<Place>> future = completionService.take();
+                    int[] chunk = pending.remove(future);
+                    try {
+                        store(db, lang, chunk, future.get());
+                    } catch (ExecutionException e) {
+                        Timber.d(e.getCause(), "Unable to query the places of tiles %s", Arrays.toString(chunk));
+                        complete = false;
+                        continue;
+                    }
+                    if (emitter.isDisposed()) {
+                        complete = false;
+                        break;
+                    }
+                    emitPartialResults();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                complete = false;
+            } finally {
+                for (Future<List<Place>> future : pending.keySet()) {
+                    future.cancel(true);
+                }
+            }
+            return complete;
+        }
+
+        private List<Place> query(int[] chunk) throws IOException {
+            double south = chunk[1] * TILE_DEGREES - 90;
+            double west = chunk[0] * TILE_DEGREES - 180;
+            double north = (chunk[3] + 1) * TILE_DEGREES - 90;
+            double east = (chunk[2] + 1) * TILE_DEGREES - 180;
+            return nearbyPlaces.getFromWikidataQuery(south, west, north, east, lang);
+        }
+
+        private void emitPartialResults() {
+            long now = System.currentTimeMillis();
+            if (now - lastEmission < PARTIAL_RESULTS_INTERVAL_MILLIS) {
+                return;
+            }
+            List<Place> places = nearest(db, lang, square, location, limit);
+            if (!places.isEmpty()) {
+                lastEmission = now;
+                emitter.onNext(places);
+            }
+        }
+    }
+
+    /**
+     * @return whether each tile of the square, row by row, was queried already
+     */
+    private boolean[] coveredTiles(SQLiteDatabase db, String lang, int[] square) {
+        int width = square[2] - square[0] + 1;
+        boolean[] covered = new boolean[width * (square[3] - square[1] + 1)];
+        Cursor cursor = db.query(CoverageTable.TABLE_NAME,
+                new String[]{CoverageTable.COLUMN_MIN_X, CoverageTable.COLUMN_MIN_Y,
+                        CoverageTable.COLUMN_MAX_X, CoverageTable.COLUMN_MAX_Y},
+                CoverageTable.INTERSECTING, new String[]{lang,
+                        String.valueOf(square[2]), String.valueOf(square[0]),
+                        String.valueOf(square[3]), String.valueOf(square[1])},
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                int minX = Math.max(square[0], cursor.getInt(0));
+                int minY = Math.max(square[1], cursor.getInt(1));
+                int maxX = Math.min(square[2], cursor.getInt(2));
+                int maxY = Math.min(square[3], cursor.getInt(3));
+                for (int y = minY; y <= maxY; y++) {
+                    for (int x = minX; x <= maxX; x++) {
+                        covered[(y - square[1]) * width + x - square[0]] = true;
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return covered;
+    }
+
+    /**
+     * Cuts the uncovered tiles of a square in a few rectangles: runs of uncovered tiles
+     * in each row, merged with the identical runs of the rows below.
+     * @param covered whether each tile is covered, row by row from the south west corner
+     * @param square  {minX, minY, maxX, maxY} in tiles
+     * @return rectangles as {minX, minY, maxX, maxY}
+     */
+    static List<int[]> uncoveredRectangles(boolean[] covered, int[] square) {
+        int width = square[2] - square[0] + 1;
+        List<int[]> rectangles = new ArrayList<>();
+        Map<Long, int[]> open = new HashMap<>();
+        for (int y = square[1]; y <= square[3]; y++) {
+            Map<Long, int[]> stillOpen = new HashMap<>();
+            int row = (y - square[1]) * width;
+            int x = 0;
+            while (x < width) {
+                if (covered[row + x]) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && !covered[row + x]) {
+                    x++;
+                }
+                long run = ((long) start << 32) | (x - 1);
+                int[] rect = open.get(run);
+                if (rect == null) {
+                    rect = new int[]{square[0] + start, y, square[0] + x - 1, y};
+                    rectangles.add(rect);
+                } else {
+                    rect[3] = y;
+                }
+                stillOpen.put(run, rect);
+            }
+            open = stillOpen;
+        }
+        return rectangles;
+    }
+
+    private void store(SQLiteDatabase db, String lang, int[] rect, List<Place> places) {
+        db.beginTransaction();
+        try {
+            ContentValues coverage = new ContentValues();
+            coverage.put(CoverageTable.COLUMN_LANG, lang);
+            coverage.put(CoverageTable.COLUMN_MIN_X, rect[0]);
+            coverage.put(CoverageTable.COLUMN_MIN_Y, rect[1]);
+            coverage.put(CoverageTable.COLUMN_MAX_X, rect[2]);
+            coverage.put(CoverageTable.COLUMN_MAX_Y, rect[3]);
+            coverage.put(CoverageTable.COLUMN_FETCHED, System.currentTimeMillis());
+            db.insert(CoverageTable.TABLE_NAME, null, coverage);
+
+            for (Place place : places) {
+                int x = tileX(place.location.getLongitude());
+                int y = tileY(place.location.getLatitude());
+                if (x < rect[0] || x > rect[2] || y < rect[1] || y > rect[3]) {
+                    // On the edge, it belongs to the neighbouring rectangle
+                    continue;
+                }
+                ContentValues cv = new ContentValues();
+                cv.put(PlacesTable.COLUMN_LANG, lang);
+                cv.put(PlacesTable.COLUMN_TILE_X, x);
+                cv.put(PlacesTable.COLUMN_TILE_Y, y);
+                cv.put(PlacesTable.COLUMN_NAME, place.name);
+                cv.put(PlacesTable.COLUMN_DESCRIPTION, place.getLongDescription());
+                cv.put(PlacesTable.COLUMN_ICON, place.getSecondaryImageUrl() != null
+                        ? place.getSecondaryImageUrl().toString() : null);
+                cv.put(PlacesTable.COLUMN_LATITUDE, place.location.getLatitude());
+                cv.put(PlacesTable.COLUMN_LONGITUDE, place.location.getLongitude());
+                cv.put(PlacesTable.COLUMN_WIKIPEDIA_LINK, place.siteLinks.getWikipediaLink().toString());
+                cv.put(PlacesTable.COLUMN_COMMONS_LINK, place.siteLinks.getCommonsLink().toString());
+                cv.put(PlacesTable.COLUMN_WIKIDATA_LINK, place.siteLinks.getWikidataLink().toString());
+                db.insert(PlacesTable.TABLE_NAME, null, cv);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Whether the square holds {@link #MIN_RESULTS} places no farther from the location
+     * than its nearest edge, so that no place outside of it could be nearer than those.
+     */
+    private boolean isEnough(SQLiteDatabase db, String lang, int[] square, LatLng location) {
+        String distance = distanceSquared(location);
+        Cursor cursor = db.query(PlacesTable.TABLE_NAME, new String[]{distance},
+                PlacesTable.IN_TILES, tileArgs(lang, square),
+                null, null, distance, (MIN_RESULTS - 1) + ", 1");
+        try {
+            if (!cursor.moveToFirst()) {
+                Timber.d("Fewer than %d places in %s", MIN_RESULTS, Arrays.toString(square));
+                return false;
+            }
+            double edge = edgeDistance(square, location);
+            return cursor.getDouble(0) <= edge * edge;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return the distance from the location to the nearest edge of the square, in the
+     * units of {@link #distanceSquared(LatLng)}, edges of the world left out
+     */
+    static double edgeDistance(int[] square, LatLng location) {
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        double scale = Math.cos(Math.toRadians(latitude));
+        double distance = Double.POSITIVE_INFINITY;
+        if (square[0] > 0) {
+            distance = Math.min(distance, (longitude - (square[0] * TILE_DEGREES - 180)) * scale);
+        }
+        if (square[2] < MAX_TILE_X) {
+            distance = Math.min(distance, ((square[2] + 1) * TILE_DEGREES - 180 - longitude) * scale);
+        }
+        if (square[1] > 0) {
+            distance = Math.min(distance, latitude - (square[1] * TILE_DEGREES - 90));
+        }
+        if (square[3] < MAX_TILE_Y) {
+            distance = Math.min(distance, (square[3] + 1) * TILE_DEGREES - 90 - latitude);
+        }
+        return distance;
+    }
+
+    // An equirectangular approximation of the squared distance, good enough at these scales
+    private static String distanceSquared(LatLng location) {
+        double latitude = location.getLatitude();
+        double scale = Math.cos(Math.toRadians(latitude));
+        return String.format(Locale.ROOT, "(%2$s - %3$f) * (%2$s - %3$f)"
+                        + " + (%4$s - %5$f) * (%4$s - %5$f) * %1$f",
+                scale * scale, PlacesTable.COLUMN_LATITUDE, latitude,
+                PlacesTable.COLUMN_LONGITUDE, location.getLongitude());
+    }
+
+    private List<Place> nearest(SQLiteDatabase db, String lang, int[] square, LatLng location, int limit) {
+        List<Place> places = new ArrayList<>();
+        Cursor cursor = db.query(PlacesTable.TABLE_NAME, PlacesTable.ALL_FIELDS,
+                PlacesTable.IN_TILES, tileArgs(lang, square),
+                null, null, distanceSquared(location), String.valueOf(limit));
+        try {
+            while (cursor.moveToNext()) {
+                places.add(fromCursor(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return places;
+    }
+
+    private static Place fromCursor(Cursor cursor) {
+        // Hardcoding column positions!
+        String description = cursor.getString(5);
+        String icon = cursor.getString(6);
+        return new Place(
+                cursor.getString(4),
+                Place.Label.fromText(description),
+                description,
+                icon != null ? Uri.parse(icon) : null,
+                new LatLng(cursor.getDouble(7), cursor.getDouble(8), 0),
+                new Sitelinks.Builder()
+                        .setWikipediaLink(cursor.getString(9))
+                        .setCommonsLink(cursor.getString(10))
+                        .setWikidataLink(cursor.getString(11))
+                        .build());
+    }
+
+    private static String[] tileArgs(String lang, int[] square) {
+        return new String[]{lang,
+                String.valueOf(square[0]), String.valueOf(square[2]),
+                String.valueOf(square[1]), String.valueOf(square[3])};
+    }
+
+    // Coverage rectangles never overlap, so the places in an expired one belong to it alone
+    private void dropExpired(SQLiteDatabase db) {
+        String[] expiredArgs = {String.valueOf(System.currentTimeMillis() - TTL_MILLIS)};
+        Cursor cursor = db.query(CoverageTable.TABLE_NAME,
+                new String[]{CoverageTable.COLUMN_LANG, CoverageTable.COLUMN_MIN_X, CoverageTable.COLUMN_MAX_X,
+                        CoverageTable.COLUMN_MIN_Y, CoverageTable.COLUMN_MAX_Y},
+                CoverageTable.COLUMN_FETCHED + " <= ?", expiredArgs, null, null, null);
+        if (cursor.getCount() == 0) {
+            cursor.close();
+            return;
+        }
+        db.beginTransaction();
+        try {
+            while (cursor.moveToNext()) {
+                db.delete(PlacesTable.TABLE_NAME, PlacesTable.IN_TILES, new String[]{
+                        cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4)});
+            }
+            db.delete(CoverageTable.TABLE_NAME, CoverageTable.COLUMN_FETCHED + " <= ?", expiredArgs);
+            Timber.d("Dropped %d expired areas of nearby places", cursor.getCount());
+            db.setTransactionSuccessful();
+        } finally {
+            cursor.close();
+            db.endTransaction();
+        }
+    }
+
+    public static class PlacesTable {
+        public static final String TABLE_NAME = "nearby_places";
+
+        public static final String COLUMN_ID = "_id";
+        static final String COLUMN_LANG = "lang";
+        static final String COLUMN_TILE_X = "tile_x";
+        static final String COLUMN_TILE_Y = "tile_y";
+        static final String COLUMN_NAME = "name";
+        static final String COLUMN_DESCRIPTION = "description";
+        static final String COLUMN_ICON = "icon";
+        static final String COLUMN_LATITUDE = "latitude";
+        static final String COLUMN_LONGITUDE = "longitude";
+        static final String COLUMN_WIKIPEDIA_LINK = "wikipedia_link";
+        static final String COLUMN_COMMONS_LINK = "commons_link";
+        static final String COLUMN_WIKIDATA_LINK = "wikidata_link";
+
+        // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
+        public static final String[] ALL_FIELDS = {
+                COLUMN_ID,
+                COLUMN_LANG,
+                COLUMN_TILE_X,
+                COLUMN_TILE_Y,
+                COLUMN_NAME,
+                COLUMN_DESCRIPTION,
+                COLUMN_ICON,
+                COLUMN_LATITUDE,
+                COLUMN_LONGITUDE,
+                COLUMN_WIKIPEDIA_LINK,
+                COLUMN_COMMONS_LINK,
+                COLUMN_WIKIDATA_LINK
+        };
+
+        static final String IN_TILES = COLUMN_LANG + " = ? AND "
+                + COLUMN_TILE_X + " BETWEEN ? AND ? AND "
+                + COLUMN_TILE_Y + " BETWEEN ? AND ?";
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        // A place returned for several rectangles, or several times by one query, is kept once
+        static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_LANG + " STRING,"
+                + COLUMN_TILE_X + " INTEGER,"
+                + COLUMN_TILE_Y + " INTEGER,"
+                + COLUMN_NAME + " STRING,"
+                + COLUMN_DESCRIPTION + " STRING,"
+                + COLUMN_ICON + " STRING,"
+                + COLUMN_LATITUDE + " REAL,"
+                + COLUMN_LONGITUDE + " REAL,"
+                + COLUMN_WIKIPEDIA_LINK + " STRING,"
+                + COLUMN_COMMONS_LINK + " STRING,"
+                + COLUMN_WIKIDATA_LINK + " STRING,"
+                + "UNIQUE (" + COLUMN_LANG + ", " + COLUMN_NAME + ", "
+                + COLUMN_LATITUDE + ", " + COLUMN_LONGITUDE + ") ON CONFLICT IGNORE"
+                + ");";
+
+        static final String CREATE_TILE_INDEX = "CREATE INDEX " + TABLE_NAME + "_tile ON "
+                + TABLE_NAME + " (" + COLUMN_LANG + ", " + COLUMN_TILE_X + ", " + COLUMN_TILE_Y + ");";
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+            db.execSQL(CREATE_TILE_INDEX);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 11) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 11) {
+                // table added in version 12
+                onCreate(db);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 12
+        }
+    }
+
+    public static class CoverageTable {
+        public static final String TABLE_NAME = "nearby_coverage";
+
+        public static final String COLUMN_ID = "_id";
+        static final String COLUMN_LANG = "lang";
+        static final String COLUMN_MIN_X = "min_x";
+        static final String COLUMN_MIN_Y = "min_y";
+        static final String COLUMN_MAX_X = "max_x";
+        static final String COLUMN_MAX_Y = "max_y";
+        static final String COLUMN_FETCHED = "fetched";
+
+        // NOTE! KEEP IN SAME ORDER AS THEY ARE DEFINED UP THERE. HELPS HARD CODE COLUMN INDICES.
+        public static final String[] ALL_FIELDS = {
+                COLUMN_ID,
+                COLUMN_LANG,
+                COLUMN_MIN_X,
+                COLUMN_MIN_Y,
+                COLUMN_MAX_X,
+                COLUMN_MAX_Y,
+                COLUMN_FETCHED
+        };
+
+        // Takes the lang, then the max x, min x, max y and min y of the other rectangle
+        static final String INTERSECTING = COLUMN_LANG + " = ? AND "
+                + COLUMN_MIN_X + " <= ? AND " + COLUMN_MAX_X + " >= ? AND "
+                + COLUMN_MIN_Y + " <= ? AND " + COLUMN_MAX_Y + " >= ?";
+
+        static final String DROP_TABLE_STATEMENT = "DROP TABLE IF EXISTS " + TABLE_NAME;
+
+        static final String CREATE_TABLE_STATEMENT = "CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_LANG + " STRING,"
+                + COLUMN_MIN_X + " INTEGER,"
+                + COLUMN_MIN_Y + " INTEGER,"
+                + COLUMN_MAX_X + " INTEGER,"
+                + COLUMN_MAX_Y + " INTEGER,"
+                + COLUMN_FETCHED + " INTEGER"
+                + ");";
+
+        public static void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_STATEMENT);
+        }
+
+        public static void onDelete(SQLiteDatabase db) {
+            db.execSQL(DROP_TABLE_STATEMENT);
+            onCreate(db);
+        }
+
+        public static void onUpdate(SQLiteDatabase db, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            if (from < 11) {
+                // doesn't exist yet
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            if (from == 11) {
+                // table added in version 12
+                onCreate(db);
+                from++;
+                onUpdate(db, from, to);
+                return;
+            }
+            // table unchanged since version 12
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package fr.free.nrw.commons.nearby;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import fr.free.nrw.commons.Utils;
+import fr.free.nrw.commons.location.LatLng;
+import timber.log.Timber;
+
+import static fr.free.nrw.commons.utils.LengthUtils.computeDistanceBetween;
+
+/**
+ * Offline copy of the wiki-needs-pictures dataset. The CSV is downloaded once and
+ * converted to a compact binary file in which places are sorted by latitude band of
+ * {@link #BAND_DEGREES}, then by longitude. The file is memory mapped, a lookup binary
+ * searches the longitude range of each band it covers and only builds the places found
+ * there, so the dataset is never loaded on the heap as a whole.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * header   magic, format version, place count, offset of the types, offset of the names
+ * places   latitude and longitude in microdegrees, offset of the name, index of the type
+ * types    count, then each type as a length prefixed UTF-8 string
+ * names    length prefixed UTF-8 strings
+ * </pre>
+ */
+@Singleton
+public class OfflinePlacesStore {
+
+    static final String FILE_NAME = "wiki_needs_pictures.bin";
+    static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+    static final double BAND_DEGREES = 0.1;
+    private static final int MAX_BAND = (int) Math.round(180 / BAND_DEGREES) - 1;
+    // Time before a failed download of a stale or missing copy is tried again
+    static final long RETRY_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // Half widths, in degrees, of the boxes tried in turn around the location
+    private static final double[] HALF_WIDTHS = {0.05, 0.1, 0.2, 0.5, 1, 2, 5, 10, 20};
+    // Most candidates kept while scanning a box before the farthest ones are dropped
+    private static final int MAX_CANDIDATES = 4096;
+    // Mean radius of the Earth, in meters, as used by LengthUtils
+    private static final double EARTH_RADIUS = 6371009.0;
+
+    private static final int MAGIC = 0x434e5031; // "CNP1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int RECORD_SIZE = 16;
+    private static final int MICRODEGREES = 1000000;
+    // Sort keys pack the position of a place with its index on the low bits
+    private static final int INDEX_BITS = 24;
+    private static final long POSITION_BIAS = 1L << (63 - INDEX_BITS);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final NearbyPlaces nearbyPlaces;
+    private volatile Dataset dataset;
+    private long lastFailedDownload;
+
+    @Inject
+    public OfflinePlacesStore(Context context, NearbyPlaces nearbyPlaces) {
+        this(new File(context.getFilesDir(), FILE_NAME), nearbyPlaces);
+    }
+
+    OfflinePlacesStore(File file, NearbyPlaces nearbyPlaces) {
+        this.file = file;
+        this.nearbyPlaces = nearbyPlaces;
+    }
+
+    /**
+     * Finds the places closest to a location, downloading the dataset first if there is
+     * no copy of it yet or the copy is older than {@link #MAX_AGE_MILLIS}. An old copy
+     * is still used when the download fails, and the download isn't tried again for
+     * {@link #RETRY_DELAY_MILLIS}.
+     * <p>
+     * The box searched grows until the farthest of the places kept is closer than any
+     * edge of the box, so that no place outside of it can be closer.
+     * @param limit most places returned
+     * @return places sorted by distance, empty if the dataset isn't available
+     */
+    @WorkerThread
+    @NonNull
+    public List<Place> getNearest(@NonNull LatLng location, int limit) {
+        Dataset places = open();
+        if (places == null) {
+            return Collections.emptyList();
+        }
+
+        Nearest nearest = null;
+        for (double halfWidth : HALF_WIDTHS) {
+            nearest = new Nearest(places, location, limit);
+            places.scanBox(location.getLatitude() - halfWidth, location.getLongitude() - halfWidth,
+                    location.getLatitude() + halfWidth, location.getLongitude() + halfWidth, nearest);
+            if (nearest.isEnough(edgeDistance(location, halfWidth))) {
+                break;
+            }
+        }
+        return nearest.places();
+    }
+
+    /**
+     * @return the distance in meters from the location to the nearest edge of the box of
+     * the given half width around it, edges of the world left out
+     */
+    static double edgeDistance(LatLng location, double halfWidth) {
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        double distance = Double.POSITIVE_INFINITY;
+        if (longitude - halfWidth > -180 || longitude + halfWidth < 180) {
+            // The shortest way to a meridian leaves the parallel of the location
+            distance = Math.asin(Math.sin(Math.toRadians(halfWidth))
+                    * Math.cos(Math.toRadians(latitude))) * EARTH_RADIUS;
+        }
+        if (latitude - halfWidth > -90 || latitude + halfWidth < 90) {
+            distance = Math.min(distance, Math.toRadians(halfWidth) * EARTH_RADIUS);
+        }
+        return distance;
+    }
+
+    static int band(double latitude) {
+        return Math.max(0, Math.min(MAX_BAND, (int) Math.floor((latitude + 90) / BAND_DEGREES)));
+    }
+
+    @Nullable
+    private synchronized Dataset open() {
+        boolean current = file.exists()
+                && System.currentTimeMillis() - file.lastModified() < MAX_AGE_MILLIS;
+        if (dataset != null && current) {
+            return dataset;
+        }
+        if (!current && System.currentTimeMillis() - lastFailedDownload >= RETRY_DELAY_MILLIS) {
+            File converted = new File(file.getPath() + ".tmp");
+            try (Reader csv = nearbyPlaces.openWikiNeedsPictures()) {
+                convert(csv, converted);
+                if (!converted.renameTo(file)) {
+                    throw new IOException("Couldn't replace " + file);
+                }
+                dataset = null;
+            } catch (IOException e) {
+                Timber.d(e, "Couldn't update the offline places, using the previous copy if any");
+                lastFailedDownload = System.currentTimeMillis();
+            } finally {
+                // Only left behind when the conversion or the rename failed
+                converted.delete();
+            }
+        }
+        if (dataset == null && file.exists()) {
+            try {
+                dataset = new Dataset(file);
+            } catch (IOException e) {
+                Timber.e(e, "Couldn't read the offline places");
+                file.delete();
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * Converts the wiki-needs-pictures CSV (name, latitude, longitude, type) to the
+     * binary format. Rows without readable coordinates are left out.
+     */
+    static void convert(Reader csv, File out) throws IOException {
+        int count = 0;
+        int[] latitudes = new int[1024];
+        int[] longitudes = new int[1024];
+        int[] nameOffsets = new int[1024];
+        int[] typeIndexes = new int[1024];
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        DataOutputStream namesOut = new DataOutputStream(names);
+        Map<String, Integer> typeIndex = new HashMap<>();
+        List<String> types = new ArrayList<>();
+
+        BufferedReader in = new BufferedReader(csv);
+        // Skip CSV header.
+        in.readLine();
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] fields = line.split(",");
+            if (fields.length < 4) {
+                continue;
+            }
+            double latitude;
+            double longitude;
+            try {
+                latitude = Double.parseDouble(fields[1]);
+                longitude = Double.parseDouble(fields[2]);
+            } catch (NumberFormatException e) {
+                Timber.d("Skipping place without coordinates: %s", line);
+                continue;
+            }
+
+            if (count == latitudes.length) {
+                latitudes = Arrays.copyOf(latitudes, count * 2);
+                longitudes = Arrays.copyOf(longitudes, count * 2);
+                nameOffsets = Arrays.copyOf(nameOffsets, count * 2);
+                typeIndexes = Arrays.copyOf(typeIndexes, count * 2);
+            }
+            latitudes[count] = (int) Math.round(latitude * MICRODEGREES);
+            longitudes[count] = (int) Math.round(longitude * MICRODEGREES);
+            nameOffsets[count] = namesOut.size();
+            writeString(namesOut, Utils.stripLocalizedString(fields[0]));
+            Integer type = typeIndex.get(fields[3]);
+            if (type == null) {
+                type = types.size();
+                typeIndex.put(fields[3], type);
+                types.add(fields[3]);
+            }
+            typeIndexes[count] = type;
+            count++;
+        }
+
+        if (count > 1 << INDEX_BITS) {
+            throw new IOException("Too many offline places: " + count);
+        }
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            long position = (long) band(latitudes[i] / (double) MICRODEGREES) * (360L * MICRODEGREES + 1)
+                    + longitudes[i] + 180L * MICRODEGREES;
+            order[i] = (position - POSITION_BIAS) << INDEX_BITS | i;
+        }
+        Arrays.sort(order);
+
+        ByteArrayOutputStream typeBytes = new ByteArrayOutputStream();
+        DataOutputStream typesOut = new DataOutputStream(typeBytes);
+        typesOut.writeInt(types.size());
+        for (String type : types) {
+            writeString(typesOut, type);
+        }
+
+        try (DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(out)))) {
+            int typesOffset = HEADER_SIZE + count * RECORD_SIZE;
+            data.writeInt(MAGIC);
+            data.writeInt(FORMAT_VERSION);
+            data.writeInt(count);
+            data.writeInt(typesOffset);
+            data.writeInt(typesOffset + typesOut.size());
+            for (long key : order) {
+                int i = (int) (key & ((1 << INDEX_BITS) - 1));
+                data.writeInt(latitudes[i]);
+                data.writeInt(longitudes[i]);
+                data.writeInt(nameOffsets[i]);
+                data.writeInt(typeIndexes[i]);
+            }
+            typeBytes.writeTo(data);
+            names.writeTo(data);
+        }
+        Timber.d("Converted %d offline places", count);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        int length = Math.min(bytes.length, 0xffff);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * A mapped dataset file. Only absolute reads are made from the buffer, so lookups
+     * can run concurrently.
+     */
+    static final class Dataset {
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int namesOffset;
+        private final String[] types;
+
+        Dataset(File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                // The mapping stays valid once the channel is closed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not an offline places file: " + file);
+            }
+            count = buffer.getInt(8);
+            int typesOffset = buffer.getInt(12);
+            namesOffset = buffer.getInt(16);
+            types = new String[buffer.getInt(typesOffset)];
+            int position = typesOffset + 4;
+            for (int i = 0; i < types.length; i++) {
+                types[i] = readString(position);
+                position += 2 + (buffer.getShort(position) & 0xffff);
+            }
+        }
+
+        /**
+         * Hands the offset of every place inside the box to the visitor, in no particular order.
+         */
+        void scanBox(double south, double west, double north, double east, RecordVisitor visitor) {
+            int minLatitude = (int) Math.round(south * MICRODEGREES);
+            int maxLatitude = (int) Math.round(north * MICRODEGREES);
+            int minLongitude = (int) Math.round(west * MICRODEGREES);
+            int maxLongitude = (int) Math.round(east * MICRODEGREES);
+            for (int band = band(south), last = band(north); band <= last; band++) {
+                for (int i = firstAtOrAfter(band, minLongitude); i < count; i++) {
+                    int record = HEADER_SIZE + i * RECORD_SIZE;
+                    int latitude = buffer.getInt(record);
+                    int longitude = buffer.getInt(record + 4);
+                    if (band(latitude / (double) MICRODEGREES) != band || longitude > maxLongitude) {
+                        break;
+                    }
+                    if (latitude >= minLatitude && latitude <= maxLatitude) {
+                        visitor.visit(record);
+                    }
+                }
+            }
+        }
+
+        double latitude(int record) {
+            return buffer.getInt(record) / (double) MICRODEGREES;
+        }
+
+        double longitude(int record) {
+            return buffer.getInt(record + 4) / (double) MICRODEGREES;
+        }
+
+        // Index of the first place of the band at or east of the longitude
+        private int firstAtOrAfter(int band, int longitude) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int record = HEADER_SIZE + middle * RECORD_SIZE;
+                int recordBand = band(buffer.getInt(record) / (double) MICRODEGREES);
+                if (recordBand < band || recordBand == band && buffer.getInt(record + 4) < longitude) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        Place place(int record) {
+            String type = types[buffer.getInt(record + 12)];
+            return new Place(
+                    readString(namesOffset + buffer.getInt(record + 8)),
+                    Place.Label.fromText(type), // list
+                    type, // details
+                    null,
+                    new LatLng(buffer.getInt(record) / (double) MICRODEGREES,
+                            buffer.getInt(record + 4) / (double) MICRODEGREES, 0),
+                    new Sitelinks.Builder().build());
+        }
+
+        private String readString(int position) {
+            byte[] bytes = new byte[buffer.getShort(position) & 0xffff];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(position + 2 + i);
+            }
+            return new String(bytes, UTF_8);
+        }
+    }
+
+    interface RecordVisitor {
+        void visit(int record);
+    }
+
+    /**
+     * Keeps the places of a box closest to a location, as sort keys packing the distance
+     * with the offset of the place. Once the buffer is full, the farthest keys are dropped,
+     * so a dense box never holds more than {@link #MAX_CANDIDATES} of them.
+     */
+    private static final class Nearest implements RecordVisitor {
+        private final Dataset dataset;
+        private final double latitude;
+        private final double longitude;
+        private final int limit;
+        private final long[] keys;
+        private int size;
+
+        Nearest(Dataset dataset, LatLng location, int limit) {
+            this.dataset = dataset;
+            this.latitude = location.getLatitude();
+            this.longitude = location.getLongitude();
+            this.limit = limit;
+            keys = new long[Math.max(MAX_CANDIDATES, 2 * limit)];
+        }
+
+        @Override
+        public void visit(int record) {
+            if (size == keys.length) {
+                Arrays.sort(keys, 0, size);
+                size = limit;
+            }
+            float distance = (float) computeDistanceBetween(latitude, longitude,
+                    dataset.latitude(record), dataset.longitude(record));
+            // The bits of a positive float sort like the float itself
+            keys[size++] = (long) Float.floatToIntBits(distance) << 32 | record;
+        }
+
+        /**
+         * @return whether {@code limit} places were kept and the farthest of them is no
+         * farther than the given distance
+         */
+        boolean isEnough(double distance) {
+            if (size < limit) {
+                return false;
+            }
+            if (limit == 0) {
+                return true;
+            }
+            Arrays.sort(keys, 0, size);
+            return Float.intBitsToFloat((int) (keys[limit - 1] >>> 32)) <= distance;
+        }
+
+        List<Place> places() {
+            Arrays.sort(keys, 0, size);
+            List<Place> places = new ArrayList<>(Math.min(size, limit));
+            for (int i = 0; i < size && i < limit; i++) {
+                places.add(dataset.place((int) keys[i]));
+            }
+            return places;
+        }
+    }
+}
@@ -42,6 +42,10 @@ public class Place {
         return longDescription;
     }
 
+    public Uri getSecondaryImageUrl() {
+        return secondaryImageUrl;
+    }
+
     public void setDistance(String distance) {
         this.distance = distance;
     }
@@ -0,0 +1,241 @@
+package fr.free.nrw.commons.nearby;
+
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import fr.free.nrw.commons.location.LatLng;
+import timber.log.Timber;
+
+/**
+ * Reads the places of a nearby query answered as tab separated values, one row at a time.
+ * Rows are split in place in a reused buffer and the WKT points are parsed without
+ * regular expressions or intermediate strings, the only objects created per row are
+ * the ones making up the {@link Place}.
+ */
+final class PlaceTsvReader implements Closeable {
+
+    // Columns of nearby_query.rq
+    private static final int LOCATION = 0;
+    private static final int ITEM = 1;
+    private static final int LABEL = 2;
+    private static final int CLASS_LABEL = 4;
+    private static final int ICON = 5;
+    private static final int WIKIPEDIA_ARTICLE = 7;
+    private static final int COMMONS_ARTICLE = 8;
+    private static final int COLUMNS = 9;
+
+    private static final char[] POINT_PREFIX = "\"Point(".toCharArray();
+    // Powers of ten represented exactly as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int bufferPosition;
+    private int bufferLimit;
+
+    private char[] line = new char[512];
+    private int lineLength;
+    private final int[] fieldStarts = new int[COLUMNS];
+    private final int[] fieldEnds = new int[COLUMNS];
+    // Set by parseNumber, the index just past the number read
+    private int numberEnd;
+
+    PlaceTsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next place, or null once the response is over
+     */
+    @Nullable
+    Place next() throws IOException {
+        while (readLine()) {
+            if (!startsWith(POINT_PREFIX)) {
+                // Header, or a place without coordinates
+                continue;
+            }
+            splitFields();
+
+            double longitude = parseNumber(POINT_PREFIX.length, fieldEnds[LOCATION]);
+            double latitude = Double.NaN;
+            if (numberEnd < fieldEnds[LOCATION] && line[numberEnd] == ' ') {
+                latitude = parseNumber(numberEnd + 1, fieldEnds[LOCATION]);
+            }
+            if (Double.isNaN(longitude) || Double.isNaN(latitude)) {
+                Timber.d("LatLng parse error: %s", field(LOCATION));
+                continue;
+            }
+
+            String type = literal(CLASS_LABEL);
+            return new Place(
+                    literal(LABEL),
+                    Place.Label.fromText(type), // list
+                    type, // details
+                    Uri.parse(field(ICON)),
+                    new LatLng(latitude, longitude, 0),
+                    new Sitelinks.Builder()
+                            .setWikipediaLink(literal(WIKIPEDIA_ARTICLE))
+                            .setCommonsLink(literal(COMMONS_ARTICLE))
+                            .setWikidataLink(literal(ITEM))
+                            .build());
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Copies the next line, without its terminator, to the line buffer.
+     * @return false at the end of the input
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            if (bufferPosition == bufferLimit) {
+                bufferLimit = reader.read(buffer, 0, buffer.length);
+                bufferPosition = 0;
+                if (bufferLimit <= 0) {
+                    bufferLimit = 0;
+                    return lineLength > 0;
+                }
+            }
+            char c = buffer[bufferPosition++];
+            if (c == '\n') {
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+            if (lineLength == line.length) {
+                char[] longer = new char[line.length * 2];
+                System.arraycopy(line, 0, longer, 0, lineLength);
+                line = longer;
+            }
+            line[lineLength++] = c;
+        }
+    }
+
+    private boolean startsWith(char[] prefix) {
+        if (lineLength < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Missing trailing columns are left empty
+    private void splitFields() {
+        int field = 0;
+        int start = 0;
+        for (int i = 0; i < lineLength && field < COLUMNS - 1; i++) {
+            if (line[i] == '\t') {
+                fieldStarts[field] = start;
+                fieldEnds[field] = i;
+                field++;
+                start = i + 1;
+            }
+        }
+        fieldStarts[field] = start;
+        fieldEnds[field] = lineLength;
+        for (field++; field < COLUMNS; field++) {
+            fieldStarts[field] = lineLength;
+            fieldEnds[field] = lineLength;
+        }
+    }
+
+    private String field(int field) {
+        return new String(line, fieldStarts[field], fieldEnds[field] - fieldStarts[field]);
+    }
+
+    /**
+     * Strips the quotes and language tag of a literal such as "Eiffel Tower"@en,
+     * like {@link fr.free.nrw.commons.Utils#stripLocalizedString(String)}, other
+     * values such as IRIs are returned as they are.
+     */
+    private String literal(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (start < end && line[start] == '"') {
+            for (int i = end - 1; i > start; i--) {
+                if (line[i] == '"') {
+                    return new String(line, start + 1, i - start - 1);
+                }
+            }
+        }
+        return new String(line, start, end - start);
+    }
+
+    /**
+     * Parses a decimal number, exactly when its digits fit the mantissa of a double
+     * and by {@link Double#parseDouble(String)} otherwise.
+     * @return the number, or NaN if there is none at {@code start}
+     */
+    private double parseNumber(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean inFraction = false;
+        for (; i < end; i++) {
+            char c = line[i];
+            if (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (inFraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+        numberEnd = i;
+        int length = i - start;
+        if (length == 0 || (negative || line[start] == '+') && length == 1) {
+            return Double.NaN;
+        }
+        if (i < end && (line[i] == 'e' || line[i] == 'E')
+                || digits > 18 || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+            return parseSlowly(start, end);
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private double parseSlowly(int start, int end) {
+        int i = start;
+        while (i < end && line[i] != ' ' && line[i] != ')') {
+            i++;
+        }
+        numberEnd = i;
+        try {
+            return Double.parseDouble(new String(line, start, i - start));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 
 import fr.free.nrw.commons.R;
 import fr.free.nrw.commons.contributions.ContributionsActivity;
+import fr.free.nrw.commons.contributions.UploadedHashDao;
 import fr.free.nrw.commons.mwapi.MediaWikiApi;
 import timber.log.Timber;
 
@@ -29,15 +30,18 @@ public class ExistingFileAsync extends AsyncTask<Void, Void, Boolean> {
     }
 
     private final MediaWikiApi api;
+    private final UploadedHashDao uploadedHashDao;
     private final String fileSha1;
     private final Context context;
     private final Callback callback;
+    private boolean indexHit;
 
-    public ExistingFileAsync(String fileSha1, Context context, Callback callback, MediaWikiApi mwApi) {
+    public ExistingFileAsync(String fileSha1, Context context, Callback callback, MediaWikiApi mwApi, UploadedHashDao uploadedHashDao) {
         this.fileSha1 = fileSha1;
         this.context = context;
         this.callback = callback;
         this.api = mwApi;
+        this.uploadedHashDao = uploadedHashDao;
     }
 
     @Override
@@ -47,6 +51,12 @@ public class ExistingFileAsync extends AsyncTask<Void, Void, Boolean> {
 
     @Override
     protected Boolean doInBackground(Void... voids) {
+        // Files known locally don't need a round-trip, only misses go to the network
+        if (uploadedHashDao.contains(fileSha1)) {
+            Timber.d("File found in the local hash index");
+            indexHit = true;
+            return true;
+        }
 
         // https://commons.wikimedia.org/w/api.php?action=query&list=allimages&format=xml&aisha1=801957214aba50cb63bb6eb1b0effa50188900ba
         boolean fileExists;
@@ -62,9 +72,30 @@ public class ExistingFileAsync extends AsyncTask<Void, Void, Boolean> {
         return fileExists;
     }
 
+    /**
+     * Checks a file found in the index against the server, once the user has been answered,
+     * and forgets it if it was deleted there since it was indexed.
+     */
+    private void verifyIndexHit() {
+        String fileSha1 = this.fileSha1;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+            try {
+                if (!api.existingFile(fileSha1)) {
+                    Timber.d("Indexed file no longer on Commons, forgetting it");
+                    uploadedHashDao.delete(fileSha1);
+                }
+            } catch (IOException e) {
+                Timber.d(e, "Couldn't verify the indexed file");
+            }
+        });
+    }
+
     @Override
     protected void onPostExecute(Boolean fileExists) {
         super.onPostExecute(fileExists);
+        if (indexHit) {
+            verifyIndexHit();
+        }
 
         // If file exists, display warning to user.
         // Use soft warning for now (user able to choose to proceed) until have determined that implementation works without bugs
@@ -1,6 +1,7 @@
 package fr.free.nrw.commons.upload;
 
 import android.annotation.SuppressLint;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.Context;
 import android.database.Cursor;
@@ -9,9 +10,11 @@ import android.os.Build;
 import android.os.Environment;
 import android.provider.DocumentsContract;
 import android.provider.MediaStore;
+import android.provider.OpenableColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -130,6 +133,58 @@ public class FileUtils {
         return null;
     }
 
+    /**
+     * Gets the size of the file behind a Uri, as its provider reports it.
+     *
+     * @return the size in bytes, or 0 if it is unknown
+     */
+    public static long getSize(Context context, Uri uri) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            return new File(uri.getPath()).length();
+        }
+        return queryLong(context, uri, OpenableColumns.SIZE);
+    }
+
+    /**
+     * Gets the last modification time of the file behind a Uri: the document's for Storage
+     * Access Framework documents, the media store's for media, the file's for file Uris.
+     *
+     * @return the time in milliseconds, or 0 if it is unknown
+     */
+    // The column name is a constant inlined at compile time, older providers don't have it
+    @SuppressLint("InlinedApi")
+    public static long getLastModified(Context context, Uri uri) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme())) {
+            return new File(uri.getPath()).lastModified();
+        }
+        long lastModified = queryLong(context, uri, DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+        if (lastModified == 0) {
+            // In seconds
+            lastModified = 1000 * queryLong(context, uri, MediaStore.MediaColumns.DATE_MODIFIED);
+        }
+        return lastModified;
+    }
+
+    private static long queryLong(Context context, Uri uri, String column) {
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(uri, null, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                int index = cursor.getColumnIndex(column);
+                if (index != -1 && !cursor.isNull(index)) {
+                    return cursor.getLong(index);
+                }
+            }
+        } catch (IllegalArgumentException | SecurityException e) {
+            Timber.d(e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return 0;
+    }
+
     /**
      * @param uri The Uri to check.
      * @return Whether the Uri authority is ExternalStorageProvider.
@@ -0,0 +1,94 @@
+package fr.free.nrw.commons.upload;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the SHA-1 of everything read through it, so a file can be hashed
+ * while it is being uploaded instead of in a separate pass.
+ * Skipped bytes are read and hashed as well, the digest always covers the whole file.
+ */
+public class HashingInputStream extends FilterInputStream {
+
+    private final MessageDigest digest;
+    private final byte[] skipBuffer = new byte[8192];
+    private String sha1;
+
+    public HashingInputStream(InputStream in) {
+        super(in);
+        try {
+            digest = MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android device ships SHA1
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            digest.update((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            digest.update(buffer, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        int read = read(skipBuffer, 0, (int) Math.min(count, skipBuffer.length));
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported, a reset would hash the same bytes twice
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Reads the rest of the stream and returns the digest of the whole content.
+     * @return the SHA-1 as 40 lowercase hexadecimal characters
+     */
+    public String readToEndAndGetSha1() throws IOException {
+        while (skip(Long.MAX_VALUE) > 0) {
+            // Keep reading
+        }
+        return getSha1();
+    }
+
+    /**
+     * Finishes the digest of the bytes read so far. Finishing resets the digest, so the
+     * result is kept and returned again by later calls.
+     * @return the SHA-1 as 40 lowercase hexadecimal characters
+     */
+    public String getSha1() {
+        if (sha1 == null) {
+            BigInteger bigInt = new BigInteger(1, digest.digest());
+            // Fill to 40 chars
+            sha1 = String.format("%40s", bigInt.toString(16)).replace(' ', '0');
+        }
+        return sha1;
+    }
+}
@@ -17,6 +17,7 @@ import android.support.design.widget.Snackbar;
 import android.support.graphics.drawable.VectorDrawableCompat;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
+import android.text.TextUtils;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
@@ -29,9 +30,6 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.List;
 
@@ -46,6 +44,8 @@ import fr.free.nrw.commons.caching.CacheController;
 import fr.free.nrw.commons.category.CategorizationFragment;
 import fr.free.nrw.commons.category.OnCategoriesSaveHandler;
 import fr.free.nrw.commons.contributions.Contribution;
+import fr.free.nrw.commons.contributions.ContributionDao;
+import fr.free.nrw.commons.contributions.UploadedHashDao;
 import fr.free.nrw.commons.modifications.CategoryModifier;
 import fr.free.nrw.commons.modifications.ModificationsContentProvider;
 import fr.free.nrw.commons.modifications.ModifierSequence;
@@ -77,6 +77,8 @@ public  class      ShareActivity
     @Inject SessionManager sessionManager;
     @Inject UploadController uploadController;
     @Inject ModifierSequenceDao modifierSequenceDao;
+    @Inject ContributionDao contributionDao;
+    @Inject UploadedHashDao uploadedHashDao;
     @Inject @Named("default_preferences") SharedPreferences prefs;
 
     private String source;
@@ -99,6 +101,9 @@ public  class      ShareActivity
     private String description;
     private Snackbar snackbar;
     private boolean duplicateCheckPassed = false;
+    private String fileSHA1;
+    private long fileLength;
+    private long fileModified;
 
     /**
      * Called when user taps the submit button.
@@ -145,7 +150,9 @@ public  class      ShareActivity
             Timber.d("Cache the categories found");
         }
 
-        uploadController.startUpload(title, mediaUri, description, mimeType, source, decimalCoords, c -> {
+        String knownSHA1 = TextUtils.isEmpty(fileSHA1) ? null : fileSHA1;
+        uploadController.startUpload(title, mediaUri, description, mimeType, source, decimalCoords,
+                knownSHA1, fileLength, knownSHA1 == null ? 0 : fileModified, c -> {
             ShareActivity.this.contribution = c;
             showPostUpload();
         });
@@ -351,9 +358,15 @@ public  class      ShareActivity
             if (!duplicateCheckPassed) {
                 //Test SHA1 of image to see if it matches SHA1 of a file on Commons
                 try {
-                    InputStream inputStream = getContentResolver().openInputStream(mediaUri);
-                    Timber.d("Input stream created from %s", mediaUri.toString());
-                    String fileSHA1 = getSHA1(inputStream);
+                    // A file shared before was hashed then, it needs no new read if it is unchanged
+                    fileLength = FileUtils.getSize(this, mediaUri);
+                    fileModified = FileUtils.getLastModified(this, mediaUri);
+                    fileSHA1 = contributionDao.getSha1ForLocalFile(mediaUri, fileLength, fileModified);
+                    if (fileSHA1 == null) {
+                        InputStream inputStream = getContentResolver().openInputStream(mediaUri);
+                        Timber.d("Input stream created from %s", mediaUri.toString());
+                        fileSHA1 = getSHA1(inputStream);
+                    }
                     Timber.d("File SHA1 is: %s", fileSHA1);
 
                     ExistingFileAsync fileAsyncTask =
@@ -361,7 +374,7 @@ public  class      ShareActivity
                                 Timber.d("%s duplicate check: %s", mediaUri.toString(), result);
                                 duplicateCheckPassed = (result == DUPLICATE_PROCEED
                                         || result == NO_DUPLICATE);
-                            }, mwApi);
+                            }, mwApi, uploadedHashDao);
                     fileAsyncTask.execute();
                 } catch (IOException e) {
                     Timber.d(e, "IO Exception: ");
@@ -525,26 +538,8 @@ public  class      ShareActivity
 
     // Get SHA1 of file from input stream
     private String getSHA1(InputStream is) {
-
-        MessageDigest digest;
         try {
-            digest = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            Timber.e(e, "Exception while getting Digest");
-            return "";
-        }
-
-        byte[] buffer = new byte[8192];
-        int read;
-        try {
-            while ((read = is.read(buffer)) > 0) {
-                digest.update(buffer, 0, read);
-            }
-            byte[] md5sum = digest.digest();
-            BigInteger bigInt = new BigInteger(1, md5sum);
-            String output = bigInt.toString(16);
-            // Fill to 40 chars
-            output = String.format("%40s", output).replace(' ', '0');
+            String output = new HashingInputStream(is).readToEndAndGetSha1();
             Timber.i("File SHA1: %s", output);
 
             return output;
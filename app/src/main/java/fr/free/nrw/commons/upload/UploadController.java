@@ -17,7 +17,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 import fr.free.nrw.commons.CommonsApplication;
 import fr.free.nrw.commons.HandlerService;
@@ -31,6 +31,7 @@ public class UploadController {
     private SessionManager sessionManager;
     private Context context;
     private SharedPreferences prefs;
+    private Executor ioExecutor;
 
     public interface ContributionUploadProgress {
         void onUploadStarted(Contribution contribution);
@@ -39,10 +40,11 @@ public class UploadController {
     /**
      * Constructs a new UploadController.
      */
-    public UploadController(SessionManager sessionManager, Context context, SharedPreferences sharedPreferences) {
+    public UploadController(SessionManager sessionManager, Context context, SharedPreferences sharedPreferences, Executor ioExecutor) {
         this.sessionManager = sessionManager;
         this.context = context;
         this.prefs = sharedPreferences;
+        this.ioExecutor = ioExecutor;
     }
 
     private boolean isUploadServiceConnected;
@@ -87,18 +89,24 @@ public class UploadController {
      * @param mimeType the MIME type of the contribution
      * @param source the source of the contribution
      * @param decimalCoords the coordinates in decimal. (e.g. "37.51136|-77.602615")
+     * @param fileSha1 the SHA1 of the file if it is already known, null otherwise
+     * @param fileLength the size of the file if it is already known, 0 otherwise
+     * @param fileModified the modification time of the file when it was hashed, 0 if unknown
      * @param onComplete the progress tracker
      */
-    public void startUpload(String title, Uri mediaUri, String description, String mimeType, String source, String decimalCoords, ContributionUploadProgress onComplete) {
+    public void startUpload(String title, Uri mediaUri, String description, String mimeType, String source, String decimalCoords,
+                            String fileSha1, long fileLength, long fileModified, ContributionUploadProgress onComplete) {
         Contribution contribution;
 
         //TODO: Modify this to include coords
-        contribution = new Contribution(mediaUri, null, title, description, -1,
+        contribution = new Contribution(mediaUri, null, title, description, fileLength > 0 ? fileLength : -1,
                 null, null, sessionManager.getCurrentAccount().name,
                 CommonsApplication.DEFAULT_EDIT_SUMMARY, decimalCoords);
 
         contribution.setTag("mimeType", mimeType);
         contribution.setSource(source);
+        contribution.setSha1(fileSha1);
+        contribution.setLocalModified(fileModified);
 
         //Calls the next overloaded method
         startUpload(contribution, onComplete);
@@ -193,7 +201,7 @@ public class UploadController {
                 uploadService.queue(UploadService.ACTION_UPLOAD_FILE, contribution);
                 onComplete.onUploadStarted(contribution);
             }
-        }.executeOnExecutor(Executors.newFixedThreadPool(1)); // TODO remove this by using a sensible thread handling strategy
+        }.executeOnExecutor(ioExecutor);
     }
 
 
@@ -10,6 +10,7 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.BitmapFactory;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.NotificationCompat;
 import android.webkit.MimeTypeMap;
 import android.widget.Toast;
@@ -17,8 +18,13 @@ import android.widget.Toast;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,9 +39,12 @@ import fr.free.nrw.commons.contributions.Contribution;
 import fr.free.nrw.commons.contributions.ContributionDao;
 import fr.free.nrw.commons.contributions.ContributionsActivity;
 import fr.free.nrw.commons.contributions.ContributionsContentProvider;
+import fr.free.nrw.commons.contributions.UploadedHashDao;
 import fr.free.nrw.commons.modifications.ModificationsContentProvider;
 import fr.free.nrw.commons.mwapi.MediaWikiApi;
 import fr.free.nrw.commons.mwapi.UploadResult;
+import fr.free.nrw.commons.settings.Prefs;
+import fr.free.nrw.commons.utils.ExecutorUtils;
 import timber.log.Timber;
 
 public class UploadService extends HandlerService<Contribution> {
@@ -48,25 +57,46 @@ public class UploadService extends HandlerService<Contribution> {
     public static final String EXTRA_SOURCE = EXTRA_PREFIX + ".source";
     public static final String EXTRA_CAMPAIGN = EXTRA_PREFIX + ".campaign";
 
+    // Number of files transferred at the same time, see Prefs.UPLOAD_PARALLELISM
+    public static final int DEFAULT_PARALLEL_UPLOADS = 2;
+    public static final int MAX_PARALLEL_UPLOADS = 4;
+
+    // Files larger than this go through the upload stash so they can be resumed
+    private static final long CHUNKED_UPLOAD_THRESHOLD = 5 * 1024 * 1024;
+
     @Inject MediaWikiApi mwApi;
     @Inject SessionManager sessionManager;
     @Inject @Named("default_preferences") SharedPreferences prefs;
     @Inject ContributionDao contributionDao;
+    @Inject UploadedHashDao uploadedHashDao;
 
     private NotificationManager notificationManager;
-    private NotificationCompat.Builder curProgressNotification;
-    private int toUpload;
+    private final AtomicInteger toUpload = new AtomicInteger();
+    private ExecutorService uploadExecutor;
 
     // The file names of unfinished uploads, used to prevent overwriting
     private Set<String> unfinishedUploads = new HashSet<>();
 
+    // File names known to exist on the server, guarded by unfinishedUploads
+    private Set<String> takenFilenames = new HashSet<>();
+
+    // Candidate names checked per query when looking for a free file name
+    private static final int UNIQUE_FILENAME_BATCH_SIZE = 10;
+    private static final Pattern FILE_EXTENSION_PATTERN = Pattern.compile("^(.*)(\\..+?)$");
+
     // DO NOT HAVE NOTIFICATION ID OF 0 FOR ANYTHING
     // See http://stackoverflow.com/questions/8725909/startforeground-does-not-show-my-notification
     // Seriously, Android?
+    // The service stays in the foreground with the untagged notification counting the pending
+    // uploads, each upload shows its progress and failure tagged with its local URI
     public static final int NOTIFICATION_UPLOAD_IN_PROGRESS = 1;
     public static final int NOTIFICATION_UPLOAD_COMPLETE = 2;
     public static final int NOTIFICATION_UPLOAD_FAILED = 3;
 
+    // Progress callbacks come once per buffer flush, only publish them this often
+    private static final long PROGRESS_UPDATE_INTERVAL_MILLIS = 500;
+    private static final int PROGRESS_UPDATE_PERCENT_STEP = 5;
+
     public UploadService() {
         super("UploadService");
     }
@@ -76,11 +106,16 @@ public class UploadService extends HandlerService<Contribution> {
         String notificationTag;
         boolean notificationTitleChanged;
         Contribution contribution;
+        NotificationCompat.Builder progressNotification;
 
         String notificationProgressTitle;
         String notificationFinishingTitle;
 
-        public NotificationUpdateProgressListener(String notificationTag, String notificationProgressTitle, String notificationFinishingTitle, Contribution contribution) {
+        long lastUpdateTime;
+        int lastUpdatePercent = -1;
+
+        public NotificationUpdateProgressListener(NotificationCompat.Builder progressNotification, String notificationTag, String notificationProgressTitle, String notificationFinishingTitle, Contribution contribution) {
+            this.progressNotification = progressNotification;
             this.notificationTag = notificationTag;
             this.notificationProgressTitle = notificationProgressTitle;
             this.notificationFinishingTitle = notificationFinishingTitle;
@@ -89,20 +124,32 @@ public class UploadService extends HandlerService<Contribution> {
 
         @Override
         public void onProgress(long transferred, long total) {
+            boolean completed = transferred >= total;
+            int percent = (int) (((double) transferred / (double) total) * 100);
+            long now = SystemClock.elapsedRealtime();
+            // Coalesce intermediate updates, the first and the final one always go through
+            if (notificationTitleChanged && !completed
+                    && now - lastUpdateTime < PROGRESS_UPDATE_INTERVAL_MILLIS
+                    && percent - lastUpdatePercent < PROGRESS_UPDATE_PERCENT_STEP) {
+                return;
+            }
+            lastUpdateTime = now;
+            lastUpdatePercent = percent;
+
             Timber.d("Uploaded %d of %d", transferred, total);
             if (!notificationTitleChanged) {
-                curProgressNotification.setContentTitle(notificationProgressTitle);
+                progressNotification.setContentTitle(notificationProgressTitle);
                 notificationTitleChanged = true;
                 contribution.setState(Contribution.STATE_IN_PROGRESS);
             }
-            if (transferred == total) {
+            if (completed) {
                 // Completed!
-                curProgressNotification.setContentTitle(notificationFinishingTitle);
-                curProgressNotification.setProgress(0, 100, true);
+                progressNotification.setContentTitle(notificationFinishingTitle);
+                progressNotification.setProgress(0, 100, true);
             } else {
-                curProgressNotification.setProgress(100, (int) (((double) transferred / (double) total) * 100), false);
+                progressNotification.setProgress(100, percent, false);
             }
-            startForeground(NOTIFICATION_UPLOAD_IN_PROGRESS, curProgressNotification.build());
+            notificationManager.notify(notificationTag, NOTIFICATION_UPLOAD_IN_PROGRESS, progressNotification.build());
 
             contribution.setTransferred(transferred);
             contributionDao.save(contribution);
@@ -113,6 +160,7 @@ public class UploadService extends HandlerService<Contribution> {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        uploadExecutor.shutdown();
         Timber.d("UploadService.onDestroy; %s are yet to be uploaded", unfinishedUploads);
     }
 
@@ -121,6 +169,22 @@ public class UploadService extends HandlerService<Contribution> {
         super.onCreate();
 
         notificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        uploadExecutor = Executors.newFixedThreadPool(getParallelUploads());
+    }
+
+    /**
+     * Reads the number of concurrent uploads from the preferences,
+     * clamped to [1, MAX_PARALLEL_UPLOADS].
+     */
+    private int getParallelUploads() {
+        int parallelUploads;
+        try {
+            parallelUploads = Integer.parseInt(prefs.getString(Prefs.UPLOAD_PARALLELISM,
+                    String.valueOf(DEFAULT_PARALLEL_UPLOADS)));
+        } catch (NumberFormatException e) {
+            parallelUploads = DEFAULT_PARALLEL_UPLOADS;
+        }
+        return Math.max(1, Math.min(parallelUploads, MAX_PARALLEL_UPLOADS));
     }
 
     @Override
@@ -128,7 +192,8 @@ public class UploadService extends HandlerService<Contribution> {
         switch (what) {
             case ACTION_UPLOAD_FILE:
                 //FIXME: Google Photos bug
-                uploadContribution(contribution);
+                // The handler thread only dispatches, transfers run on the upload pool
+                uploadExecutor.execute(() -> uploadContribution(contribution));
                 break;
             default:
                 throw new IllegalArgumentException("Unknown value for what");
@@ -141,13 +206,13 @@ public class UploadService extends HandlerService<Contribution> {
             case ACTION_UPLOAD_FILE:
 
                 contribution.setState(Contribution.STATE_QUEUED);
-                contribution.setTransferred(0);
+                // A stashed upload resumes from its last acknowledged chunk
+                contribution.setTransferred(contribution.getChunkOffset());
                 contributionDao.save(contribution);
-                toUpload++;
-                if (curProgressNotification != null && toUpload != 1) {
-                    curProgressNotification.setContentText(getResources().getQuantityString(R.plurals.uploads_pending_notification_indicator, toUpload, toUpload));
-                    Timber.d("%d uploads left", toUpload);
-                    this.startForeground(NOTIFICATION_UPLOAD_IN_PROGRESS, curProgressNotification.build());
+                synchronized (toUpload) {
+                    int pending = toUpload.incrementAndGet();
+                    Timber.d("%d uploads left", pending);
+                    showPendingUploads(pending);
                 }
 
                 super.queue(what, contribution);
@@ -162,6 +227,8 @@ public class UploadService extends HandlerService<Contribution> {
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent.getAction().equals(ACTION_START_SERVICE) && freshStart) {
+            // Interrupted uploads are marked as failed, chunked ones keep their
+            // stash key and offset so that retrying them resumes the transfer
             ContentValues failedValues = new ContentValues();
             failedValues.put(ContributionDao.Table.COLUMN_STATE, Contribution.STATE_FAILED);
 
@@ -188,8 +255,10 @@ public class UploadService extends HandlerService<Contribution> {
             file = this.getContentResolver().openInputStream(contribution.getLocalUri());
         } catch (FileNotFoundException e) {
             Timber.d("File not found");
-            Toast fileNotFound = Toast.makeText(this, R.string.upload_failed, Toast.LENGTH_LONG);
-            fileNotFound.show();
+            // Uploads run on a pool thread without a looper, toasts have to go through the UI thread
+            ExecutorUtils.uiExecutor().execute(() ->
+                    Toast.makeText(this, R.string.upload_failed, Toast.LENGTH_LONG).show());
+            uploadFinished();
             return;
         }
 
@@ -197,34 +266,38 @@ public class UploadService extends HandlerService<Contribution> {
         //mwapi.upload accepts a NonNull input stream
         if(file == null) {
             Timber.d("File not found");
+            uploadFinished();
             return;
         }
 
+        // Hash the file while it is uploaded rather than reading it once more
+        HashingInputStream hashingFile = null;
+        if (contribution.getSha1() == null) {
+            hashingFile = new HashingInputStream(file);
+            file = hashingFile;
+        }
+
         Timber.d("Before execution!");
-        curProgressNotification = new NotificationCompat.Builder(this).setAutoCancel(true)
+        NotificationCompat.Builder progressNotification = new NotificationCompat.Builder(this).setAutoCancel(true)
                 .setSmallIcon(R.drawable.ic_launcher)
                 .setLargeIcon(BitmapFactory.decodeResource(getResources(), R.drawable.ic_launcher))
                 .setAutoCancel(true)
                 .setContentTitle(getString(R.string.upload_progress_notification_title_start, contribution.getDisplayTitle()))
-                .setContentText(getResources().getQuantityString(R.plurals.uploads_pending_notification_indicator, toUpload, toUpload))
                 .setOngoing(true)
                 .setProgress(100, 0, true)
                 .setContentIntent(PendingIntent.getActivity(this, 0, new Intent(this, ContributionsActivity.class), 0))
                 .setTicker(getString(R.string.upload_progress_notification_title_in_progress, contribution.getDisplayTitle()));
 
-        this.startForeground(NOTIFICATION_UPLOAD_IN_PROGRESS, curProgressNotification.build());
+        notificationManager.notify(notificationTag, NOTIFICATION_UPLOAD_IN_PROGRESS, progressNotification.build());
 
         String filename = null;
         try {
-            filename = Utils.fixExtension(
+            String wantedFilename = Utils.fixExtension(
                     contribution.getFilename(),
                     MimeTypeMap.getSingleton().getExtensionFromMimeType((String)contribution.getTag("mimeType")));
 
-            synchronized (unfinishedUploads) {
-                Timber.d("making sure of uniqueness of name: %s", filename);
-                filename = findUniqueFilename(filename);
-                unfinishedUploads.add(filename);
-            }
+            Timber.d("making sure of uniqueness of name: %s", wantedFilename);
+            filename = reserveUniqueFilename(wantedFilename);
             if (!mwApi.validateLogin()) {
                 // Need to revalidate!
                 if (sessionManager.revalidateAuthToken()) {
@@ -232,22 +305,37 @@ public class UploadService extends HandlerService<Contribution> {
                 } else {
                     Timber.d("Unable to revalidate :(");
                     // TODO: Put up a new notification, ask them to re-login
-                    stopForeground(true);
-                    Toast failureToast = Toast.makeText(this, R.string.authentication_failed, Toast.LENGTH_LONG);
-                    failureToast.show();
+                    ExecutorUtils.uiExecutor().execute(() ->
+                            Toast.makeText(this, R.string.authentication_failed, Toast.LENGTH_LONG).show());
                     return;
                 }
             }
-            NotificationUpdateProgressListener notificationUpdater = new NotificationUpdateProgressListener(notificationTag,
+            NotificationUpdateProgressListener notificationUpdater = new NotificationUpdateProgressListener(progressNotification, notificationTag,
                     getString(R.string.upload_progress_notification_title_in_progress, contribution.getDisplayTitle()),
                     getString(R.string.upload_progress_notification_title_finishing, contribution.getDisplayTitle()),
                     contribution
             );
-            UploadResult uploadResult = mwApi.uploadFile(filename, file, contribution.getDataLength(), contribution.getPageContents(), contribution.getEditSummary(), notificationUpdater);
+            UploadResult uploadResult;
+            if (contribution.getFileKey() != null || contribution.getDataLength() > CHUNKED_UPLOAD_THRESHOLD) {
+                Timber.d("Uploading in chunks from offset %d", contribution.getChunkOffset());
+                uploadResult = mwApi.uploadFileInChunks(filename, file, contribution.getDataLength(),
+                        contribution.getFileKey(), contribution.getChunkOffset(),
+                        contribution.getPageContents(), contribution.getEditSummary(),
+                        (fileKey, offset) -> {
+                            contribution.setFileKey(fileKey);
+                            contribution.setChunkOffset(offset);
+                            contributionDao.save(contribution);
+                        },
+                        notificationUpdater);
+            } else {
+                uploadResult = mwApi.uploadFile(filename, file, contribution.getDataLength(), contribution.getPageContents(), contribution.getEditSummary(), notificationUpdater);
+            }
 
             Timber.d("Response is %s", uploadResult.toString());
 
-            curProgressNotification = null;
+            // The server has either published or rejected the file, a stale stash can't be resumed
+            contribution.setFileKey(null);
+            contribution.setChunkOffset(0);
 
             String resultStatus = uploadResult.getResultStatus();
             if (!resultStatus.equals("Success")) {
@@ -257,24 +345,59 @@ public class UploadService extends HandlerService<Contribution> {
                 contribution.setImageUrl(uploadResult.getImageUrl());
                 contribution.setState(Contribution.STATE_COMPLETED);
                 contribution.setDateUploaded(uploadResult.getDateUploaded());
+                if (hashingFile != null) {
+                    contribution.setSha1(hashingFile.getSha1());
+                }
                 contributionDao.save(contribution);
+                if (contribution.getSha1() != null) {
+                    uploadedHashDao.save(contribution.getSha1(), contribution.getFilename());
+                }
+                synchronized (unfinishedUploads) {
+                    takenFilenames.add(filename);
+                }
             }
         } catch (IOException e) {
             Timber.d("I have a network fuckup");
             showFailedNotification(contribution);
         } finally {
             if (filename != null) {
-                unfinishedUploads.remove(filename);
+                synchronized (unfinishedUploads) {
+                    unfinishedUploads.remove(filename);
+                }
             }
-            toUpload--;
-            if (toUpload == 0) {
+            notificationManager.cancel(notificationTag, NOTIFICATION_UPLOAD_IN_PROGRESS);
+            uploadFinished();
+        }
+    }
+
+    /**
+     * Counts an upload out, the service leaves the foreground once none is left. Counting
+     * and updating the foreground notification happen under the same lock, so that a stale
+     * count never brings the service back to the foreground after the last upload.
+     */
+    private void uploadFinished() {
+        synchronized (toUpload) {
+            int pending = toUpload.decrementAndGet();
+            if (pending == 0) {
                 // Sync modifications right after all uplaods are processed
                 ContentResolver.requestSync(sessionManager.getCurrentAccount(), ModificationsContentProvider.MODIFICATIONS_AUTHORITY, new Bundle());
                 stopForeground(true);
+            } else {
+                showPendingUploads(pending);
             }
         }
     }
 
+    private void showPendingUploads(int pending) {
+        Notification notification = new NotificationCompat.Builder(this)
+                .setSmallIcon(R.drawable.ic_launcher)
+                .setContentTitle(getResources().getQuantityString(R.plurals.uploads_pending_notification_indicator, pending, pending))
+                .setOngoing(true)
+                .setContentIntent(PendingIntent.getActivity(this, 0, new Intent(this, ContributionsActivity.class), 0))
+                .build();
+        startForeground(NOTIFICATION_UPLOAD_IN_PROGRESS, notification);
+    }
+
     @SuppressLint("StringFormatInvalid")
     private void showFailedNotification(Contribution contribution) {
         Notification failureNotification = new NotificationCompat.Builder(this).setAutoCancel(true)
@@ -285,33 +408,59 @@ public class UploadService extends HandlerService<Contribution> {
                 .setContentTitle(getString(R.string.upload_failed_notification_title, contribution.getDisplayTitle()))
                 .setContentText(getString(R.string.upload_failed_notification_subtitle))
                 .build();
-        notificationManager.notify(NOTIFICATION_UPLOAD_FAILED, failureNotification);
+        notificationManager.notify(contribution.getLocalUri().toString(), NOTIFICATION_UPLOAD_FAILED, failureNotification);
 
         contribution.setState(Contribution.STATE_FAILED);
         contributionDao.save(contribution);
     }
 
-    private String findUniqueFilename(String fileName) throws IOException {
-        String sequenceFileName;
-        for (int sequenceNumber = 1; true; sequenceNumber++) {
-            if (sequenceNumber == 1) {
-                sequenceFileName = fileName;
-            } else {
-                if (fileName.indexOf('.') == -1) {
-                    // We really should have appended a file type suffix already.
-                    // But... we might not.
-                    sequenceFileName = fileName + " " + sequenceNumber;
-                } else {
-                    Pattern regex = Pattern.compile("^(.*)(\\..+?)$");
-                    Matcher regexMatcher = regex.matcher(fileName);
-                    sequenceFileName = regexMatcher.replaceAll("$1 " + sequenceNumber + "$2");
+    /**
+     * Finds a file name free on the server and among the unfinished uploads, and reserves
+     * it for this upload. The server is asked about candidates without holding the lock,
+     * so that the other uploads go on meanwhile.
+     */
+    private String reserveUniqueFilename(String fileName) throws IOException {
+        for (int firstSequenceNumber = 1; true; firstSequenceNumber += UNIQUE_FILENAME_BATCH_SIZE) {
+            List<String> candidates = new ArrayList<>(UNIQUE_FILENAME_BATCH_SIZE);
+            synchronized (unfinishedUploads) {
+                for (int sequenceNumber = firstSequenceNumber;
+                     sequenceNumber < firstSequenceNumber + UNIQUE_FILENAME_BATCH_SIZE;
+                     sequenceNumber++) {
+                    String sequenceFileName = getSequenceFileName(fileName, sequenceNumber);
+                    if (!takenFilenames.contains(sequenceFileName)
+                            && !unfinishedUploads.contains(sequenceFileName)) {
+                        candidates.add(sequenceFileName);
+                    }
                 }
             }
-            if (!mwApi.fileExistsWithName(sequenceFileName)
-                    && !unfinishedUploads.contains(sequenceFileName)) {
-                break;
+            if (candidates.isEmpty()) {
+                continue;
             }
+
+            Set<String> existing = mwApi.existingFileNames(candidates);
+            synchronized (unfinishedUploads) {
+                takenFilenames.addAll(existing);
+                for (String candidate : candidates) {
+                    // Another upload may have reserved it while the server was asked
+                    if (!takenFilenames.contains(candidate) && !unfinishedUploads.contains(candidate)) {
+                        unfinishedUploads.add(candidate);
+                        return candidate;
+                    }
+                }
+            }
+        }
+    }
+
+    private String getSequenceFileName(String fileName, int sequenceNumber) {
+        if (sequenceNumber == 1) {
+            return fileName;
+        }
+        if (fileName.indexOf('.') == -1) {
+            // We really should have appended a file type suffix already.
+            // But... we might not.
+            return fileName + " " + sequenceNumber;
         }
-        return sequenceFileName;
+        Matcher regexMatcher = FILE_EXTENSION_PATTERN.matcher(fileName);
+        return regexMatcher.replaceAll("$1 " + sequenceNumber + "$2");
     }
 }
@@ -0,0 +1,131 @@
+package fr.free.nrw.commons.utils;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size thread pool that keeps track of how busy it is: queue depth,
+ * active threads, and how long tasks wait and run on average. Nothing is logged
+ * per task, the metrics are read through the getters or logged with {@link #toString()}.
+ * Meant to be shared app-wide through dependency injection rather than
+ * creating a pool per call.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+    private final AtomicLong finishedTasks = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+
+    public InstrumentedThreadPoolExecutor(String name, int threads) {
+        super(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new BackgroundThreadFactory(name));
+        this.name = name;
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        super.execute(new TimedRunnable(command));
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks that ran to completion, or threw
+     */
+    public long getFinishedTaskCount() {
+        return finishedTasks.get();
+    }
+
+    /**
+     * @return the average time between submitting a task and the end of its execution
+     */
+    public long getAverageTaskLatencyMillis() {
+        long finished = finishedTasks.get();
+        if (finished == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis((totalQueueNanos.get() + totalRunNanos.get()) / finished);
+    }
+
+    /**
+     * @return the average time a task waited in the queue before running
+     */
+    public long getAverageQueueWaitMillis() {
+        long finished = finishedTasks.get();
+        if (finished == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(totalQueueNanos.get() / finished);
+    }
+
+    /**
+     * @return the average time a task ran, once it left the queue
+     */
+    public long getAverageRunMillis() {
+        long finished = finishedTasks.get();
+        if (finished == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(totalRunNanos.get() / finished);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "%s: %d active, %d queued, %d done, %d ms average latency, %d ms average wait",
+                name, getActiveCount(), getQueueDepth(), finishedTasks.get(),
+                getAverageTaskLatencyMillis(), getAverageQueueWaitMillis());
+    }
+
+    private class TimedRunnable implements Runnable {
+        private final Runnable task;
+        private final long submitted = System.nanoTime();
+
+        TimedRunnable(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long started = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                totalQueueNanos.addAndGet(started - submitted);
+                totalRunNanos.addAndGet(System.nanoTime() - started);
+                finishedTasks.incrementAndGet();
+            }
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        BackgroundThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, name + " #" + count.incrementAndGet());
+        }
+    }
+}
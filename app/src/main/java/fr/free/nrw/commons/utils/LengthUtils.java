@@ -37,6 +37,17 @@ public class LengthUtils {
         return computeAngleBetween(from, to) * 6371009.0D; // Earth's radius in meter
     }
 
+    /**
+     * Computes the distance between two points given by their coordinates in degrees,
+     * for callers going through many points without building a LatLng for each.
+     * @return distance between the points in meter
+     */
+    public static double computeDistanceBetween(double fromLatitude, double fromLongitude,
+                                                double toLatitude, double toLongitude) {
+        return distanceRadians(Math.toRadians(fromLatitude), Math.toRadians(fromLongitude),
+                Math.toRadians(toLatitude), Math.toRadians(toLongitude)) * 6371009.0D;
+    }
+
     /**
      * Computes angle between two points
      *
@@ -1,6 +1,8 @@
 package fr.free.nrw.commons.utils;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 import info.debatty.java.stringsimilarity.Levenshtein;
 
@@ -43,4 +45,89 @@ public class StringSortingUtils {
         double distanceBetweenStrings = new Levenshtein().distance(longer, shorter);
         return (longerLength - distanceBetweenStrings) / (double) longerLength;
     }
-}
\ No newline at end of file
+
+    /**
+     * Orders strings by similarity with the filter, as {@link #sortBySimilarity(String)}
+     * does, but computing the similarity of each string once, then sorting on the scores
+     * alone. Case is ignored whichever string is the longer.
+     *
+     * @param strings strings to order
+     * @param filter  pattern to compare similarity
+     * @return indexes of the strings from the highest to the lowest match, ties keeping
+     * their original order
+     */
+    public static int[] orderBySimilarity(List<String> strings, String filter) {
+        String lowerFilter = filter.toLowerCase();
+        long[] keys = new long[strings.size()];
+        for (int i = 0; i < keys.length; i++) {
+            // Similarities are ratios of small integers, distinct ones stay distinct as floats,
+            // and the bits of a positive float sort like the float itself
+            int similarityBits = Float.floatToIntBits((float) similarity(strings.get(i).toLowerCase(), lowerFilter));
+            keys[i] = (long) (Integer.MAX_VALUE - similarityBits) << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private static double similarity(String first, String second) {
+        int longerLength = Math.max(first.length(), second.length());
+        if (longerLength == 0) {
+            return 1.0;
+        }
+        return (longerLength - distance(first, second)) / (double) longerLength;
+    }
+
+    /**
+     * Levenshtein distance between two strings. The common prefix and suffix are skipped,
+     * and the distance matrix is computed two rows at a time.
+     */
+    static int distance(String first, String second) {
+        int start = 0;
+        int firstEnd = first.length();
+        int secondEnd = second.length();
+        while (start < firstEnd && start < secondEnd && first.charAt(start) == second.charAt(start)) {
+            start++;
+        }
+        while (firstEnd > start && secondEnd > start && first.charAt(firstEnd - 1) == second.charAt(secondEnd - 1)) {
+            firstEnd--;
+            secondEnd--;
+        }
+
+        // Rows follow the longer string, columns the shorter one
+        String rows = first;
+        String columns = second;
+        int rowCount = firstEnd - start;
+        int columnCount = secondEnd - start;
+        if (rowCount < columnCount) {
+            rows = second;
+            columns = first;
+            rowCount = secondEnd - start;
+            columnCount = firstEnd - start;
+        }
+        if (columnCount == 0) {
+            return rowCount;
+        }
+
+        int[] previous = new int[columnCount + 1];
+        int[] current = new int[columnCount + 1];
+        for (int j = 0; j <= columnCount; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= rowCount; i++) {
+            char rowChar = rows.charAt(start + i - 1);
+            current[0] = i;
+            for (int j = 1; j <= columnCount; j++) {
+                int cost = rowChar == columns.charAt(start + j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[columnCount];
+    }
+}
@@ -0,0 +1,47 @@
+package fr.free.nrw.commons;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares an implementation with the one it replaced. The two are run alternately so both
+ * see the same JIT and garbage collector conditions, they must give the same result and the
+ * new one must be faster.
+ * Classes named *Benchmark are left out of the unit tests, run them with
+ * {@code ./gradlew testDebugUnitTest -Pbenchmarks}.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static <T> void assertFaster(String name, int warmupIterations, int measuredIterations,
+                                        Callable<T> candidate, Callable<T> baseline) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            candidate.call();
+            baseline.call();
+        }
+
+        long candidateNanos = 0;
+        long baselineNanos = 0;
+        T candidateResult = null;
+        T baselineResult = null;
+        for (int i = 0; i < measuredIterations; i++) {
+            long start = System.nanoTime();
+            candidateResult = candidate.call();
+            long middle = System.nanoTime();
+            baselineResult = baseline.call();
+            baselineNanos += System.nanoTime() - middle;
+            candidateNanos += middle - start;
+        }
+
+        assertEquals(baselineResult, candidateResult);
+        assertTrue(String.format(Locale.ENGLISH, "%s: %.1f us/op, was %.1f us/op", name,
+                candidateNanos / 1000.0 / measuredIterations,
+                baselineNanos / 1000.0 / measuredIterations),
+                candidateNanos < baselineNanos);
+    }
+}
@@ -0,0 +1,92 @@
+package fr.free.nrw.commons;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+
+import fr.free.nrw.commons.data.DBOpenHelper;
+import fr.free.nrw.commons.location.LatLng;
+import fr.free.nrw.commons.mwapi.MediaWikiApi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class MediaMetadataCacheTest {
+
+    private MediaMetadataCache testObject;
+
+    @Before
+    public void setUp() {
+        testObject = new MediaMetadataCache(new DBOpenHelper(RuntimeEnvironment.application));
+    }
+
+    @Test
+    public void storedEntryIsReadBack() {
+        testObject.put("File:A.jpg", new MediaMetadataCache.Entry(42,
+                Collections.singletonList("Bridges"), Collections.singletonMap("en", "A bridge"),
+                "cc-by-sa-4.0", new LatLng(47.5, 19.05, 0)));
+
+        MediaMetadataCache.Entry entry = testObject.get("File:A.jpg");
+
+        assertEquals(42, entry.getRevisionId());
+        assertTrue(entry.isFresh());
+        assertEquals(Collections.singletonList("Bridges"), entry.getCategories());
+        assertEquals(Collections.singletonMap("en", "A bridge"), entry.getDescriptions());
+        assertEquals("cc-by-sa-4.0", entry.getLicense());
+        assertEquals(47.5, entry.getCoordinates().getLatitude(), 0);
+        assertNull(testObject.get("File:B.jpg"));
+    }
+
+    @Test
+    public void newerRevisionReplacesOlder() {
+        testObject.put("File:A.jpg", new MediaMetadataCache.Entry(42,
+                Collections.singletonList("Old"), Collections.emptyMap(), null, null));
+        testObject.put("File:A.jpg", new MediaMetadataCache.Entry(43,
+                Collections.singletonList("New"), Collections.emptyMap(), null, null));
+
+        MediaMetadataCache.Entry entry = testObject.get("File:A.jpg");
+
+        assertEquals(43, entry.getRevisionId());
+        assertEquals(Collections.singletonList("New"), entry.getCategories());
+        assertNull(entry.getCoordinates());
+    }
+
+    @Test
+    public void removedEntryIsGone() {
+        testObject.put("File:A.jpg", new MediaMetadataCache.Entry(42,
+                Collections.singletonList("Bridges"), Collections.emptyMap(), null, null));
+        testObject.put("File:B.jpg", new MediaMetadataCache.Entry(43,
+                Collections.singletonList("Rivers"), Collections.emptyMap(), null, null));
+
+        testObject.remove("File:A.jpg");
+
+        assertNull(testObject.get("File:A.jpg"));
+        assertEquals(43, testObject.get("File:B.jpg").getRevisionId());
+    }
+
+    @Test
+    public void freshEntrySkipsNetwork() throws Exception {
+        testObject.put("File:A.jpg", new MediaMetadataCache.Entry(42,
+                Collections.singletonList("Bridges"), Collections.emptyMap(), "cc0", null));
+        MediaWikiApi mwApi = mock(MediaWikiApi.class);
+        MediaDataExtractor extractor = new MediaDataExtractor(mwApi, testObject);
+
+        extractor.fetch("File:A.jpg", null);
+        Media media = new Media("File:A.jpg");
+        extractor.fill(media);
+
+        verifyZeroInteractions(mwApi);
+        assertEquals(Collections.singletonList("Bridges"), media.getCategories());
+        assertEquals("cc0", media.getLicense());
+    }
+}
@@ -0,0 +1,98 @@
+package fr.free.nrw.commons;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.util.Locale;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Compares the single pass extractor with the previous approach of building a DOM and
+ * scanning it once for each of information, location, self and every known license.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class TemplateExtractorBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 1000;
+
+    @Test
+    public void singlePassVersusDomScans() throws Exception {
+        LicenseList licenseList = new LicenseList(RuntimeEnvironment.application.getResources());
+        String parseTree = largeParseTree();
+
+        Benchmarks.assertFaster("Template extraction", WARMUP_ITERATIONS, MEASURED_ITERATIONS,
+                () -> singlePass(licenseList, parseTree),
+                () -> domScans(licenseList, parseTree));
+    }
+
+    private static String singlePass(LicenseList licenseList, String parseTree) throws Exception {
+        TemplateExtractor extractor = new TemplateExtractor(licenseList);
+        extractor.extract(parseTree);
+        return extractor.getLicense();
+    }
+
+    // The lookups MediaDataExtractor used to make, down to a PageTitle per node visited
+    private static String domScans(LicenseList licenseList, String parseTree) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(parseTree.getBytes("UTF-8")));
+        Element root = doc.getDocumentElement();
+        findTemplate(root, "information");
+        findTemplate(root, "location");
+        if (findTemplate(root, "self") != null) {
+            throw new AssertionError("Benchmark input has no self template");
+        }
+        for (License license : licenseList.values()) {
+            if (findTemplate(root, license.getTemplate()) != null) {
+                return license.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static Node findTemplate(Element parentNode, String name) {
+        String title = new PageTitle(name).getDisplayText();
+        NodeList nodes = parentNode.getChildNodes();
+        for (int i = 0, length = nodes.getLength(); i < length; i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeName().equals("template")) {
+                String foundTitle = node.getFirstChild().getTextContent().trim();
+                if (title.equals(new PageTitle(foundTitle).getDisplayText())) {
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    // A description in many languages followed by a long tail of maintenance templates,
+    // with the license last as it often is on real file pages
+    private static String largeParseTree() {
+        StringBuilder tree = new StringBuilder("<root><template><title>Information</title>"
+                + "<part><name>Description</name>=<value>");
+        for (String lang : Locale.getISOLanguages()) {
+            tree.append("<template><title>").append(lang).append("</title>")
+                    .append("<part><name index=\"1\"/><value>Description in ").append(lang)
+                    .append("</value></part></template>");
+        }
+        tree.append("</value></part></template>\n<template><title>Location</title>"
+                + "<part><name index=\"1\"/><value>47.5</value></part>"
+                + "<part><name index=\"2\"/><value>19.05</value></part></template>\n");
+        for (int i = 0; i < 50; i++) {
+            tree.append("<template><title>Maintenance template ").append(i).append("</title>")
+                    .append("<part><name>reason</name>=<value>check</value></part></template>\n");
+        }
+        tree.append("<template><title>cc-by-sa-4.0</title></template>\n</root>");
+        return tree.toString();
+    }
+}
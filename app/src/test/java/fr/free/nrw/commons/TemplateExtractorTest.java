@@ -0,0 +1,89 @@
+package fr.free.nrw.commons;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.free.nrw.commons.location.LatLng;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class TemplateExtractorTest {
+
+    static final String PARSE_TREE = "<root>"
+            + "<template><title>Information\n</title>"
+            + "<part><name>Description</name>=<value>Some text "
+            + "<template><title>en</title><part><name index=\"1\"/><value>A bridge</value></part></template>"
+            + "<template><title>de</title><part><name>1</name>=<value>Eine Br&#252;cke</value></part></template>"
+            + "<template><title>Unknown template</title></template>"
+            + "\n</value></part>"
+            + "<part><name>Author</name>=<value>[[User:Example]]</value></part>"
+            + "</template>\n"
+            + "<template><title>Location</title>"
+            + "<part><name index=\"1\"/><value>47.50111007666667</value></part>"
+            + "<part><name index=\"2\"/><value>19.055700301944444</value></part>"
+            + "</template>\n"
+            + "<template><title>cc-zero</title></template>\n"
+            + "[[Category:Bridges]]"
+            + "</root>";
+
+    private LicenseList licenseList;
+
+    @Before
+    public void setUp() {
+        licenseList = new LicenseList(RuntimeEnvironment.application.getResources());
+    }
+
+    @Test
+    public void extractsEverythingInOnePass() throws Exception {
+        TemplateExtractor extractor = new TemplateExtractor(licenseList);
+        extractor.extract(PARSE_TREE);
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("en", "A bridge");
+        expected.put("de", "Eine Brücke");
+        expected.put("default", "Some text \n");
+        assertEquals(expected, extractor.getDescriptions());
+        LatLng coordinates = extractor.getCoordinates();
+        assertEquals(47.50111007666667, coordinates.getLatitude(), 0);
+        assertEquals(19.055700301944444, coordinates.getLongitude(), 0);
+        assertEquals("cc-zero", extractor.getLicense());
+    }
+
+    @Test
+    public void selfParameterWinsOverLicenseTemplates() throws Exception {
+        TemplateExtractor extractor = new TemplateExtractor(licenseList);
+        extractor.extract("<root><template><title>Cc-zero</title></template>"
+                + "<template><title>self</title><part><name index=\"1\"/><value>Cc-by-sa-4.0</value></part></template>"
+                + "</root>");
+
+        assertEquals("cc-by-sa-4.0", extractor.getLicense());
+        assertNull(extractor.getCoordinates());
+        assertEquals(0, extractor.getDescriptions().size());
+    }
+
+    @Test
+    public void unknownSelfLicenseIsKeptVerbatim() throws Exception {
+        TemplateExtractor extractor = new TemplateExtractor(licenseList);
+        extractor.extract("<root><template><title>Self</title>"
+                + "<part><name index=\"1\"/><value>GFDL</value></part></template></root>");
+
+        assertEquals("GFDL", extractor.getLicense());
+    }
+
+    @Test
+    public void normalizeTitleMatchesPageTitle() {
+        for (String title : new String[]{"information", " Location ", "cc_by_sa", "Template:self", "Self"}) {
+            assertEquals(new PageTitle(title).getDisplayText(), TemplateExtractor.normalizeTitle(title));
+        }
+    }
+}
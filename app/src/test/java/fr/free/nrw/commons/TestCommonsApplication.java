@@ -9,6 +9,7 @@ import com.squareup.leakcanary.RefWatcher;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import dagger.Lazy;
 import fr.free.nrw.commons.auth.AccountUtil;
 import fr.free.nrw.commons.auth.SessionManager;
 import fr.free.nrw.commons.caching.CacheController;
@@ -20,6 +21,8 @@ import fr.free.nrw.commons.location.LocationServiceManager;
 import fr.free.nrw.commons.mwapi.MediaWikiApi;
 import fr.free.nrw.commons.nearby.NearbyPlaces;
 import fr.free.nrw.commons.upload.UploadController;
+import fr.free.nrw.commons.utils.InstrumentedThreadPoolExecutor;
+import okhttp3.OkHttpClient;
 
 public class TestCommonsApplication extends CommonsApplication {
 
@@ -79,7 +82,7 @@ public class TestCommonsApplication extends CommonsApplication {
                         }
 
                         @Override
-                        public UploadController providesUploadController(Context context, SessionManager sessionManager, SharedPreferences sharedPreferences) {
+                        public UploadController providesUploadController(Context context, SessionManager sessionManager, SharedPreferences sharedPreferences, InstrumentedThreadPoolExecutor ioExecutor) {
                             return uploadController;
                         }
 
@@ -89,7 +92,7 @@ public class TestCommonsApplication extends CommonsApplication {
                         }
 
                         @Override
-                        public MediaWikiApi provideMediaWikiApi(Context context, SharedPreferences sharedPreferences) {
+                        public MediaWikiApi provideMediaWikiApi(Context context, SharedPreferences sharedPreferences, Lazy<OkHttpClient> okHttpClient) {
                             return mediaWikiApi;
                         }
 
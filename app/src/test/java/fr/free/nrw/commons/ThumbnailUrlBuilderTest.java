@@ -0,0 +1,44 @@
+package fr.free.nrw.commons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ThumbnailUrlBuilderTest {
+
+    @Test
+    public void widthIsRoundedUpToBucket() {
+        assertEquals(120, ThumbnailUrlBuilder.bucketWidth(1));
+        assertEquals(640, ThumbnailUrlBuilder.bucketWidth(640));
+        assertEquals(800, ThumbnailUrlBuilder.bucketWidth(641));
+        assertEquals(1920, ThumbnailUrlBuilder.bucketWidth(5000));
+    }
+
+    @Test
+    public void bitmapThumbnailUsesHashedPath() {
+        // md5("Example.jpg") = a91fe217...
+        assertEquals(BuildConfig.IMAGE_URL_BASE + "/thumb/a/a9/Example.jpg/640px-Example.jpg",
+                ThumbnailUrlBuilder.thumbnailUrl("File:Example.jpg", 640));
+    }
+
+    @Test
+    public void namespaceAndSpacesAreNormalized() {
+        assertEquals(ThumbnailUrlBuilder.thumbnailUrl("File:Example.jpg", 500),
+                ThumbnailUrlBuilder.thumbnailUrl("example.jpg", 640));
+        assertEquals(ThumbnailUrlBuilder.thumbnailUrl("File:My_file.png", 640),
+                ThumbnailUrlBuilder.thumbnailUrl("File:My file.png", 640));
+    }
+
+    @Test
+    public void vectorThumbnailIsRasterized() {
+        assertEquals(BuildConfig.IMAGE_URL_BASE + "/thumb/8/84/Example.svg/640px-Example.svg.png",
+                ThumbnailUrlBuilder.thumbnailUrl("File:Example.svg", 640));
+    }
+
+    @Test
+    public void unknownTypeIsNotDerived() {
+        assertNull(ThumbnailUrlBuilder.thumbnailUrl("File:Example.xyz", 640));
+        assertNull(ThumbnailUrlBuilder.thumbnailUrl("File:Example", 640));
+    }
+}
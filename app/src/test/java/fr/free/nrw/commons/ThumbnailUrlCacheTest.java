@@ -0,0 +1,68 @@
+package fr.free.nrw.commons;
+
+import android.support.v4.util.LruCache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import fr.free.nrw.commons.data.DBOpenHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class ThumbnailUrlCacheTest {
+
+    private DBOpenHelper dbOpenHelper;
+    private ThumbnailUrlCache testObject;
+
+    @Before
+    public void setUp() {
+        dbOpenHelper = new DBOpenHelper(RuntimeEnvironment.application);
+        testObject = new ThumbnailUrlCache(dbOpenHelper, new LruCache<>(16));
+    }
+
+    @Test
+    public void storedUrlSurvivesNewMemoryLevel() {
+        testObject.put(Collections.singletonMap("File:A.jpg", "https://example.org/a"), 640);
+        assertEquals("https://example.org/a", testObject.getFromMemory("File:A.jpg", 640));
+
+        ThumbnailUrlCache coldStart = new ThumbnailUrlCache(dbOpenHelper, new LruCache<>(16));
+        assertNull(coldStart.getFromMemory("File:A.jpg", 640));
+
+        Map<String, String> urls = coldStart.getFromDisk(Arrays.asList("File:A.jpg", "File:B.jpg"), 640);
+
+        assertEquals(Collections.singletonMap("File:A.jpg", "https://example.org/a"), urls);
+        assertEquals("https://example.org/a", coldStart.getFromMemory("File:A.jpg", 640));
+        assertEquals(1, coldStart.getMemoryHitCount());
+        assertEquals(1, coldStart.getDiskHitCount());
+        assertEquals(1, coldStart.getMissCount());
+    }
+
+    @Test
+    public void widthIsPartOfTheKey() {
+        testObject.put(Collections.singletonMap("File:A.jpg", "https://example.org/a"), 640);
+
+        assertNull(testObject.getFromMemory("File:A.jpg", 320));
+        assertTrue(testObject.getFromDisk(Collections.singletonList("File:A.jpg"), 320).isEmpty());
+    }
+
+    @Test
+    public void expiredUrlIsNotReturned() {
+        long expired = System.currentTimeMillis() - ThumbnailUrlCache.TTL_MILLIS - 1;
+        testObject.put(Collections.singletonMap("File:A.jpg", "https://example.org/a"), 640, expired);
+
+        ThumbnailUrlCache coldStart = new ThumbnailUrlCache(dbOpenHelper, new LruCache<>(16));
+        assertTrue(coldStart.getFromDisk(Collections.singletonList("File:A.jpg"), 640).isEmpty());
+    }
+}
@@ -0,0 +1,120 @@
+package fr.free.nrw.commons;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.free.nrw.commons.mwapi.MediaWikiApi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class ThumbnailUrlResolverTest {
+
+    @Mock
+    private MediaWikiApi mwApi;
+    @Mock
+    private ThumbnailUrlCache cache;
+
+    private ThumbnailUrlResolver testObject;
+    private final List<Collection<String>> requestedBatches = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        testObject = new ThumbnailUrlResolver(mwApi, cache, Runnable::run, Runnable::run);
+        when(cache.getFromDisk(anyCollection(), anyInt())).thenReturn(new HashMap<>());
+        when(mwApi.findThumbnailsByFilenames(anyCollection())).thenAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Collection<String> titles = (Collection<String>) invocation.getArguments()[0];
+            requestedBatches.add(new ArrayList<>(titles));
+            Map<String, String> urls = new HashMap<>();
+            for (String title : titles) {
+                if (!title.equals("File:Missing.jpg")) {
+                    urls.put(title, "https://example.org/" + title);
+                }
+            }
+            return urls;
+        });
+    }
+
+    @Test
+    public void requestsWithinWindowShareOneQuery() throws Exception {
+        Map<String, String> results = new HashMap<>();
+        for (String title : Arrays.asList("File:A.jpg", "File:B.jpg", "File:Missing.jpg")) {
+            testObject.resolve(title, url -> results.put(title, url));
+        }
+        testObject.resolve("File:A.jpg", url -> results.put("again", url));
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(mwApi, times(1)).findThumbnailsByFilenames(anyCollection());
+        assertEquals(Arrays.asList("File:A.jpg", "File:B.jpg", "File:Missing.jpg"), requestedBatches.get(0));
+        assertEquals("https://example.org/File:A.jpg", results.get("File:A.jpg"));
+        assertEquals("https://example.org/File:A.jpg", results.get("again"));
+        assertEquals("https://example.org/File:B.jpg", results.get("File:B.jpg"));
+        assertTrue(results.containsKey("File:Missing.jpg"));
+        assertNull(results.get("File:Missing.jpg"));
+    }
+
+    @Test
+    public void storedUrlsSkipTheNetwork() throws Exception {
+        Map<String, String> stored = new HashMap<>();
+        stored.put("File:A.jpg", "https://example.org/stored");
+        when(cache.getFromDisk(anyCollection(), anyInt())).thenReturn(stored);
+        Map<String, String> results = new HashMap<>();
+        testObject.resolve("File:A.jpg", url -> results.put("File:A.jpg", url));
+        testObject.resolve("File:B.jpg", url -> results.put("File:B.jpg", url));
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertEquals(Collections.singletonList("File:B.jpg"), requestedBatches.get(0));
+        assertEquals("https://example.org/stored", results.get("File:A.jpg"));
+        assertEquals("https://example.org/File:B.jpg", results.get("File:B.jpg"));
+        verify(cache).put(Collections.singletonMap("File:B.jpg", "https://example.org/File:B.jpg"),
+                ThumbnailUrlResolver.THUMB_WIDTH);
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutWaiting() throws Exception {
+        for (int i = 0; i < ThumbnailUrlResolver.MAX_BATCH_SIZE; i++) {
+            testObject.resolve("File:" + i + ".jpg", url -> { });
+        }
+
+        verify(mwApi, times(1)).findThumbnailsByFilenames(anyCollection());
+        assertEquals(ThumbnailUrlResolver.MAX_BATCH_SIZE, requestedBatches.get(0).size());
+    }
+
+    @Test
+    public void cancelledLookupIsNotSent() throws Exception {
+        ThumbnailUrlResolver.Callback callback = url -> { throw new AssertionError("cancelled"); };
+        testObject.resolve("File:A.jpg", callback);
+        testObject.cancel("File:A.jpg", callback);
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        verify(mwApi, never()).findThumbnailsByFilenames(anyCollection());
+    }
+}
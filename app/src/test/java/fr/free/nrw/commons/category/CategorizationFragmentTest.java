@@ -0,0 +1,95 @@
+package fr.free.nrw.commons.category;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+
+import static fr.free.nrw.commons.category.CategorizationFragment.SEARCH_DEBOUNCE_MILLIS;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class CategorizationFragmentTest {
+
+    private TestScheduler scheduler;
+    private PublishSubject<String> filters;
+    private CategorySearchMetrics metrics;
+    private List<String> disposed;
+    private TestObserver<String> testObserver;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        filters = PublishSubject.create();
+        metrics = new CategorySearchMetrics();
+        disposed = new ArrayList<>();
+        // Each search is one request answering after a second
+        testObserver = CategorizationFragment.searches(filters, scheduler, scheduler, metrics,
+                filter -> Observable.timer(1, TimeUnit.SECONDS, scheduler)
+                        .map(tick -> filter)
+                        .doOnSubscribe(disposable -> metrics.requestSent())
+                        .doOnDispose(() -> disposed.add(filter)))
+                .test();
+    }
+
+    @Test
+    public void typingIsDebounced() {
+        filters.onNext("B");
+        filters.onNext("Br");
+        filters.onNext("Bri");
+        scheduler.advanceTimeBy(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        testObserver.assertValue("Bri");
+        assertEquals(1, metrics.getQueryCount());
+        assertEquals(1, metrics.getCompletedQueryCount());
+        assertEquals(1, metrics.getRequestCount());
+    }
+
+    @Test
+    public void newFilterDisposesOfPreviousSearch() {
+        filters.onNext("Brid");
+        scheduler.advanceTimeBy(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        filters.onNext("Bridge");
+        scheduler.advanceTimeBy(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+
+        assertEquals(Collections.singletonList("Brid"), disposed);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        testObserver.assertValue("Bridge");
+        assertEquals(2, metrics.getQueryCount());
+        assertEquals(1, metrics.getCompletedQueryCount());
+        assertEquals(1, metrics.getCancelledQueryCount());
+        assertEquals(2, metrics.getRequestCount());
+    }
+
+    @Test
+    public void sameFilterIsNotSearchedAgain() {
+        filters.onNext("Bridge");
+        scheduler.advanceTimeBy(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        filters.onNext("Bridges");
+        filters.onNext("Bridge");
+        scheduler.advanceTimeBy(SEARCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        testObserver.assertValue("Bridge");
+        assertEquals(Collections.emptyList(), disposed);
+        assertEquals(1, metrics.getQueryCount());
+        assertEquals(1, metrics.getRequestCount());
+    }
+}
@@ -69,6 +69,7 @@ public class CategoryDaoTest {
     public void createTable() {
         Table.onCreate(database);
         verify(database).execSQL(Table.CREATE_TABLE_STATEMENT);
+        verify(database).execSQL(Table.CREATE_FRECENCY_INDEX);
     }
 
     @Test
@@ -77,6 +78,7 @@ public class CategoryDaoTest {
         InOrder inOrder = Mockito.inOrder(database);
         inOrder.verify(database).execSQL(Table.DROP_TABLE_STATEMENT);
         inOrder.verify(database).execSQL(Table.CREATE_TABLE_STATEMENT);
+        inOrder.verify(database).execSQL(Table.CREATE_FRECENCY_INDEX);
     }
 
     @Test
@@ -103,7 +105,7 @@ public class CategoryDaoTest {
     @Test
     public void migrateTableVersionFrom_v4_to_v5() {
         Table.onUpdate(database, 4, 5);
-        verify(database).execSQL(Table.CREATE_TABLE_STATEMENT);
+        verify(database).execSQL(Table.CREATE_V5_TABLE_STATEMENT);
     }
 
     @Test
@@ -113,6 +115,45 @@ public class CategoryDaoTest {
         verifyZeroInteractions(database);
     }
 
+    @Test
+    public void migrateTableVersionFrom_v14_to_v15() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                Table.COLUMN_ID,
+                Table.COLUMN_LAST_USED,
+                Table.COLUMN_TIMES_USED
+        }, 1);
+        cursor.addRow(Arrays.asList("7", "123", "2"));
+        when(database.query(anyString(), any(String[].class), anyString(), any(String[].class),
+                anyString(), anyString(), anyString())).thenReturn(cursor);
+
+        Table.onUpdate(database, 14, 15);
+
+        InOrder inOrder = Mockito.inOrder(database);
+        inOrder.verify(database).execSQL(Table.ADD_FRECENCY_FIELD);
+        inOrder.verify(database).update(eq(Table.TABLE_NAME), captor.capture(),
+                eq(Table.COLUMN_ID + " = ?"), queryCaptor.capture());
+        inOrder.verify(database).execSQL(Table.CREATE_FRECENCY_INDEX);
+        assertEquals(Category.frecency(123, 2), captor.getValue().getAsDouble(Table.COLUMN_FRECENCY), 0);
+        assertEquals("7", queryCaptor.getValue()[0]);
+    }
+
+    @Test
+    public void frecencyRanksFrequentUseAgainstRecentUse() {
+        long now = System.currentTimeMillis();
+        long halfLife = Category.FRECENCY_HALF_LIFE_MILLIS;
+        Category usedOnce = new Category(null, "once", new Date(now), 0);
+        usedOnce.incTimesUsed();
+        // Four uses two half lives ago weigh as much as one use now
+        Category usedOften = new Category(null, "often", new Date(now - 2 * halfLife), 4);
+        Category usedOftenLongAgo = new Category(null, "long ago", new Date(now - 3 * halfLife), 4);
+
+        assertEquals(usedOnce.getFrecency(), usedOften.getFrecency(), 0.01);
+        assertTrue(usedOnce.getFrecency() > usedOftenLongAgo.getFrecency());
+
+        usedOftenLongAgo.incTimesUsed();
+        assertTrue(usedOftenLongAgo.getFrecency() > usedOnce.getFrecency());
+    }
+
     @Test
     public void createFromCursor() {
         MatrixCursor cursor = createCursor(1);
@@ -123,6 +164,7 @@ public class CategoryDaoTest {
         assertEquals("foo", category.getName());
         assertEquals(123, category.getLastUsed().getTime());
         assertEquals(2, category.getTimesUsed());
+        assertEquals(3.5, category.getFrecency(), 0);
     }
 
     @Test
@@ -135,10 +177,11 @@ public class CategoryDaoTest {
 
         verify(client).update(eq(category.getContentUri()), captor.capture(), isNull(String.class), isNull(String[].class));
         ContentValues cv = captor.getValue();
-        assertEquals(3, cv.size());
+        assertEquals(4, cv.size());
         assertEquals(category.getName(), cv.getAsString(Table.COLUMN_NAME));
         assertEquals(category.getLastUsed().getTime(), cv.getAsLong(Table.COLUMN_LAST_USED).longValue());
         assertEquals(category.getTimesUsed(), cv.getAsInteger(Table.COLUMN_TIMES_USED).intValue());
+        assertEquals(category.getFrecency(), cv.getAsDouble(Table.COLUMN_FRECENCY), 0);
     }
 
     @Test
@@ -151,10 +194,11 @@ public class CategoryDaoTest {
 
         verify(client).insert(eq(BASE_URI), captor.capture());
         ContentValues cv = captor.getValue();
-        assertEquals(3, cv.size());
+        assertEquals(4, cv.size());
         assertEquals(category.getName(), cv.getAsString(Table.COLUMN_NAME));
         assertEquals(category.getLastUsed().getTime(), cv.getAsLong(Table.COLUMN_LAST_USED).longValue());
         assertEquals(category.getTimesUsed(), cv.getAsInteger(Table.COLUMN_TIMES_USED).intValue());
+        assertEquals(category.getFrecency(), cv.getAsDouble(Table.COLUMN_FRECENCY), 0);
         assertEquals(contentUri, category.getContentUri());
     }
 
@@ -257,11 +301,11 @@ public class CategoryDaoTest {
         assertEquals("foo", result.get(0));
 
         verify(client).query(
-                eq(BASE_URI),
+                eq(CategoryContentProvider.uriWithLimit(10)),
                 eq(Table.ALL_FIELDS),
                 isNull(String.class),
                 queryCaptor.capture(),
-                eq(Table.COLUMN_LAST_USED + " DESC")
+                eq(Table.COLUMN_FRECENCY + " DESC")
         );
         assertEquals(0, queryCaptor.getValue().length);
     }
@@ -281,11 +325,12 @@ public class CategoryDaoTest {
                 Table.COLUMN_ID,
                 Table.COLUMN_NAME,
                 Table.COLUMN_LAST_USED,
-                Table.COLUMN_TIMES_USED
+                Table.COLUMN_TIMES_USED,
+                Table.COLUMN_FRECENCY
         }, rowCount);
 
         for (int i = 0; i < rowCount; i++) {
-            cursor.addRow(Arrays.asList("1", "foo", "123", "2"));
+            cursor.addRow(Arrays.asList("1", "foo", "123", "2", "3.5"));
         }
 
         return cursor;
@@ -0,0 +1,103 @@
+package fr.free.nrw.commons.category;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import fr.free.nrw.commons.data.DBOpenHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class CategoryIndexTest {
+
+    private DBOpenHelper dbOpenHelper;
+    private CategoryIndex testObject;
+
+    @Before
+    public void setUp() {
+        dbOpenHelper = new DBOpenHelper(RuntimeEnvironment.application);
+        testObject = new CategoryIndex(dbOpenHelper);
+    }
+
+    @Test
+    public void matchesPrefixesOfAnyWord() {
+        testObject.addAll(Arrays.asList("Bridges in Paris", "Paris Metro", "Parks in London", "Église Saint-Eustache"));
+
+        assertEquals(Arrays.asList("Bridges in Paris", "Paris Metro"), sorted(testObject.search("pari", 10)));
+        assertEquals(Collections.singletonList("Bridges in Paris"), testObject.search("Paris bri", 10));
+        assertEquals(Collections.singletonList("Église Saint-Eustache"), testObject.search("égli", 10));
+        assertEquals(Collections.singletonList("Église Saint-Eustache"), testObject.search("saint eus", 10));
+        assertTrue(testObject.search("Rome", 10).isEmpty());
+    }
+
+    @Test
+    public void queryOperatorsAreMatchedAsText() {
+        testObject.addAll(Arrays.asList("Cats NOT sleeping", "Dogs"));
+
+        assertEquals(Collections.singletonList("Cats NOT sleeping"), testObject.search("cats \"NOT", 10));
+        assertTrue(testObject.search("\"*-", 10).isEmpty());
+        assertEquals("cats* not*", CategoryIndex.matchExpression("Cats \"NOT*"));
+    }
+
+    @Test
+    public void usedCategoriesRankFirst() {
+        testObject.addAll(Arrays.asList("Paris Metro", "Paris"));
+        testObject.addAll(Collections.singletonList("Paris Metro"));
+        testObject.markUsed("Paris by night");
+
+        assertEquals(Arrays.asList("Paris by night", "Paris Metro", "Paris"), testObject.search("paris", 10));
+        assertEquals(Arrays.asList("Paris by night", "Paris Metro"), testObject.search("paris", 2));
+    }
+
+    @Test
+    public void oldestCategoriesAreDropped() {
+        testObject.markUsed("Used long ago");
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i <= CategoryIndex.MAX_ENTRIES; i++) {
+            names.add("Category " + i);
+        }
+        testObject.addAll(names);
+
+        assertEquals(Collections.singletonList("Used long ago"), testObject.search("used", 10));
+        assertEquals(CategoryIndex.MAX_ENTRIES - 1, testObject.search("category", Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void upgradeSeedsTheIndexWithRecentCategories() {
+        SQLiteDatabase db = dbOpenHelper.getWritableDatabase();
+        db.execSQL(CategoryIndex.FullTextTable.DROP_TABLE_STATEMENT);
+        db.execSQL(CategoryIndex.Table.DROP_TABLE_STATEMENT);
+        ContentValues cv = new ContentValues();
+        cv.put(CategoryDao.Table.COLUMN_NAME, "Sunsets in Paris");
+        cv.put(CategoryDao.Table.COLUMN_LAST_USED, 123L);
+        cv.put(CategoryDao.Table.COLUMN_TIMES_USED, 2);
+        db.insert(CategoryDao.Table.TABLE_NAME, null, cv);
+
+        CategoryIndex.Table.onUpdate(db, 12, 13);
+        CategoryIndex.FullTextTable.onUpdate(db, 12, 13);
+        testObject.addAll(Collections.singletonList("Paris"));
+
+        assertEquals(Arrays.asList("Sunsets in Paris", "Paris"), testObject.search("paris", 10));
+    }
+
+    private static List<String> sorted(List<String> names) {
+        Collections.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,154 @@
+package fr.free.nrw.commons.category;
+
+import android.content.ContentValues;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import fr.free.nrw.commons.data.DBOpenHelper;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+
+import static fr.free.nrw.commons.category.CategorySearchCache.ALL_CATEGORIES;
+import static fr.free.nrw.commons.category.CategorySearchCache.SEARCH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class CategorySearchCacheTest {
+
+    private static final int LIMIT = 25;
+
+    private DBOpenHelper dbOpenHelper;
+    private CategorySearchCache testObject;
+
+    @Before
+    public void setUp() {
+        dbOpenHelper = new DBOpenHelper(RuntimeEnvironment.application);
+        testObject = new CategorySearchCache(dbOpenHelper);
+    }
+
+    @Test
+    public void searchesAreKeyedByTypeAndTerm() {
+        testObject.put(SEARCH, "bridges", Arrays.asList("Bridges in Paris", "Bridges"), LIMIT);
+
+        assertEquals(Arrays.asList("Bridges in Paris", "Bridges"), testObject.get(SEARCH, "bridges"));
+        assertNull(testObject.get(ALL_CATEGORIES, "bridges"));
+        assertNull(testObject.get(SEARCH, "bridge"));
+    }
+
+    @Test
+    public void completePrefixAnswersLongerPrefixes() {
+        testObject.put(ALL_CATEGORIES, "pa", Arrays.asList("Panoramics", "Paris", "Paris by night", "Parks"), LIMIT);
+
+        assertEquals(Arrays.asList("Paris", "Paris by night"), testObject.get(ALL_CATEGORIES, "paris"));
+        assertEquals(Collections.singletonList("Paris by night"), testObject.get(ALL_CATEGORIES, "Paris_by"));
+        assertEquals(Collections.emptyList(), testObject.get(ALL_CATEGORIES, "Pax"));
+        assertNull(testObject.get(SEARCH, "paris"));
+        assertEquals(3, testObject.getPrefixHitCount());
+    }
+
+    @Test
+    public void closestPrefixIsUsed() {
+        testObject.put(ALL_CATEGORIES, "P", Arrays.asList("Panoramics", "Paris"), LIMIT);
+        testObject.put(ALL_CATEGORIES, "Pari", Arrays.asList("Paris", "Parisii"), LIMIT);
+
+        assertEquals(Arrays.asList("Paris", "Parisii"), testObject.get(ALL_CATEGORIES, "Paris"));
+    }
+
+    @Test
+    public void truncatedResultsDontAnswerLongerPrefixes() {
+        testObject.put(ALL_CATEGORIES, "P", Arrays.asList("Panoramics", "Paris"), 2);
+
+        assertNull(testObject.get(ALL_CATEGORIES, "Paris"));
+        assertNotNull(testObject.get(ALL_CATEGORIES, "p"));
+    }
+
+    @Test
+    public void emptyResultsAreNotStored() {
+        testObject.put(SEARCH, "zzz", Collections.emptyList(), LIMIT);
+
+        assertNull(testObject.get(SEARCH, "zzz"));
+    }
+
+    @Test
+    public void expiredResultsAreIgnored() {
+        testObject.put(SEARCH, "paris", Collections.singletonList("Paris"), LIMIT);
+        ContentValues cv = new ContentValues();
+        cv.put(CategorySearchCache.Table.COLUMN_FETCHED,
+                System.currentTimeMillis() - CategorySearchCache.TTL_MILLIS - 1);
+        dbOpenHelper.getWritableDatabase().update(CategorySearchCache.Table.TABLE_NAME, cv, null, null);
+
+        assertNull(testObject.get(SEARCH, "paris"));
+    }
+
+    @Test
+    public void leastRecentlyUsedResultsAreEvicted() {
+        for (int i = 0; i < CategorySearchCache.MAX_ENTRIES; i++) {
+            testObject.put(SEARCH, "term " + i, Collections.singletonList("Category " + i), LIMIT);
+        }
+        ContentValues cv = new ContentValues();
+        cv.put(CategorySearchCache.Table.COLUMN_LAST_USED, 0);
+        dbOpenHelper.getWritableDatabase().update(CategorySearchCache.Table.TABLE_NAME, cv,
+                CategorySearchCache.Table.COLUMN_TERM + " = ?", new String[]{"term 0"});
+        testObject.put(SEARCH, "one more", Collections.singletonList("Category"), LIMIT);
+
+        assertNull(testObject.get(SEARCH, "term 0"));
+        assertNotNull(testObject.get(SEARCH, "term 1"));
+        assertNotNull(testObject.get(SEARCH, "one more"));
+    }
+
+    @Test
+    public void hitRatioCountsPrefixHits() {
+        testObject.put(ALL_CATEGORIES, "Pa", Collections.singletonList("Paris"), LIMIT);
+
+        testObject.get(ALL_CATEGORIES, "Pa");
+        testObject.get(ALL_CATEGORIES, "Par");
+        testObject.get(ALL_CATEGORIES, "Lo");
+        testObject.get(SEARCH, "Pa");
+
+        assertEquals(1, testObject.getHitCount());
+        assertEquals(1, testObject.getPrefixHitCount());
+        assertEquals(2, testObject.getMissCount());
+        assertEquals(0.5, testObject.getHitRatio(), 0);
+    }
+
+    @Test
+    public void completedRequestIsStoredAndNotSentAgain() {
+        AtomicInteger requests = new AtomicInteger();
+
+        testObject.search(ALL_CATEGORIES, "Pa", LIMIT, () -> {
+            requests.incrementAndGet();
+            return Observable.just("Paris", "Parks");
+        }).test().assertValues("Paris", "Parks").assertComplete();
+        testObject.search(ALL_CATEGORIES, "Par", LIMIT, () -> {
+            requests.incrementAndGet();
+            return Observable.empty();
+        }).test().assertValues("Paris", "Parks").assertComplete();
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void requestFailingPartWayIsNotStored() {
+        TestObserver<String> testObserver = testObject.search(ALL_CATEGORIES, "Pa", LIMIT,
+                () -> Observable.just("Paris").concatWith(Observable.error(new IOException()))).test();
+
+        testObserver.assertError(IOException.class);
+        assertNull(testObject.get(ALL_CATEGORIES, "Pa"));
+        assertNull(testObject.get(ALL_CATEGORIES, "Paris"));
+    }
+}
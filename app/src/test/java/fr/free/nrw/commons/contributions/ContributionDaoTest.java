@@ -132,6 +132,32 @@ public class ContributionDaoTest {
         inOrder.verify(database).execSQL(Table.SET_DEFAULT_LICENSE);
     }
 
+    @Test
+    public void upgradeDatabase_v6_to_v7() {
+        Table.onUpdate(database, 6, 7);
+
+        InOrder inOrder = Mockito.inOrder(database);
+        inOrder.verify(database).execSQL(Table.ADD_FILEKEY_FIELD);
+        inOrder.verify(database).execSQL(Table.ADD_CHUNK_OFFSET_FIELD);
+        inOrder.verify(database).execSQL(Table.SET_DEFAULT_CHUNK_OFFSET);
+    }
+
+    @Test
+    public void upgradeDatabase_v7_to_v8() {
+        Table.onUpdate(database, 7, 8);
+
+        verify(database).execSQL(Table.ADD_SHA1_FIELD);
+    }
+
+    @Test
+    public void upgradeDatabase_v15_to_v16() {
+        Table.onUpdate(database, 15, 16);
+
+        InOrder inOrder = Mockito.inOrder(database);
+        inOrder.verify(database).execSQL(Table.ADD_LOCAL_MODIFIED_FIELD);
+        inOrder.verify(database).execSQL(Table.SET_DEFAULT_LOCAL_MODIFIED);
+    }
+
     @Test
     public void saveNewContribution_nonNullFields() throws Exception {
         when(client.insert(isA(Uri.class), isA(ContentValues.class))).thenReturn(contentUri);
@@ -158,6 +184,10 @@ public class ContributionDaoTest {
         assertEquals("desc", cv.getAsString(Table.COLUMN_DESCRIPTION));
         assertEquals("create", cv.getAsString(Table.COLUMN_CREATOR));
         assertEquals("007", cv.getAsString(Table.COLUMN_LICENSE));
+        assertEquals("stashkey", cv.getAsString(Table.COLUMN_FILEKEY));
+        assertEquals(1024L, cv.getAsLong(Table.COLUMN_CHUNK_OFFSET).longValue());
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", cv.getAsString(Table.COLUMN_SHA1));
+        assertEquals(1500000000000L, cv.getAsLong(Table.COLUMN_LOCAL_MODIFIED).longValue());
     }
 
     @Test
@@ -309,6 +339,31 @@ public class ContributionDaoTest {
         assertEquals(640, c.getWidth());
         assertEquals(480, c.getHeight());
         assertEquals("007", c.getLicense());
+        assertEquals("stashkey", c.getFileKey());
+        assertEquals(1024L, c.getChunkOffset());
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", c.getSha1());
+        assertEquals(1500000000000L, c.getLocalModified());
+    }
+
+    @Test
+    public void sha1IsFoundForUnchangedLocalFile() throws Exception {
+        MatrixCursor mc = new MatrixCursor(new String[]{Table.COLUMN_SHA1}, 1);
+        mc.addRow(Arrays.asList("da39a3ee5e6b4b0d3255bfef95601890afd80709"));
+        when(client.query(eq(BASE_URI), any(String[].class), any(String.class), any(String[].class), any(String.class)))
+                .thenReturn(mc);
+
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709",
+                testObject.getSha1ForLocalFile(Uri.parse(LOCAL_URI), 222L, 1500000000000L));
+
+        ArgumentCaptor<String[]> argsCaptor = ArgumentCaptor.forClass(String[].class);
+        verify(client).query(eq(BASE_URI), any(String[].class), any(String.class), argsCaptor.capture(), any(String.class));
+        assertEquals(Arrays.asList(LOCAL_URI, "222", "1500000000000"), Arrays.asList(argsCaptor.getValue()));
+    }
+
+    @Test
+    public void sha1IsNotLookedUpWithoutModificationTime() {
+        assertNull(testObject.getSha1ForLocalFile(Uri.parse(LOCAL_URI), 222L, 0));
+        verifyZeroInteractions(client);
     }
 
     @Test
@@ -347,7 +402,8 @@ public class ContributionDaoTest {
         MatrixCursor mc = new MatrixCursor(Table.ALL_FIELDS, 1);
         mc.addRow(Arrays.asList("111", "file", localUri, "image",
                 created, STATE_QUEUED, 222L, uploaded, 88L, SOURCE_GALLERY, "desc",
-                "create", multiple ? 1 : 0, 640, 480, "007"));
+                "create", multiple ? 1 : 0, 640, 480, "007", "stashkey", 1024L,
+                "da39a3ee5e6b4b0d3255bfef95601890afd80709", 1500000000000L));
         mc.moveToFirst();
         return mc;
     }
@@ -365,6 +421,10 @@ public class ContributionDaoTest {
         contribution.setTimestamp(new Date(321L));
         contribution.setWidth(640);
         contribution.setHeight(480);  // VGA should be enough for anyone, right?
+        contribution.setFileKey("stashkey");
+        contribution.setChunkOffset(1024L);
+        contribution.setSha1("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+        contribution.setLocalModified(1500000000000L);
         return contribution;
     }
 }
\ No newline at end of file
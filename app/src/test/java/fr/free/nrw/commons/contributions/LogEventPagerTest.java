@@ -0,0 +1,59 @@
+package fr.free.nrw.commons.contributions;
+
+import org.junit.Test;
+
+import static fr.free.nrw.commons.contributions.LogEventPager.MAX_LIMIT;
+import static fr.free.nrw.commons.contributions.LogEventPager.MAX_PAGE_BYTES;
+import static fr.free.nrw.commons.contributions.LogEventPager.MIN_LIMIT;
+import static fr.free.nrw.commons.contributions.LogEventPager.TARGET_PAGE_MILLIS;
+import static org.junit.Assert.assertEquals;
+
+public class LogEventPagerTest {
+
+    @Test
+    public void initialLimitIsClamped() {
+        assertEquals(MIN_LIMIT, new LogEventPager(1).getLimit());
+        assertEquals(MAX_LIMIT, new LogEventPager(10000).getLimit());
+    }
+
+    @Test
+    public void fastFullPageGrowsAtMostTwofold() {
+        LogEventPager pager = new LogEventPager(100);
+        pager.onPageLoaded(100, 10000, 10);
+        assertEquals(200, pager.getLimit());
+        pager.onPageLoaded(200, 20000, 10);
+        pager.onPageLoaded(400, 40000, 10);
+        assertEquals(MAX_LIMIT, pager.getLimit());
+    }
+
+    @Test
+    public void slowPageShrinks() {
+        LogEventPager pager = new LogEventPager(400);
+        pager.onPageLoaded(400, 40000, TARGET_PAGE_MILLIS * 4 / 3);
+        assertEquals(300, pager.getLimit());
+    }
+
+    @Test
+    public void largeResponseShrinksFastPage() {
+        LogEventPager pager = new LogEventPager(400);
+        pager.onPageLoaded(400, MAX_PAGE_BYTES * 4 / 3, 10);
+        assertEquals(300, pager.getLimit());
+    }
+
+    @Test
+    public void shortPageDoesNotGrow() {
+        LogEventPager pager = new LogEventPager(100);
+        pager.onPageLoaded(20, 2000, 10);
+        assertEquals(100, pager.getLimit());
+    }
+
+    @Test
+    public void failureHalves() {
+        LogEventPager pager = new LogEventPager(400);
+        pager.onPageFailed();
+        assertEquals(200, pager.getLimit());
+        pager.onPageFailed();
+        pager.onPageFailed();
+        assertEquals(MIN_LIMIT, pager.getLimit());
+    }
+}
@@ -0,0 +1,149 @@
+package fr.free.nrw.commons.contributions;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.RemoteException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import fr.free.nrw.commons.contributions.UploadedHashDao.Table;
+
+import static fr.free.nrw.commons.contributions.ContributionsContentProvider.HASHES_URI;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class UploadedHashDaoTest {
+
+    private static final String SHA1 = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+
+    @Mock
+    private ContentProviderClient client;
+    @Mock
+    private SQLiteDatabase database;
+    @Captor
+    private ArgumentCaptor<ContentValues> captor;
+
+    private UploadedHashDao testObject;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        testObject = new UploadedHashDao(() -> client);
+    }
+
+    @Test
+    public void createTable() {
+        Table.onCreate(database);
+        verify(database).execSQL(Table.CREATE_TABLE_STATEMENT);
+    }
+
+    @Test
+    public void deleteTable() {
+        Table.onDelete(database);
+        InOrder inOrder = Mockito.inOrder(database);
+        inOrder.verify(database).execSQL(Table.DROP_TABLE_STATEMENT);
+        inOrder.verify(database).execSQL(Table.CREATE_TABLE_STATEMENT);
+    }
+
+    @Test
+    public void migrateTableVersionFrom_v7_to_v8() {
+        Table.onUpdate(database, 7, 8);
+        // Table didnt exist before v9
+        verifyZeroInteractions(database);
+    }
+
+    @Test
+    public void migrateTableVersionFrom_v8_to_v9() {
+        Table.onUpdate(database, 8, 9);
+        InOrder inOrder = Mockito.inOrder(database);
+        inOrder.verify(database).execSQL(Table.CREATE_TABLE_STATEMENT);
+        inOrder.verify(database).execSQL(Table.BACKFILL_STATEMENT);
+    }
+
+    @Test
+    public void containsKnownHash() throws Exception {
+        MatrixCursor cursor = new MatrixCursor(new String[]{Table.COLUMN_SHA1}, 1);
+        cursor.addRow(Arrays.asList(SHA1));
+        when(client.query(any(), any(), anyString(), any(), any())).thenReturn(cursor);
+
+        assertTrue(testObject.contains(SHA1));
+        verify(client).query(eq(HASHES_URI), any(), anyString(), eq(new String[]{SHA1}), isNull(String.class));
+        verify(client).release();
+    }
+
+    @Test
+    public void containsUnknownHash() throws Exception {
+        when(client.query(any(), any(), anyString(), any(), any()))
+                .thenReturn(new MatrixCursor(new String[]{Table.COLUMN_SHA1}, 0));
+
+        assertFalse(testObject.contains(SHA1));
+    }
+
+    @Test
+    public void emptyHashIsNeverQueried() {
+        assertFalse(testObject.contains(""));
+        verifyZeroInteractions(client);
+    }
+
+    @Test
+    public void saveHash() throws Exception {
+        testObject.save(SHA1, "File:Foo.jpg");
+
+        verify(client).insert(eq(HASHES_URI), captor.capture());
+        ContentValues cv = captor.getValue();
+        assertEquals(SHA1, cv.getAsString(Table.COLUMN_SHA1));
+        assertEquals("File:Foo.jpg", cv.getAsString(Table.COLUMN_FILENAME));
+        verify(client).release();
+    }
+
+    @Test
+    public void deleteHash() throws Exception {
+        testObject.delete(SHA1);
+
+        verify(client).delete(eq(HASHES_URI), eq(Table.COLUMN_SHA1 + " = ?"), eq(new String[]{SHA1}));
+        verify(client).release();
+    }
+
+    @Test
+    public void deleteByFilenames() throws Exception {
+        testObject.deleteByFilenames(client, Arrays.asList("File:Foo.jpg", "File:Bar.jpg"));
+
+        ArgumentCaptor<String[]> argsCaptor = ArgumentCaptor.forClass(String[].class);
+        verify(client).delete(eq(HASHES_URI), eq(Table.COLUMN_FILENAME + " IN (?,?)"), argsCaptor.capture());
+        assertArrayEquals(new String[]{"File:Foo.jpg", "File:Bar.jpg"}, argsCaptor.getValue());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void saveTranslatesExceptions() throws Exception {
+        when(client.insert(isA(android.net.Uri.class), isA(ContentValues.class))).thenThrow(new RemoteException(""));
+        testObject.save(SHA1, "File:Foo.jpg");
+    }
+}
@@ -15,6 +15,8 @@ import org.robolectric.annotation.Config;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -201,6 +203,59 @@ public class ApacheHttpClientMediaWikiApiTest {
         assertFalse(result);
     }
 
+    @Test
+    public void existingFileNames_normalizedTitles() throws Exception {
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api batchcomplete=\"\"><query><normalized><n from=\"File:foo.jpg\" to=\"File:Foo.jpg\" /></normalized><pages><page _idx=\"-1\" ns=\"6\" title=\"File:Foo 2.jpg\" missing=\"\" imagerepository=\"\" /><page _idx=\"42\" pageid=\"42\" ns=\"6\" title=\"File:Foo.jpg\" imagerepository=\"local\"><imageinfo><ii timestamp=\"2017-01-01T00:00:00Z\" user=\"bar\" /></imageinfo></page></pages></query></api>"));
+
+        Set<String> result = testObject.existingFileNames(Arrays.asList("foo.jpg", "Foo 2.jpg"));
+
+        RecordedRequest request = assertBasicRequestParameters(server, "GET");
+        Map<String, String> params = parseQueryParams(request);
+        assertEquals("query", params.get("action"));
+        assertEquals("imageinfo", params.get("prop"));
+        assertEquals(2, params.get("titles").split("\\|").length);
+
+        assertEquals(Collections.singleton("foo.jpg"), result);
+    }
+
+    @Test
+    public void logEvents_continueAfterItems() throws Exception {
+        String body = "<?xml version=\"1.0\"?><api><query><logevents><item logid=\"1\" pageid=\"42\" title=\"File:Foo.jpg\" timestamp=\"2017-01-02T03:04:05Z\" /><item logid=\"2\" pageid=\"0\" title=\"File:Bar.jpg\" timestamp=\"2017-01-01T00:00:00Z\" /></logevents></query><query-continue><logevents lestart=\"2016-12-31T00:00:00Z\" /></query-continue></api>";
+        server.enqueue(new MockResponse().setBody(body));
+
+        LogEventResult result = testObject.logEvents("baz", "", null, 2);
+
+        RecordedRequest request = assertBasicRequestParameters(server, "GET");
+        Map<String, String> params = parseQueryParams(request);
+        assertEquals("xml", params.get("format"));
+        assertEquals("query", params.get("action"));
+        assertEquals("logevents", params.get("list"));
+        assertEquals("baz", params.get("leuser"));
+        assertEquals("2", params.get("lelimit"));
+
+        assertEquals(2, result.getLogEvents().size());
+        assertEquals("File:Foo.jpg", result.getLogEvents().get(0).getFilename());
+        assertFalse(result.getLogEvents().get(0).isDeleted());
+        assertTrue(result.getLogEvents().get(1).isDeleted());
+        assertEquals("2016-12-31T00:00:00Z", result.getQueryContinue());
+        assertEquals(body.length(), result.getResponseBytes());
+    }
+
+    @Test
+    public void allCategories_emitsEachCategory() throws Exception {
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api batchcomplete=\"\"><query><allcategories><c>Foo</c><c>Foo bar</c></allcategories></query></api>"));
+
+        TestObserver<String> testObserver = testObject.allCategories("Foo", 10).test();
+
+        RecordedRequest request = assertBasicRequestParameters(server, "GET");
+        Map<String, String> params = parseQueryParams(request);
+        assertEquals("allcategories", params.get("list"));
+        assertEquals("Foo", params.get("acprefix"));
+
+        testObserver.assertValues("Foo", "Foo bar");
+        testObserver.assertComplete();
+    }
+
     @Test
     public void getUploadCount() throws InterruptedException {
         server.enqueue(new MockResponse().setBody("23\n"));
@@ -0,0 +1,147 @@
+package fr.free.nrw.commons.mwapi;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import io.reactivex.observers.TestObserver;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class OkHttpMediaWikiApiTest {
+
+    private OkHttpMediaWikiApi testObject;
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(RuntimeEnvironment.application);
+        testObject = new OkHttpMediaWikiApi(RuntimeEnvironment.application,
+                "http://" + server.getHostName() + ":" + server.getPort() + "/",
+                sharedPreferences, new OkHttpClient());
+    }
+
+    @After
+    public void teardown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void editTokenReusesConnection() throws Exception {
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api><tokens edittoken=\"baz\" /></api>"));
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api><tokens edittoken=\"qux\" /></api>"));
+
+        assertEquals("baz", testObject.getEditToken());
+        assertEquals("qux", testObject.getEditToken());
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("GET", request.getMethod());
+        assertEquals("xml", request.getRequestUrl().queryParameter("format"));
+        assertEquals("tokens", request.getRequestUrl().queryParameter("action"));
+        assertEquals("edit", request.getRequestUrl().queryParameter("type"));
+        assertEquals(testObject.getUserAgent(), request.getHeader("User-Agent"));
+
+        assertEquals(2, testObject.getConnectionMetrics().getRequestCount());
+        assertEquals(1, testObject.getConnectionMetrics().getNewConnectionCount());
+        assertEquals(1, testObject.getConnectionMetrics().getReusedConnectionCount());
+    }
+
+    @Test
+    public void authCookieIsSentWithRequests() throws Exception {
+        testObject.setAuthCookie("session=chocolate-chip;");
+        assertEquals("session=chocolate-chip;", testObject.getAuthCookie());
+
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api><query><userinfo id=\"10\" name=\"foo\"/></query></api>"));
+
+        assertTrue(testObject.validateLogin());
+        assertEquals("session=chocolate-chip", server.takeRequest().getHeader("Cookie"));
+    }
+
+    @Test
+    public void cookiesAreKeptPerPath() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Set-Cookie", "session=root; Path=/")
+                .addHeader("Set-Cookie", "session=other; Path=/other")
+                .setBody("<?xml version=\"1.0\"?><api><tokens edittoken=\"baz\" /></api>"));
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api><tokens edittoken=\"qux\" /></api>"));
+
+        testObject.getEditToken();
+        testObject.getEditToken();
+
+        server.takeRequest();
+        assertEquals("session=root", server.takeRequest().getHeader("Cookie"));
+        assertEquals("session=root;", testObject.getAuthCookie());
+    }
+
+    @Test
+    public void expiredCookiesAreDropped() throws Exception {
+        server.enqueue(new MockResponse()
+                .addHeader("Set-Cookie", "session=chocolate-chip; Path=/")
+                .setBody("<?xml version=\"1.0\"?><api><tokens edittoken=\"baz\" /></api>"));
+        server.enqueue(new MockResponse()
+                .addHeader("Set-Cookie", "session=deleted; Path=/; Expires=Thu, 01 Jan 1970 00:00:01 GMT")
+                .setBody("<?xml version=\"1.0\"?><api><tokens edittoken=\"qux\" /></api>"));
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api><tokens edittoken=\"quux\" /></api>"));
+
+        testObject.getEditToken();
+        testObject.getEditToken();
+        testObject.getEditToken();
+
+        server.takeRequest();
+        assertEquals("session=chocolate-chip", server.takeRequest().getHeader("Cookie"));
+        assertNull(server.takeRequest().getHeader("Cookie"));
+        assertEquals("", testObject.getAuthCookie());
+    }
+
+    @Test
+    public void allCategoriesAreStreamed() throws Exception {
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api batchcomplete=\"\"><query><allcategories><c>Foo</c><c>Foo bar</c></allcategories></query></api>"));
+
+        TestObserver<String> testObserver = testObject.allCategories("Foo", 10).test();
+
+        assertEquals("Foo", server.takeRequest().getRequestUrl().queryParameter("acprefix"));
+        testObserver.assertValues("Foo", "Foo bar");
+        testObserver.assertComplete();
+    }
+
+    @Test
+    public void truncatedCategoriesFail() throws Exception {
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api batchcomplete=\"\"><query><allcategories><c>Foo</c><c>Foo b"));
+
+        TestObserver<String> testObserver = testObject.allCategories("Foo", 10).test();
+
+        testObserver.awaitTerminalEvent();
+        testObserver.assertValue("Foo");
+        testObserver.assertError(IOException.class);
+    }
+
+    @Test
+    public void existingFileNamesAreMatchedToNormalizedTitles() throws Exception {
+        server.enqueue(new MockResponse().setBody("<?xml version=\"1.0\"?><api batchcomplete=\"\"><query><normalized><n from=\"File:foo.jpg\" to=\"File:Foo.jpg\" /></normalized><pages><page _idx=\"-1\" ns=\"6\" title=\"File:Foo 2.jpg\" missing=\"\" imagerepository=\"\" /><page _idx=\"42\" pageid=\"42\" ns=\"6\" title=\"File:Foo.jpg\" imagerepository=\"local\"><imageinfo><ii timestamp=\"2017-01-01T00:00:00Z\" user=\"bar\" /></imageinfo></page></pages></query></api>"));
+
+        assertEquals(Collections.singleton("foo.jpg"), testObject.existingFileNames(Arrays.asList("foo.jpg", "Foo 2.jpg")));
+        assertEquals("File:foo.jpg|File:Foo 2.jpg", server.takeRequest().getRequestUrl().queryParameter("titles"));
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.support.v4.app.Fragment;
 import android.support.v7.widget.RecyclerView;
 import android.view.MenuItem;
+import android.view.View;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -15,16 +16,21 @@ import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import edu.emory.mathcs.backport.java.util.Collections;
 import fr.free.nrw.commons.BuildConfig;
 import fr.free.nrw.commons.R;
 import fr.free.nrw.commons.TestCommonsApplication;
 import fr.free.nrw.commons.location.LatLng;
 import fr.free.nrw.commons.location.LocationServiceManager;
+import io.reactivex.Observable;
 import io.reactivex.android.plugins.RxAndroidPlugins;
 import io.reactivex.plugins.RxJavaPlugins;
 import io.reactivex.schedulers.Schedulers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
@@ -42,6 +48,11 @@ public class NearbyActivityTest {
             "desc", null,
             new LatLng(38.6270, -90.1994, 0),
             null);
+    private static final Place BRIDGE = new Place(
+            "bridge", Place.Label.BRIDGE,
+            "desc", null,
+            new LatLng(38.6290, -90.1994, 0),
+            null);
 
     @Mock
     private LocationServiceManager locationManager;
@@ -71,7 +82,7 @@ public class NearbyActivityTest {
         when(locationManager.getLastLocation()).thenReturn(ST_LOUIS_MO_LAT_LNG);
         when(locationManager.isProviderEnabled()).thenReturn(true);
         when(nearbyController.loadAttractionsFromLocation(any(LatLng.class), any(Context.class)))
-                .thenReturn(Collections.singletonList(AIRPORT));
+                .thenReturn(Observable.just(Collections.singletonList(AIRPORT)));
     }
 
     @Test
@@ -89,4 +100,29 @@ public class NearbyActivityTest {
         assertNull(view.findViewHolderForAdapterPosition(1));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void laterResultsUpdateTheShownList() {
+        when(nearbyController.loadAttractionsFromLocation(any(LatLng.class), any(Context.class)))
+                .thenReturn(Observable.just(Collections.singletonList(AIRPORT), Arrays.asList(AIRPORT, BRIDGE)));
+
+        MenuItem refresh = shadowOf(nearbyActivity).getOptionsMenu().findItem(R.id.action_refresh);
+        nearbyActivity.onOptionsItemSelected(refresh);
+
+        Fragment nearbyListFragment = nearbyActivity.getSupportFragmentManager()
+                .findFragmentByTag(NearbyListFragment.class.getSimpleName());
+        RecyclerView view = nearbyListFragment.getView().findViewById(R.id.listView);
+        assertEquals(2, view.getAdapter().getItemCount());
+        assertEquals(View.GONE, nearbyActivity.findViewById(R.id.progressBar).getVisibility());
+    }
+
+    @Test
+    public void failedLoadHidesProgressBar() {
+        when(nearbyController.loadAttractionsFromLocation(any(LatLng.class), any(Context.class)))
+                .thenReturn(Observable.error(new IOException("timeout")));
+
+        MenuItem refresh = shadowOf(nearbyActivity).getOptionsMenu().findItem(R.id.action_refresh);
+        nearbyActivity.onOptionsItemSelected(refresh);
+
+        assertEquals(View.GONE, nearbyActivity.findViewById(R.id.progressBar).getVisibility());
+    }
+}
@@ -0,0 +1,178 @@
+package fr.free.nrw.commons.nearby;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import fr.free.nrw.commons.data.DBOpenHelper;
+import fr.free.nrw.commons.location.LatLng;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class NearbyPlacesIndexTest {
+
+    private static final LatLng LOCATION = new LatLng(48.8534, 2.3488, 0);
+
+    private NearbyPlaces nearbyPlaces;
+    private NearbyPlacesIndex testObject;
+
+    @Before
+    public void setUp() throws IOException {
+        nearbyPlaces = mock(NearbyPlaces.class);
+        when(nearbyPlaces.getFromWikidataQuery(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyString()))
+                .thenAnswer(invocation -> column(invocation.getArguments()));
+        testObject = new NearbyPlacesIndex(new DBOpenHelper(RuntimeEnvironment.application), nearbyPlaces, Runnable::run);
+    }
+
+    @Test
+    public void smallMoveIsAnsweredFromTheIndex() throws IOException {
+        List<Place> first = testObject.getNearest(LOCATION, "en", 10).blockingLast();
+        List<Place> second = testObject.getNearest(new LatLng(48.8535, 2.3489, 0), "en", 10).blockingLast();
+
+        // The tile alone holds places farther than its edges, so the eight around it too
+        verify(nearbyPlaces, times(9))
+                .getFromWikidataQuery(anyDouble(), anyDouble(), anyDouble(), anyDouble(), eq("en"));
+        assertEquals(10, first.size());
+        assertEquals(10, second.size());
+    }
+
+    @Test
+    public void otherLanguageIsQueriedAgain() throws IOException {
+        testObject.getNearest(LOCATION, "en", 10).blockingLast();
+        testObject.getNearest(LOCATION, "fr", 10).blockingLast();
+
+        verify(nearbyPlaces, times(9))
+                .getFromWikidataQuery(anyDouble(), anyDouble(), anyDouble(), anyDouble(), eq("fr"));
+    }
+
+    @Test
+    public void placesAreSortedByDistance() {
+        List<Place> places = testObject.getNearest(LOCATION, "en", NearbyPlacesIndex.MIN_RESULTS).blockingLast();
+
+        for (int i = 1; i < places.size(); i++) {
+            assertTrue(Math.abs(places.get(i - 1).location.getLatitude() - LOCATION.getLatitude())
+                    <= Math.abs(places.get(i).location.getLatitude() - LOCATION.getLatitude()));
+        }
+    }
+
+    @Test
+    public void placeAcrossTheTileEdgeIsFound() throws IOException {
+        // Near the east edge of its tile, which holds places farther than the edge
+        LatLng location = new LatLng(48.85, 2.3599, 0);
+        when(nearbyPlaces.getFromWikidataQuery(anyDouble(), anyDouble(), anyDouble(), anyDouble(), eq("it")))
+                .thenAnswer(invocation -> {
+                    Object[] args = invocation.getArguments();
+                    List<Place> places = column(args);
+                    if ((Double) args[1] < 2.3601 && 2.3601 < (Double) args[3]
+                            && (Double) args[0] < 48.85 && 48.85 < (Double) args[2]) {
+                        places.add(place("Neighbour", 48.85, 2.3601));
+                    }
+                    return places;
+                });
+
+        List<Place> places = testObject.getNearest(location, "it", 1).blockingLast();
+
+        assertEquals("Neighbour", places.get(0).name);
+    }
+
+    @Test
+    public void edgeDistanceIsToTheNearestEdge() {
+        int x = NearbyPlacesIndex.tileX(LOCATION.getLongitude());
+        int y = NearbyPlacesIndex.tileY(LOCATION.getLatitude());
+        double scale = Math.cos(Math.toRadians(LOCATION.getLatitude()));
+
+        // West edge of the tile at 2.34 degrees, 0.0088 degrees of longitude away
+        assertEquals(0.0088 * scale, NearbyPlacesIndex.edgeDistance(new int[]{x, y, x, y}, LOCATION), 1e-9);
+        // North edge of the square at 48.88 degrees
+        assertEquals(0.0266, NearbyPlacesIndex.edgeDistance(new int[]{x - 4, y - 1, x + 4, y + 1}, LOCATION), 1e-9);
+    }
+
+    @Test
+    public void ringAroundCoveredCenterIsFourRectangles() {
+        boolean[] covered = new boolean[25];
+        for (int y = 1; y <= 3; y++) {
+            for (int x = 1; x <= 3; x++) {
+                covered[y * 5 + x] = true;
+            }
+        }
+
+        List<int[]> rectangles = NearbyPlacesIndex.uncoveredRectangles(covered, new int[]{10, 20, 14, 24});
+
+        assertEquals(4, rectangles.size());
+        assertArrayEquals(new int[]{10, 20, 14, 20}, rectangles.get(0));
+        assertArrayEquals(new int[]{10, 21, 10, 23}, rectangles.get(1));
+        assertArrayEquals(new int[]{14, 21, 14, 23}, rectangles.get(2));
+        assertArrayEquals(new int[]{10, 24, 14, 24}, rectangles.get(3));
+    }
+
+    @Test
+    public void sparseAreaIsQueriedInChunksUntilFailure() throws IOException {
+        when(nearbyPlaces.getFromWikidataQuery(anyDouble(), anyDouble(), anyDouble(), anyDouble(), eq("de")))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.emptyList())
+                .thenThrow(new IOException("timeout"));
+
+        List<List<Place>> emitted = testObject.getNearest(LOCATION, "de", 10).toList().blockingGet();
+
+        // The tile itself, then the eight around it, and no larger square after the failure
+        verify(nearbyPlaces, times(9))
+                .getFromWikidataQuery(anyDouble(), anyDouble(), anyDouble(), anyDouble(), eq("de"));
+        assertEquals(Collections.singletonList(Collections.<Place>emptyList()), emitted);
+    }
+
+    @Test
+    public void rectanglesAreCutInSquareChunks() {
+        List<int[]> chunks = NearbyPlacesIndex.chunks(new int[]{0, 0, 4, 1}, 2);
+
+        assertEquals(3, chunks.size());
+        assertArrayEquals(new int[]{0, 0, 1, 1}, chunks.get(0));
+        assertArrayEquals(new int[]{2, 0, 3, 1}, chunks.get(1));
+        assertArrayEquals(new int[]{4, 0, 4, 1}, chunks.get(2));
+    }
+
+    // Every box holds a column of places along its middle
+    private static List<Place> column(Object[] args) {
+        double south = (Double) args[0];
+        double west = (Double) args[1];
+        double north = (Double) args[2];
+        double east = (Double) args[3];
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < NearbyPlacesIndex.MIN_RESULTS; i++) {
+            double latitude = south + (north - south) * (i + 0.5) / NearbyPlacesIndex.MIN_RESULTS;
+            places.add(place("Place " + i + " of " + south + "," + west,
+                    latitude, (west + east) / 2));
+        }
+        return places;
+    }
+
+    private static Place place(String name, double latitude, double longitude) {
+        return new Place(name, Place.Label.fromText("church"), "church", null,
+                new LatLng(latitude, longitude, 0),
+                new Sitelinks.Builder()
+                        .setWikipediaLink("")
+                        .setCommonsLink("")
+                        .setWikidataLink("<http://www.wikidata.org/entity/Q1>")
+                        .build());
+    }
+}
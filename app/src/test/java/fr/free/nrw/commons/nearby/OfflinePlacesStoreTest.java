@@ -0,0 +1,161 @@
+package fr.free.nrw.commons.nearby;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import fr.free.nrw.commons.location.LatLng;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class OfflinePlacesStoreTest {
+
+    private static final String CSV = "name,latitude,longitude,type\n"
+            + "\"Tour Eiffel\"@fr,48.858222,2.2945,tower\n"
+            + "\"Notre-Dame\"@fr,48.853,2.3498,church\n"
+            + "\"Sacré-Cœur\"@fr,48.88694,2.34306,church\n"
+            + "\"Versailles\"@fr,48.804722,2.120556,castle\n"
+            + "\"Lyon\"@fr,45.76,4.84,city\n"
+            + "\"Nowhere\"@fr,,,city\n"
+            + "\"Null Island\"@en,0,0,buoy\n";
+
+    private static final LatLng NOTRE_DAME = new LatLng(48.853, 2.3488, 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NearbyPlaces nearbyPlaces;
+    private File file;
+    private OfflinePlacesStore testObject;
+
+    @Before
+    public void setUp() throws IOException {
+        nearbyPlaces = mock(NearbyPlaces.class);
+        when(nearbyPlaces.openWikiNeedsPictures()).thenAnswer(invocation -> new StringReader(CSV));
+        file = new File(folder.getRoot(), OfflinePlacesStore.FILE_NAME);
+        testObject = new OfflinePlacesStore(file, nearbyPlaces);
+    }
+
+    @Test
+    public void nearestPlacesAreSortedByDistance() {
+        List<Place> places = testObject.getNearest(NOTRE_DAME, 3);
+
+        assertEquals(3, places.size());
+        assertEquals("Notre-Dame", places.get(0).name);
+        assertEquals(Place.Label.CHURCH, places.get(0).getLabel());
+        assertEquals(new LatLng(48.853, 2.3498, 0), places.get(0).location);
+        assertEquals("Sacré-Cœur", places.get(1).name);
+        assertEquals("Tour Eiffel", places.get(2).name);
+    }
+
+    @Test
+    public void searchGrowsUntilEnoughPlacesAreFound() {
+        List<Place> places = testObject.getNearest(NOTRE_DAME, 10);
+
+        // Null Island is too far away from any box tried
+        assertEquals(5, places.size());
+        assertEquals("Lyon", places.get(4).name);
+    }
+
+    @Test
+    public void datasetIsDownloadedOnce() throws IOException {
+        testObject.getNearest(NOTRE_DAME, 3);
+        testObject.getNearest(new LatLng(0.01, 0.01, 0), 3);
+        new OfflinePlacesStore(file, nearbyPlaces).getNearest(NOTRE_DAME, 3);
+
+        verify(nearbyPlaces, times(1)).openWikiNeedsPictures();
+    }
+
+    @Test
+    public void previousCopyIsUsedOffline() throws IOException {
+        testObject.getNearest(NOTRE_DAME, 3);
+        file.setLastModified(System.currentTimeMillis() - OfflinePlacesStore.MAX_AGE_MILLIS - 1);
+        when(nearbyPlaces.openWikiNeedsPictures()).thenThrow(new IOException("offline"));
+
+        List<Place> places = new OfflinePlacesStore(file, nearbyPlaces).getNearest(NOTRE_DAME, 3);
+
+        assertEquals("Notre-Dame", places.get(0).name);
+    }
+
+    @Test
+    public void failedDownloadIsNotRetriedRightAway() throws IOException {
+        testObject.getNearest(NOTRE_DAME, 3);
+        file.setLastModified(System.currentTimeMillis() - OfflinePlacesStore.MAX_AGE_MILLIS - 1);
+        when(nearbyPlaces.openWikiNeedsPictures()).thenThrow(new IOException("offline"));
+
+        testObject.getNearest(NOTRE_DAME, 3);
+        List<Place> places = testObject.getNearest(NOTRE_DAME, 3);
+
+        assertEquals("Notre-Dame", places.get(0).name);
+        verify(nearbyPlaces, times(2)).openWikiNeedsPictures();
+    }
+
+    @Test
+    public void nothingIsFoundWithoutDataset() throws IOException {
+        when(nearbyPlaces.openWikiNeedsPictures()).thenThrow(new IOException("offline"));
+
+        assertTrue(testObject.getNearest(NOTRE_DAME, 3).isEmpty());
+    }
+
+    @Test
+    public void closerPlaceOutsideTheFirstBoxIsFound() throws IOException {
+        // The first box tried holds the farther place only
+        useCsv("name,latitude,longitude,type\n"
+                + "\"Corner\",0.045,0.045,city\n"
+                + "\"North\",0.055,0,city\n");
+
+        List<Place> places = testObject.getNearest(new LatLng(0, 0, 0), 1);
+
+        assertEquals(1, places.size());
+        assertEquals("North", places.get(0).name);
+    }
+
+    @Test
+    public void nearestPlacesAreFoundAcrossBands() throws IOException {
+        StringBuilder csv = new StringBuilder("name,latitude,longitude,type\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append("\"P").append(i).append("\",").append(-0.5 + i * 0.01).append(",")
+                    .append(1 - i * 0.02).append(",city\n");
+        }
+        useCsv(csv.toString());
+
+        // P49 lies south of latitude 0, in the band below P50 and P51
+        List<Place> places = testObject.getNearest(new LatLng(-0.001, 0, 0), 3);
+
+        assertEquals(3, places.size());
+        assertEquals("P50", places.get(0).name);
+        assertEquals("P49", places.get(1).name);
+        assertEquals("P51", places.get(2).name);
+    }
+
+    @Test
+    public void convertedFileIsDeletedWhenItCantReplaceTheDataset() throws IOException {
+        folder.newFolder(OfflinePlacesStore.FILE_NAME);
+
+        assertTrue(testObject.getNearest(NOTRE_DAME, 3).isEmpty());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    private void useCsv(String csv) throws IOException {
+        when(nearbyPlaces.openWikiNeedsPictures()).thenAnswer(invocation -> new StringReader(csv));
+    }
+}
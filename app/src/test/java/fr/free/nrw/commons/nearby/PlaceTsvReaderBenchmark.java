@@ -0,0 +1,100 @@
+package fr.free.nrw.commons.nearby;
+
+import android.net.Uri;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fr.free.nrw.commons.Benchmarks;
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+import fr.free.nrw.commons.Utils;
+import fr.free.nrw.commons.location.LatLng;
+
+/**
+ * Compares {@link PlaceTsvReader} with the former line splitting and regular expression
+ * loop on a recorded query response.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class PlaceTsvReaderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 300;
+
+    @Test
+    public void readerVersusSplitAndRegex() throws Exception {
+        String response = readRecordedResponse();
+
+        Benchmarks.assertFaster("Nearby results", WARMUP_ITERATIONS, MEASURED_ITERATIONS,
+                () -> readWithReader(response),
+                () -> readWithSplit(response));
+    }
+
+    private static List<Place> readWithReader(String response) throws IOException {
+        List<Place> places = new ArrayList<>();
+        try (PlaceTsvReader reader = new PlaceTsvReader(new StringReader(response))) {
+            Place place;
+            while ((place = reader.next()) != null) {
+                places.add(place);
+            }
+        }
+        return places;
+    }
+
+    // The loop NearbyPlaces used to run, minus the logging of every line
+    private static List<Place> readWithSplit(String response) throws IOException {
+        List<Place> places = new ArrayList<>();
+        BufferedReader in = new BufferedReader(new StringReader(response));
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line + "\n";
+            if (!line.startsWith("\"Point")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            String name = Utils.stripLocalizedString(fields[2]);
+            String type = Utils.stripLocalizedString(fields[4]);
+            Matcher matcher = Pattern.compile("Point\\(([^ ]+) ([^ ]+)\\)").matcher(fields[0]);
+            if (!matcher.find()) {
+                continue;
+            }
+            places.add(new Place(
+                    name,
+                    Place.Label.fromText(type),
+                    type,
+                    Uri.parse(fields[5]),
+                    new LatLng(Double.parseDouble(matcher.group(2)), Double.parseDouble(matcher.group(1)), 0),
+                    new Sitelinks.Builder()
+                            .setWikipediaLink(Utils.stripLocalizedString(fields[7]))
+                            .setCommonsLink(Utils.stripLocalizedString(fields[8]))
+                            .setWikidataLink(Utils.stripLocalizedString(fields[1]))
+                            .build()));
+        }
+        return places;
+    }
+
+    private String readRecordedResponse() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(PlaceTsvReaderTest.RECORDED_RESULTS)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package fr.free.nrw.commons.nearby;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class PlaceTsvReaderTest {
+
+    static final String RECORDED_RESULTS = "/nearby/query_results.tsv";
+
+    @Test
+    public void readsAllFieldsOfARow() throws IOException {
+        PlaceTsvReader reader = new PlaceTsvReader(new StringReader(
+                "?location\t?item\t?label\t?class\t?class_label\t?icon\t?emoji\t?wikipediaArticle\t?commonsArticle\n"
+                        + "\"Point(2.2945 48.858222222222)\"^^<http://www.opengis.net/ont/geosparql#wktLiteral>\t"
+                        + "<http://www.wikidata.org/entity/Q243>\t\"Tour Eiffel\"@fr\t"
+                        + "<http://www.wikidata.org/entity/Q1440476>\t\"church\"@en\t"
+                        + "<http://example.org/icon.svg>\t\t<https://en.wikipedia.org/wiki/Eiffel_Tower>\t\r\n"));
+
+        Place place = reader.next();
+
+        assertEquals("Tour Eiffel", place.name);
+        assertEquals(Place.Label.CHURCH, place.getLabel());
+        assertEquals("church", place.getLongDescription());
+        assertEquals("<http://example.org/icon.svg>", place.getSecondaryImageUrl().toString());
+        assertEquals(48.858222222222, place.location.getLatitude(), 0);
+        assertEquals(2.2945, place.location.getLongitude(), 0);
+        assertEquals("https://en.wikipedia.org/wiki/Eiffel_Tower", place.siteLinks.getWikipediaLink().toString());
+        assertEquals("", place.siteLinks.getCommonsLink().toString());
+        assertEquals("http://www.wikidata.org/entity/Q243", place.siteLinks.getWikidataLink().toString());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void skipsRowsWithUnreadablePoints() throws IOException {
+        PlaceTsvReader reader = new PlaceTsvReader(new StringReader(
+                "\"Point(east north)\"\t<Q1>\t\"A\"\n"
+                        + "\"Point(-1.5e-3 -45)\"\t<Q2>\t\"B\""));
+
+        Place place = reader.next();
+
+        assertEquals("B", place.name);
+        assertEquals(-0.0015, place.location.getLongitude(), 0);
+        assertEquals(-45, place.location.getLatitude(), 0);
+        assertEquals(Place.Label.UNKNOWN, place.getLabel());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void coordinatesMatchParseDouble() throws IOException {
+        List<Place> places = new ArrayList<>();
+        try (PlaceTsvReader reader = new PlaceTsvReader(new InputStreamReader(
+                getClass().getResourceAsStream(RECORDED_RESULTS), "UTF-8"))) {
+            Place place;
+            while ((place = reader.next()) != null) {
+                places.add(place);
+            }
+        }
+
+        List<double[]> expected = new ArrayList<>();
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream(RECORDED_RESULTS), "UTF-8"))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.startsWith("\"Point(")) {
+                    String[] point = line.substring("\"Point(".length(), line.indexOf(')')).split(" ");
+                    expected.add(new double[]{Double.parseDouble(point[1]), Double.parseDouble(point[0])});
+                }
+            }
+        }
+        assertEquals(expected.size(), places.size());
+        for (int i = 0; i < places.size(); i++) {
+            assertEquals(expected.get(i)[0], places.get(i).location.getLatitude(), 0);
+            assertEquals(expected.get(i)[1], places.get(i).location.getLongitude(), 0);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package fr.free.nrw.commons.upload;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class HashingInputStreamTest {
+
+    private static final byte[] CONTENT = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+    private static final String CONTENT_SHA1 = "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12";
+
+    @Test
+    public void testEmptyStream() throws IOException {
+        HashingInputStream stream = new HashingInputStream(new ByteArrayInputStream(new byte[0]));
+        Assert.assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", stream.readToEndAndGetSha1());
+    }
+
+    @Test
+    public void testHashOfBufferedReads() throws IOException {
+        HashingInputStream stream = new HashingInputStream(new ByteArrayInputStream(CONTENT));
+        byte[] buffer = new byte[7];
+        while (stream.read(buffer) != -1) {
+            // Consume like an upload would
+        }
+        Assert.assertEquals(CONTENT_SHA1, stream.getSha1());
+    }
+
+    @Test
+    public void testSkippedBytesAreHashed() throws IOException {
+        HashingInputStream stream = new HashingInputStream(new ByteArrayInputStream(CONTENT));
+        Assert.assertEquals(10, stream.skip(10));
+        Assert.assertEquals(CONTENT[10], stream.read());
+        Assert.assertEquals(CONTENT_SHA1, stream.readToEndAndGetSha1());
+    }
+
+    @Test
+    public void testSha1CanBeReadTwice() throws IOException {
+        HashingInputStream stream = new HashingInputStream(new ByteArrayInputStream(CONTENT));
+        Assert.assertEquals(CONTENT_SHA1, stream.readToEndAndGetSha1());
+        Assert.assertEquals(CONTENT_SHA1, stream.getSha1());
+    }
+}
@@ -0,0 +1,67 @@
+package fr.free.nrw.commons.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import fr.free.nrw.commons.BuildConfig;
+import fr.free.nrw.commons.TestCommonsApplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21, application = TestCommonsApplication.class)
+public class InstrumentedThreadPoolExecutorTest {
+
+    private static final long BLOCKED_MILLIS = 100;
+
+    @Test
+    public void nothingFinishedYet() {
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("test", 1);
+
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(0, executor.getFinishedTaskCount());
+        assertEquals(0, executor.getAverageQueueWaitMillis());
+        assertEquals(0, executor.getAverageRunMillis());
+        assertEquals(0, executor.getAverageTaskLatencyMillis());
+    }
+
+    @Test
+    public void queuedTasksAreCountedAndTimed() throws Exception {
+        InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor("test", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(() -> { });
+        executor.execute(() -> { });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertEquals(2, executor.getQueueDepth());
+
+        // The first task runs, and the other two wait, for at least this long
+        Thread.sleep(BLOCKED_MILLIS);
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(3, executor.getFinishedTaskCount());
+        assertTrue(executor.getAverageQueueWaitMillis() >= 2 * BLOCKED_MILLIS / 3 - 1);
+        assertTrue(executor.getAverageRunMillis() >= BLOCKED_MILLIS / 3 - 1);
+        assertTrue(executor.getAverageTaskLatencyMillis() >= BLOCKED_MILLIS - 1);
+        assertTrue(executor.getAverageTaskLatencyMillis()
+                >= executor.getAverageQueueWaitMillis() + executor.getAverageRunMillis() - 1);
+    }
+}
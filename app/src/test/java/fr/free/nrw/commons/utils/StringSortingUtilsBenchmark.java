@@ -0,0 +1,62 @@
+package fr.free.nrw.commons.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import fr.free.nrw.commons.Benchmarks;
+
+/**
+ * Compares ranking category suggestions with {@link StringSortingUtils#orderBySimilarity}
+ * to sorting them with the {@link StringSortingUtils#sortBySimilarity} comparator, which
+ * computes two edit distances per comparison.
+ */
+public class StringSortingUtilsBenchmark {
+
+    private static final int CANDIDATES = 500;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 20;
+    private static final String FILTER = "bridges in pa";
+    private static final String[] WORDS = {
+            "Bridges", "in", "Paris", "Parks", "of", "the", "Seine", "Pont", "Neuf", "Île-de-France",
+            "Churches", "Buildings", "Quality", "images", "Panoramics", "Arrondissement", "Palais",
+            "Royal", "Saint-Germain", "Montparnasse", "Night", "views", "Streets", "Pavements"};
+
+    @Test
+    public void scoringOnceVersusComparator() throws Exception {
+        List<String> candidates = candidates();
+
+        Benchmarks.assertFaster("Ranking " + CANDIDATES + " categories", WARMUP_ITERATIONS, MEASURED_ITERATIONS,
+                () -> {
+                    List<String> ordered = new ArrayList<>();
+                    for (int index : StringSortingUtils.orderBySimilarity(candidates, FILTER)) {
+                        ordered.add(candidates.get(index));
+                    }
+                    return ordered;
+                },
+                () -> {
+                    List<String> sorted = new ArrayList<>(candidates);
+                    Collections.sort(sorted, StringSortingUtils.sortBySimilarity(FILTER));
+                    return sorted;
+                });
+    }
+
+    // Names at least as long as the filter, which the comparator only lower cases then
+    private static List<String> candidates() {
+        Random random = new Random(42);
+        List<String> candidates = new ArrayList<>();
+        while (candidates.size() < CANDIDATES) {
+            StringBuilder name = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            for (int words = 1 + random.nextInt(5); words > 0; words--) {
+                name.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            if (name.length() >= FILTER.length()) {
+                candidates.add(name.toString());
+            }
+        }
+        return candidates;
+    }
+}
@@ -3,6 +3,7 @@ package fr.free.nrw.commons.utils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -38,4 +39,44 @@ public class StringSortingUtilsTest {
         Collections.sort(actualList, StringSortingUtils.sortBySimilarity("The"));
         Assert.assertEquals(expectedList, actualList);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testOrderingBySimilarityMatchesSorting() throws Exception {
+        List<String> strings = Arrays.asList("The quick brown fox",
+                "quick brown fox",
+                "The",
+                "The quick ",
+                "The fox",
+                "brown fox",
+                "fox");
+        List<String> sorted = new ArrayList<>(strings);
+        Collections.sort(sorted, StringSortingUtils.sortBySimilarity("The"));
+
+        List<String> ordered = new ArrayList<>();
+        for (int index : StringSortingUtils.orderBySimilarity(strings, "The")) {
+            ordered.add(strings.get(index));
+        }
+        Assert.assertEquals(sorted, ordered);
+    }
+
+    @Test
+    public void testOrderingBySimilarityIgnoresCase() throws Exception {
+        List<String> strings = Arrays.asList("paris", "Bridges", "PARIS");
+
+        // The filter shares 7 characters with bridges and 5 with paris, in any case
+        Assert.assertArrayEquals(new int[]{1, 0, 2},
+                StringSortingUtils.orderBySimilarity(strings, "Paris bridges"));
+        Assert.assertArrayEquals(new int[]{0, 1, 2},
+                StringSortingUtils.orderBySimilarity(strings, ""));
+    }
+
+    @Test
+    public void testDistance() throws Exception {
+        Assert.assertEquals(3, StringSortingUtils.distance("kitten", "sitting"));
+        Assert.assertEquals(3, StringSortingUtils.distance("sitting", "kitten"));
+        Assert.assertEquals(0, StringSortingUtils.distance("paris", "paris"));
+        Assert.assertEquals(4, StringSortingUtils.distance("1234", "4567"));
+        Assert.assertEquals(9, StringSortingUtils.distance("a", "abcdefghij"));
+        Assert.assertEquals(9, StringSortingUtils.distance("", "abcdefghi"));
+    }
+}